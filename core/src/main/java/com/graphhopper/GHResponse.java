@@ -20,6 +20,7 @@ package com.graphhopper;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PMap;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.RouteTrace;
 import com.graphhopper.util.shapes.BBox;
 
 import java.util.ArrayList;
@@ -40,15 +41,19 @@ public class GHResponse
     private long time;
     private InstructionList instructions;
     private final PMap hintsMap = new PMap();
+    private final RouteTrace trace = new RouteTrace();
 
     public GHResponse()
     {
     }
 
+    /**
+     * @return the text of the trace and the additionally set debug information
+     */
     public String getDebugInfo()
     {
         check("getDebugInfo");
-        return debugInfo;
+        return debugInfo.isEmpty() ? trace.toString() : trace + ", " + debugInfo;
     }
 
     public GHResponse setDebugInfo( String debugInfo )
@@ -58,6 +63,14 @@ public class GHResponse
         return this;
     }
 
+    /**
+     * @return the timings and counters of the calculation
+     */
+    public RouteTrace getTrace()
+    {
+        return trace;
+    }
+
     private void check( String method )
     {
         if (hasErrors())
@@ -209,6 +222,14 @@ public class GHResponse
         this.instructions = instructions;
     }
 
+    /**
+     * @return true if instructions were created for this response
+     */
+    public boolean hasInstructions()
+    {
+        return instructions != null;
+    }
+
     public InstructionList getInstructions()
     {
         check("getInstructions");
@@ -25,10 +25,14 @@ import com.graphhopper.reader.dem.SRTMProvider;
 import com.graphhopper.routing.*;
 import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
+import com.graphhopper.search.LocationIndexReverseGeocoder;
+import com.graphhopper.search.StreetNameIndex;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexRTree;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.index.QueryResultCache;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 import org.slf4j.Logger;
@@ -57,6 +61,7 @@ public class GraphHopper implements GraphHopperAPI
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
+    private boolean separateColdEdges = false;
     boolean removeZipped = true;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
@@ -66,13 +71,23 @@ public class GraphHopper implements GraphHopperAPI
     private boolean fullyLoaded = false;
     // for routing
     private double defaultWeightLimit = Double.MAX_VALUE;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private long routingTimeout = 0;
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private final Map<Weighting, RoutingAlgorithmFactory> algoFactories = new LinkedHashMap<Weighting, RoutingAlgorithmFactory>();
     // for index
     private LocationIndex locationIndex;
+    private boolean enableStreetNameIndex = false;
+    private StreetNameIndex streetNameIndex;
+    private LocationIndexReverseGeocoder reverseGeocoder;
+    private int snapCacheSize = 0;
+    private double snapCacheResolution = 1;
+    private QueryResultCache snapCache;
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private int indexPrepareThreads = 1;
+    private String locationIndexType = "tree";
     // for prepare
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
@@ -90,6 +105,10 @@ public class GraphHopper implements GraphHopperAPI
     private double osmReaderWayPointMaxDistance = 1;
     private int workerThreads = -1;
     private boolean calcPoints = true;
+    // for live speed updates
+    private boolean enableSpeedOverlay = false;
+    private final Map<FlagEncoder, SpeedOverlay> speedOverlays = new LinkedHashMap<FlagEncoder, SpeedOverlay>();
+    private Directory speedOverlayDir;
     // utils
     private final TranslationMap trMap = new TranslationMap().doImport();
     private ElevationProvider eleProvider = ElevationProvider.NOOP;
@@ -341,6 +360,36 @@ public class GraphHopper implements GraphHopperAPI
         this.defaultWeightLimit = defaultWeightLimit;
     }
 
+    /**
+     * Aborts a request with an error if the routing algorithms visited more nodes in total. Can be
+     * overwritten per request via the hint max_visited_nodes.
+     */
+    public GraphHopper setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        this.maxVisitedNodes = maxVisitedNodes;
+        return this;
+    }
+
+    public int getMaxVisitedNodes()
+    {
+        return maxVisitedNodes;
+    }
+
+    /**
+     * Aborts a request with an error if the routing takes longer than the specified milliseconds.
+     * Can be overwritten per request via the hint timeout. 0 means no timeout.
+     */
+    public GraphHopper setRoutingTimeout( long routingTimeout )
+    {
+        this.routingTimeout = routingTimeout;
+        return this;
+    }
+
+    public long getRoutingTimeout()
+    {
+        return routingTimeout;
+    }
+
     public boolean isCHEnabled()
     {
         return chEnabled;
@@ -383,6 +432,103 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Enables per edge speeds for every vehicle which override the speeds from the import and can
+     * be updated while routing, e.g. to reflect the current traffic. The speeds are only used if CH
+     * is disabled as the prepared shortcuts cannot reflect them.
+     *
+     * @see #getSpeedOverlay(String)
+     */
+    public GraphHopper setEnableSpeedOverlay( boolean enable )
+    {
+        ensureNotLoaded();
+        enableSpeedOverlay = enable;
+        return this;
+    }
+
+    /**
+     * @return the speed overlay of the specified vehicle
+     * @throws IllegalStateException if speed overlays are not enabled
+     */
+    public SpeedOverlay getSpeedOverlay( String vehicle )
+    {
+        if (!enableSpeedOverlay)
+            throw new IllegalStateException("Speed overlay is not enabled");
+
+        SpeedOverlay overlay = speedOverlays.get(encodingManager.getEncoder(vehicle));
+        if (overlay == null)
+            throw new IllegalStateException("Speed overlay not initialized. Call load before");
+
+        return overlay;
+    }
+
+    public boolean isSpeedOverlayEnabled()
+    {
+        return enableSpeedOverlay;
+    }
+
+    /**
+     * Creates an index of all street names on import, which can be used for geocoding.
+     *
+     * @see #getStreetNameIndex()
+     */
+    public GraphHopper setEnableStreetNameIndex( boolean enable )
+    {
+        ensureNotLoaded();
+        enableStreetNameIndex = enable;
+        return this;
+    }
+
+    public boolean isStreetNameIndexEnabled()
+    {
+        return enableStreetNameIndex;
+    }
+
+    /**
+     * Caches the snapped edges of the route points, which is useful if many requests start or end
+     * at the same locations. 0 disables the cache.
+     * <p>
+     * @param size the number of cached points
+     * @param resolution in meter, points closer to each other share the snapped edge
+     */
+    public GraphHopper setSnapCache( int size, double resolution )
+    {
+        ensureNotLoaded();
+        snapCacheSize = size;
+        snapCacheResolution = resolution;
+        return this;
+    }
+
+    /**
+     * @return the cache for snapping route points or null if disabled
+     */
+    public QueryResultCache getSnapCache()
+    {
+        return snapCache;
+    }
+
+    /**
+     * @return the reverse geocoder which finds the closest street of a point via the location index
+     */
+    public LocationIndexReverseGeocoder getReverseGeocoder()
+    {
+        if (reverseGeocoder == null)
+            throw new IllegalStateException("Location index not initialized");
+
+        return reverseGeocoder;
+    }
+
+    /**
+     * @throws IllegalStateException if the street name index is not enabled
+     */
+    public StreetNameIndex getStreetNameIndex()
+    {
+        if (streetNameIndex == null)
+            throw new IllegalStateException("Street name index not initialized. Enable it and call load before");
+
+        return streetNameIndex;
+    }
+
     /**
      * This method specifies if the returned path should be simplified or not, via douglas-peucker
      * or similar algorithm.
@@ -453,6 +599,8 @@ public class GraphHopper implements GraphHopperAPI
     protected void setLocationIndex( LocationIndex locationIndex )
     {
         this.locationIndex = locationIndex;
+        this.reverseGeocoder = new LocationIndexReverseGeocoder(locationIndex);
+        initSnapCache();
     }
 
     /**
@@ -479,6 +627,18 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Stores geometry reference, name and additional field of an edge in a separate file so that
+     * the edge entries read while routing are more compact. Only used for a new import, for an
+     * existing graph the stored layout is used.
+     */
+    public GraphHopper setSeparateColdEdges( boolean separateColdEdges )
+    {
+        ensureNotLoaded();
+        this.separateColdEdges = separateColdEdges;
+        return this;
+    }
+
     /**
      * Specifies if it is allowed for GraphHopper to write. E.g. for read only filesystems it is not
      * possible to create a lock file and so we can avoid write locks.
@@ -528,6 +688,7 @@ public class GraphHopper implements GraphHopperAPI
         dataAccessType = DAType.fromString(graphDATypeStr);
 
         sortGraph = args.getBool("graph.doSort", sortGraph);
+        separateColdEdges = args.getBool("graph.separateColdEdges", separateColdEdges);
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
         int bytesForFlags = args.getInt("graph.bytesForFlags", 4);
         if (args.get("graph.locktype", "native").equals("simple"))
@@ -589,9 +750,17 @@ public class GraphHopper implements GraphHopperAPI
         // index
         preciseIndexResolution = args.getInt("index.highResolution", preciseIndexResolution);
         maxRegionSearch = args.getInt("index.maxRegionSearch", maxRegionSearch);
+        indexPrepareThreads = args.getInt("index.prepareThreads", indexPrepareThreads);
+        locationIndexType = args.get("index.type", locationIndexType);
+        enableStreetNameIndex = args.getBool("index.streetNames", enableStreetNameIndex);
+        snapCacheSize = args.getInt("index.snapCache.size", snapCacheSize);
+        snapCacheResolution = args.getDouble("index.snapCache.resolution", snapCacheResolution);
 
         // routing
         defaultWeightLimit = args.getDouble("routing.defaultWeightLimit", defaultWeightLimit);
+        maxVisitedNodes = args.getInt("routing.maxVisitedNodes", maxVisitedNodes);
+        routingTimeout = args.getLong("routing.timeout", routingTimeout);
+        enableSpeedOverlay = args.getBool("routing.speedOverlay", enableSpeedOverlay);
         return this;
     }
 
@@ -602,6 +771,15 @@ public class GraphHopper implements GraphHopperAPI
             logger.info("graph " + ghStorage.toString() + ", details:" + ghStorage.toDetailsString());
     }
 
+    /**
+     * @return true if the specified location is a single file graph container created via
+     * {@link GraphContainer#pack}
+     */
+    static boolean isContainer( String location )
+    {
+        return location.endsWith(".ghc") && new File(location).isFile();
+    }
+
     /**
      * Imports provided data from disc and creates graph. Depending on the settings the resulting
      * graph will be stored to disc so on a second call this method will only load the graph from
@@ -616,10 +794,26 @@ public class GraphHopper implements GraphHopperAPI
         } else
         {
             printInfo();
+            logger.info("memory " + getMemoryReport());
         }
         return this;
     }
 
+    /**
+     * @return the capacity and used bytes of every DataAccess object of the graph, the location
+     * index, the CH graphs and the speed overlays
+     */
+    public MemoryReport getMemoryReport()
+    {
+        if (ghStorage == null)
+            throw new IllegalStateException("Graph not initialized");
+
+        MemoryReport report = ghStorage.getMemoryReport();
+        if (speedOverlayDir != null)
+            report.add(speedOverlayDir);
+        return report;
+    }
+
     /**
      * Creates the graph from OSM data.
      */
@@ -708,7 +902,7 @@ public class GraphHopper implements GraphHopperAPI
         if (fullyLoaded)
             throw new IllegalStateException("graph is already successfully loaded");
 
-        if (graphHopperFolder.endsWith("-gh"))
+        if (graphHopperFolder.endsWith("-gh") || isContainer(graphHopperFolder))
         {
             // do nothing  
         } else if (graphHopperFolder.endsWith(".osm") || graphHopperFolder.endsWith(".xml"))
@@ -736,13 +930,29 @@ public class GraphHopper implements GraphHopperAPI
 
         setGraphHopperLocation(graphHopperFolder);
 
+        boolean container = isContainer(ghLocation);
         if (encodingManager == null)
-            setEncodingManager(EncodingManager.create(ghLocation));
+        {
+            if (container)
+            {
+                Directory tmpDir = new ContainerDirectory(new File(ghLocation));
+                try
+                {
+                    setEncodingManager(EncodingManager.create(tmpDir));
+                } finally
+                {
+                    tmpDir.clear();
+                }
+            } else
+                setEncodingManager(EncodingManager.create(ghLocation));
+        }
 
         if (!allowWrites && dataAccessType.isMMap())
             dataAccessType = DAType.MMAP_RO;
 
-        GHDirectory dir = new GHDirectory(ghLocation, dataAccessType);
+        Directory dir = container
+                ? new ContainerDirectory(new File(ghLocation))
+                : new GHDirectory(ghLocation, dataAccessType);
         GraphExtension ext = encodingManager.needsTurnCostsSupport()
                 ? new TurnCostExtension() : new GraphExtension.NoOpExtension();
         if (chEnabled)
@@ -752,6 +962,7 @@ public class GraphHopper implements GraphHopperAPI
         } else
             ghStorage = new GraphHopperStorage(dir, encodingManager, hasElevation(), ext);
 
+        ghStorage.setSeparateColdEdges(separateColdEdges);
         ghStorage.setSegmentSize(defaultSegmentSize);
 
         Lock lock = null;
@@ -759,7 +970,7 @@ public class GraphHopper implements GraphHopperAPI
         {
             // create locks only if writes are allowed, if they are not allowed a lock cannot be created 
             // (e.g. on a read only filesystem locks would fail)
-            if (ghStorage.getDirectory().getDefaultType().isStoring() && isAllowWrites())
+            if (ghStorage.getDirectory().getDefaultType().isStoring() && isAllowWrites() && !container)
             {
                 lockFactory.setLockDir(new File(ghLocation));
                 lock = lockFactory.create(fileLockName, false);
@@ -850,11 +1061,32 @@ public class GraphHopper implements GraphHopperAPI
         }
 
         initLocationIndex();
+        initStreetNameIndex();
         if (chEnabled)
             createCHPreparations();
 
         if (!isPrepared())
             prepare();
+
+        initSpeedOverlays();
+    }
+
+    /**
+     * Creates an empty speed overlay for every vehicle if enabled. The overlays are not stored.
+     */
+    protected void initSpeedOverlays()
+    {
+        if (!enableSpeedOverlay)
+            return;
+
+        if (chEnabled)
+            logger.warn("Speed overlay is enabled but only used if CH is disabled");
+
+        speedOverlayDir = new GHDirectory("", DAType.RAM_INT);
+        for (FlagEncoder encoder : encodingManager.fetchEdgeEncoders())
+        {
+            speedOverlays.put(encoder, new SpeedOverlay(speedOverlayDir, encoder).create(ghStorage.getAllEdges().getMaxId()));
+        }
     }
 
     private boolean isPrepared()
@@ -931,12 +1163,14 @@ public class GraphHopper implements GraphHopperAPI
         Locale locale = request.getLocale();
         DouglasPeucker peucker = new DouglasPeucker().setMaxDistance(wayPointMaxDistance);
 
+        long start = System.nanoTime();
         new PathMerger().
                 setCalcPoints(tmpCalcPoints).
                 setDouglasPeucker(peucker).
                 setEnableInstructions(tmpEnableInstructions).
                 setSimplifyResponse(simplifyResponse && wayPointMaxDistance > 0).
                 doWork(response, paths, trMap.getWithFallBack(locale));
+        response.getTrace().addSince(RouteTrace.INSTRUCTIONS, start);
         return response;
     }
 
@@ -977,16 +1211,22 @@ public class GraphHopper implements GraphHopperAPI
             return Collections.emptyList();
         }
 
+        int tmpMaxVisitedNodes = request.getHints().getInt("max_visited_nodes", maxVisitedNodes);
+        long tmpTimeout = request.getHints().getLong("timeout", routingTimeout);
+        long deadline = tmpTimeout > 0 ? System.currentTimeMillis() + tmpTimeout : Long.MAX_VALUE;
         long visitedNodesSum = 0;
         FlagEncoder encoder = encodingManager.getEncoder(vehicle);
         EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
 
-        StopWatch sw = new StopWatch().start();
+        RouteTrace trace = rsp.getTrace();
+        long start = System.nanoTime();
         List<QueryResult> qResults = new ArrayList<QueryResult>(points.size());
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
         {
             GHPoint point = points.get(placeIndex);
-            QueryResult res = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            QueryResult res = snapCache == null
+                    ? locationIndex.findClosest(point.lat, point.lon, edgeFilter)
+                    : snapCache.findClosest(point.lat, point.lon, edgeFilter, encoder);
             if (!res.isValid())
                 rsp.addError(new IllegalArgumentException("Cannot find point " + placeIndex + ": " + point));
 
@@ -996,7 +1236,7 @@ public class GraphHopper implements GraphHopperAPI
         if (rsp.hasErrors())
             return Collections.emptyList();
 
-        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        start = trace.addSince(RouteTrace.SNAP, start);
 
         Weighting weighting;
         Graph routingGraph = ghStorage;
@@ -1009,11 +1249,18 @@ public class GraphHopper implements GraphHopperAPI
             weighting = getWeightingForCH(request.getHints(), encoder);
             routingGraph = ghStorage.getGraph(CHGraph.class, weighting);
         } else
+        {
             weighting = createWeighting(request.getHints(), encoder);
+            SpeedOverlay overlay = speedOverlays.get(encoder);
+            if (overlay != null && weighting instanceof FastestWeighting)
+                ((FastestWeighting) weighting).setSpeedOverlay(overlay);
+        }
 
         RoutingAlgorithmFactory tmpAlgoFactory = getAlgorithmFactory(weighting);
         QueryGraph queryGraph = new QueryGraph(routingGraph);
         queryGraph.lookup(qResults);
+        trace.addSince(RouteTrace.QUERY_GRAPH, start);
+        trace.addCount(RouteTrace.VIRTUAL_NODES, queryGraph.getNodes() - routingGraph.getNodes());
         weighting = createTurnWeighting(weighting, queryGraph, encoder);
 
         List<Path> paths = new ArrayList<Path>(points.size() - 1);
@@ -1045,18 +1292,34 @@ public class GraphHopper implements GraphHopperAPI
             // enforce end direction
             queryGraph.enforceHeading(toQResult.getClosestNode(), request.getFavoredHeading(placeIndex), true);
 
-            sw = new StopWatch().start();
+            start = System.nanoTime();
             RoutingAlgorithm algo = tmpAlgoFactory.createAlgo(queryGraph, algoOpts);
             algo.setWeightLimit(weightLimit);
-            debug += ", algoInit:" + sw.stop().getSeconds() + "s";
+            // the limit is for all paths of the request
+            algo.setMaxVisitedNodes((int) Math.max(0, tmpMaxVisitedNodes - visitedNodesSum));
+            algo.setDeadline(deadline);
+            start = trace.addSince(RouteTrace.ALGO_INIT, start);
+
+            Path path;
+            try
+            {
+                path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
+            } catch (RoutingBudgetExceededException ex)
+            {
+                rsp.addError(ex);
+                return Collections.emptyList();
+            }
 
-            sw = new StopWatch().start();
-            Path path = algo.calcPath(fromQResult.getClosestNode(), toQResult.getClosestNode());
             if (path.getTime() < 0)
                 throw new RuntimeException("Time was negative. Please report as bug and include:" + request);
 
             paths.add(path);
-            debug += ", " + algo.getName() + "-routing:" + sw.stop().getSeconds() + "s, " + path.getDebugInfo();
+            trace.addSince(RouteTrace.ALGO, start);
+            // the extraction is part of calcPath
+            trace.addNanos(RouteTrace.ALGO, -path.getExtractTime());
+            trace.addNanos(RouteTrace.EXTRACT, path.getExtractTime());
+            trace.addCount(RouteTrace.PATH_EDGES, path.getEdgeCount());
+            trace.setAlgorithm(algo.getName());
 
             // reset all direction enforcements in queryGraph to avoid influencing next path
             queryGraph.clearUnfavoredStatus();
@@ -1071,17 +1334,41 @@ public class GraphHopper implements GraphHopperAPI
         if (points.size() - 1 != paths.size())
             throw new RuntimeException("There should be exactly one more places than paths. places:" + points.size() + ", paths:" + paths.size());
 
-        rsp.setDebugInfo(debug);
+        trace.addCount(RouteTrace.VISITED_NODES, visitedNodesSum);
+        trace.setWeighting(getWeightingName(weighting));
         rsp.getHints().put("visited_nodes.sum", visitedNodesSum);
         rsp.getHints().put("visited_nodes.average", (float) visitedNodesSum / (points.size() - 1));
         return paths;
     }
 
+    /**
+     * @return the weighting name without the vehicle, e.g. fastest for FASTEST|car
+     */
+    static String getWeightingName( Weighting weighting )
+    {
+        String str = weighting.toString().toLowerCase();
+        int index = str.lastIndexOf('|');
+        return index < 0 ? str : str.substring(0, index);
+    }
+
     protected LocationIndex createLocationIndex( Directory dir )
     {
+        if ("rtree".equalsIgnoreCase(locationIndexType))
+        {
+            LocationIndexRTree rtree = new LocationIndexRTree(ghStorage, dir);
+            if (!rtree.loadExisting())
+            {
+                ensureWriteAccess();
+                rtree.prepareIndex();
+            }
+            return rtree;
+        } else if (!"tree".equalsIgnoreCase(locationIndexType))
+            throw new IllegalArgumentException("Unknown index.type " + locationIndexType + ", supported are tree and rtree");
+
         LocationIndexTree tmpIndex = new LocationIndexTree(ghStorage, dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
+        tmpIndex.setPrepareThreads(indexPrepareThreads);
         if (!tmpIndex.loadExisting())
         {
             ensureWriteAccess();
@@ -1100,6 +1387,32 @@ public class GraphHopper implements GraphHopperAPI
             throw new IllegalStateException("Cannot initialize locationIndex twice!");
 
         locationIndex = createLocationIndex(ghStorage.getDirectory());
+        reverseGeocoder = new LocationIndexReverseGeocoder(locationIndex);
+        initSnapCache();
+    }
+
+    private void initSnapCache()
+    {
+        snapCache = snapCacheSize > 0
+                ? new QueryResultCache(locationIndex, ghStorage).setResolution(snapCacheResolution).setSize(snapCacheSize)
+                : null;
+    }
+
+    /**
+     * Loads the street name index if enabled or creates it if it does not exist.
+     */
+    protected void initStreetNameIndex()
+    {
+        if (!enableStreetNameIndex)
+            return;
+
+        StreetNameIndex tmpIndex = new StreetNameIndex(ghStorage, ghStorage.getDirectory());
+        if (!tmpIndex.loadExisting())
+        {
+            ensureWriteAccess();
+            tmpIndex.prepareIndex();
+        }
+        streetNameIndex = tmpIndex;
     }
 
     protected void prepare()
@@ -1148,6 +1461,7 @@ public class GraphHopper implements GraphHopperAPI
                 + Helper.getMemInfo() + ")");
         ghStorage.flush();
         fullyLoaded = true;
+        logger.info("memory " + getMemoryReport());
     }
 
     /**
@@ -1162,6 +1476,18 @@ public class GraphHopper implements GraphHopperAPI
         if (locationIndex != null)
             locationIndex.close();
 
+        // entries refer to the closed graph
+        if (snapCache != null)
+            snapCache.clear();
+
+        if (streetNameIndex != null)
+            streetNameIndex.close();
+
+        for (SpeedOverlay overlay : speedOverlays.values())
+        {
+            overlay.close();
+        }
+
         try
         {
             lockFactory.forceRemove(fileLockName, true);
@@ -0,0 +1,470 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.routing.QueryGraph;
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.storage.index.SnapCandidates;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Matches a GPS trace to the road network with a hidden markov model. The candidates of every GPS
+ * point are the closest edges from the location index. The transition between the candidates of
+ * two consecutive points is more likely the less the route distance differs from the distance
+ * between the GPS points. The most likely sequence of candidates is then found via Viterbi.
+ * <p>
+ * Long traces are matched in windows of a fixed number of points and the last matched point of a
+ * window starts the next window. This way the memory is bounded and results are available early
+ * via a MatchListener.
+ * <p>
+ * This class reuses its data structures and is not thread safe. Create one instance per thread.
+ */
+public class MapMatching
+{
+    private final Graph graph;
+    private final LocationIndex locationIndex;
+    private final EdgeFilter candidateFilter;
+    private final EdgeFilter outFilter;
+    private final DistanceCalc distCalc = Helper.DIST_EARTH;
+    private final TransitionSearch search = new TransitionSearch();
+    private final SnapCandidates snapCandidates = new SnapCandidates();
+    private double measurementSigma = 10;
+    private double transitionBeta = 5;
+    private double searchRadius = 50;
+    private int maxCandidates = 5;
+    private int windowSize = 100;
+    private double maxDetourFactor = 2;
+
+    public MapMatching( Graph graph, LocationIndex locationIndex, FlagEncoder encoder )
+    {
+        this.graph = graph;
+        this.locationIndex = locationIndex;
+        this.candidateFilter = new DefaultEdgeFilter(encoder);
+        this.outFilter = new DefaultEdgeFilter(encoder, false, true);
+        search.setMaxVisitedNodes(5000);
+    }
+
+    /**
+     * The standard deviation of the GPS error in meter.
+     */
+    public MapMatching setMeasurementSigma( double measurementSigma )
+    {
+        if (measurementSigma <= 0)
+            throw new IllegalArgumentException("measurement sigma has to be positive but was " + measurementSigma);
+        this.measurementSigma = measurementSigma;
+        return this;
+    }
+
+    /**
+     * The expected difference in meter between the route distance and the distance of two
+     * consecutive GPS points. A higher value allows more detours.
+     */
+    public MapMatching setTransitionBeta( double transitionBeta )
+    {
+        if (transitionBeta <= 0)
+            throw new IllegalArgumentException("transition beta has to be positive but was " + transitionBeta);
+        this.transitionBeta = transitionBeta;
+        return this;
+    }
+
+    /**
+     * Only edges within this distance in meter of a GPS point are candidates.
+     */
+    public MapMatching setSearchRadius( double searchRadius )
+    {
+        this.searchRadius = searchRadius;
+        return this;
+    }
+
+    /**
+     * The maximum number of candidate edges per GPS point. Only a LocationIndexTree can return
+     * more than one.
+     */
+    public MapMatching setMaxCandidates( int maxCandidates )
+    {
+        if (maxCandidates < 1)
+            throw new IllegalArgumentException("maxCandidates has to be positive but was " + maxCandidates);
+        this.maxCandidates = maxCandidates;
+        return this;
+    }
+
+    /**
+     * The number of GPS points matched at once.
+     */
+    public MapMatching setWindowSize( int windowSize )
+    {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("window size has to be positive but was " + windowSize);
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * The route between two candidates is searched up to this factor times the distance of the
+     * GPS points plus twice the search radius.
+     */
+    public MapMatching setMaxDetourFactor( double maxDetourFactor )
+    {
+        this.maxDetourFactor = maxDetourFactor;
+        return this;
+    }
+
+    /**
+     * Limits the nodes explored for one transition.
+     */
+    public MapMatching setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        search.setMaxVisitedNodes(maxVisitedNodes);
+        return this;
+    }
+
+    /**
+     * Matches the complete trace and returns the merged result of all windows.
+     */
+    public MatchResult match( List<? extends GHPoint> trace )
+    {
+        final MatchResult result = new MatchResult(graph.getNodeAccess().is3D());
+        match(trace.iterator(), new MatchListener()
+        {
+            @Override
+            public void onMatch( MatchResult windowResult )
+            {
+                result.add(windowResult);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Matches the trace window by window and passes every window result to the listener. The
+     * points are read from the iterator only as needed.
+     */
+    public void match( Iterator<? extends GHPoint> trace, MatchListener listener )
+    {
+        int index = 0;
+        Candidate carry = null;
+        List<Observation> window = new ArrayList<Observation>(windowSize + 1);
+        while (trace.hasNext())
+        {
+            window.clear();
+            if (carry != null)
+                window.add(carry.observation);
+
+            for (int i = 0; i < windowSize && trace.hasNext(); i++)
+            {
+                window.add(new Observation(index++, trace.next()));
+            }
+            carry = matchWindow(window, carry, listener);
+        }
+    }
+
+    /**
+     * @return the chosen candidate of the last matched point in the window or null if none
+     */
+    private Candidate matchWindow( List<Observation> window, Candidate carry, MatchListener listener )
+    {
+        MatchResult result = new MatchResult(graph.getNodeAccess().is3D());
+        List<Observation> steps = new ArrayList<Observation>(window.size());
+        List<QueryResult> queryResults = new ArrayList<QueryResult>();
+        for (Observation obs : window)
+        {
+            if (carry != null && obs == carry.observation)
+            {
+                obs.candidates.clear();
+                obs.candidates.add(new Candidate(obs, createQueryResult(carry)));
+                obs.chosen = null;
+            } else
+                findCandidates(obs);
+
+            if (obs.candidates.isEmpty())
+                continue;
+
+            steps.add(obs);
+            for (Candidate c : obs.candidates)
+            {
+                queryResults.add(c.queryResult);
+            }
+        }
+
+        if (steps.isEmpty())
+        {
+            addMatchedPoints(window, carry, result);
+            listener.onMatch(result);
+            return null;
+        }
+
+        QueryGraph queryGraph = new QueryGraph(graph);
+        queryGraph.lookup(queryResults);
+        search.setExplorer(queryGraph.createEdgeExplorer(outFilter));
+
+        // viterbi in log space, a negative back pointer marks a break of the matching
+        double[][] scores = new double[steps.size()][];
+        int[][] parents = new int[steps.size()][];
+        for (int t = 0; t < steps.size(); t++)
+        {
+            List<Candidate> candidates = steps.get(t).candidates;
+            scores[t] = new double[candidates.size()];
+            parents[t] = new int[candidates.size()];
+            if (t == 0 || !calcTransitions(steps.get(t - 1), steps.get(t), scores[t - 1], scores[t], parents[t]))
+            {
+                for (int j = 0; j < candidates.size(); j++)
+                {
+                    scores[t][j] = calcEmissionLogProbability(candidates.get(j).queryResult.getQueryDistance());
+                    parents[t][j] = -1;
+                }
+            }
+        }
+
+        int choice = argMax(scores[steps.size() - 1]);
+        for (int t = steps.size() - 1; t >= 0; t--)
+        {
+            Observation obs = steps.get(t);
+            obs.chosen = obs.candidates.get(choice);
+            choice = parents[t][choice];
+            if (choice < 0 && t > 0)
+            {
+                result.addBreak();
+                choice = argMax(scores[t - 1]);
+            }
+        }
+
+        addMatchedPoints(window, carry, result);
+        addPath(queryGraph, steps, parents, carry != null, result);
+        listener.onMatch(result);
+        return steps.get(steps.size() - 1).chosen;
+    }
+
+    private void findCandidates( Observation obs )
+    {
+        GHPoint point = obs.point;
+        if (locationIndex instanceof LocationIndexTree)
+        {
+            LocationIndexTree tree = (LocationIndexTree) locationIndex;
+            tree.findKNearest(point.lat, point.lon, maxCandidates, searchRadius, candidateFilter, snapCandidates);
+            for (int i = 0; i < snapCandidates.getSize(); i++)
+            {
+                obs.candidates.add(new Candidate(obs, tree.createQueryResult(snapCandidates, i)));
+            }
+        } else
+        {
+            QueryResult qr = locationIndex.findClosest(point.lat, point.lon, candidateFilter);
+            if (qr.isValid() && qr.getQueryDistance() <= searchRadius)
+                obs.candidates.add(new Candidate(obs, qr));
+        }
+    }
+
+    /**
+     * Recreates the query result of a candidate from a previous window as the query graph changes
+     * the closest node and edge.
+     */
+    private QueryResult createQueryResult( Candidate candidate )
+    {
+        QueryResult qr = new QueryResult(candidate.observation.point.lat, candidate.observation.point.lon);
+        qr.setClosestNode(candidate.closestNode);
+        qr.setClosestEdge(graph.getEdgeIteratorState(candidate.edge, candidate.adjNode));
+        qr.setWayIndex(candidate.wayIndex);
+        qr.setSnappedPosition(candidate.position);
+        qr.setQueryDistance(candidate.queryResult.getQueryDistance());
+        qr.calcSnappedPoint(distCalc);
+        return qr;
+    }
+
+    /**
+     * Calculates the scores of the candidates of the current step from the previous one.
+     * <p>
+     * @return false if no candidate is reachable
+     */
+    private boolean calcTransitions( Observation prev, Observation curr, double[] prevScores,
+                                     double[] currScores, int[] currParents )
+    {
+        TIntHashSet targets = new TIntHashSet(curr.candidates.size());
+        for (Candidate c : curr.candidates)
+        {
+            targets.add(c.queryResult.getClosestNode());
+        }
+
+        double gpsDistance = distCalc.calcDist(prev.point.lat, prev.point.lon, curr.point.lat, curr.point.lon);
+        double maxDistance = gpsDistance * maxDetourFactor + 2 * searchRadius;
+        Arrays.fill(currScores, Double.NEGATIVE_INFINITY);
+        boolean found = false;
+        for (int i = 0; i < prev.candidates.size(); i++)
+        {
+            search.search(prev.candidates.get(i).queryResult.getClosestNode(), targets, maxDistance);
+            for (int j = 0; j < curr.candidates.size(); j++)
+            {
+                QueryResult qr = curr.candidates.get(j).queryResult;
+                double routeDistance = search.getDistance(qr.getClosestNode());
+                if (routeDistance == Double.MAX_VALUE)
+                    continue;
+
+                double score = prevScores[i] - Math.abs(routeDistance - gpsDistance) / transitionBeta
+                        + calcEmissionLogProbability(qr.getQueryDistance());
+                if (score > currScores[j])
+                {
+                    currScores[j] = score;
+                    currParents[j] = i;
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+
+    private double calcEmissionLogProbability( double distance )
+    {
+        double tmp = distance / measurementSigma;
+        return -0.5 * tmp * tmp;
+    }
+
+    private static int argMax( double[] values )
+    {
+        int index = 0;
+        for (int i = 1; i < values.length; i++)
+        {
+            if (values[i] > values[index])
+                index = i;
+        }
+        return index;
+    }
+
+    private void addMatchedPoints( List<Observation> window, Candidate carry, MatchResult result )
+    {
+        for (Observation obs : window)
+        {
+            // the first point of a window was already reported in the previous window
+            if (carry != null && obs == carry.observation)
+                continue;
+
+            if (obs.chosen == null)
+            {
+                result.addMatchedPoint(new MatchedPoint(obs.index, obs.point));
+            } else
+            {
+                QueryResult qr = obs.chosen.queryResult;
+                result.addMatchedPoint(new MatchedPoint(obs.index, obs.point, obs.chosen.edge,
+                        qr.getSnappedPoint(), qr.getQueryDistance()));
+            }
+        }
+    }
+
+    /**
+     * Adds the edges and the geometry of the shortest paths between the chosen candidates.
+     */
+    private void addPath( QueryGraph queryGraph, List<Observation> steps, int[][] parents, boolean continued,
+                          MatchResult result )
+    {
+        NodeAccess nodeAccess = queryGraph.getNodeAccess();
+        TIntHashSet target = new TIntHashSet(1);
+        TIntArrayList edges = new TIntArrayList();
+        TIntArrayList adjNodes = new TIntArrayList();
+        for (int t = 0; t < steps.size(); t++)
+        {
+            Observation curr = steps.get(t);
+            int toNode = curr.chosen.queryResult.getClosestNode();
+            int choice = curr.candidates.indexOf(curr.chosen);
+            if (t == 0 || parents[t][choice] < 0)
+            {
+                // a continued window starts where the previous path ended
+                if (t > 0 || !continued)
+                    result.getPoints().add(nodeAccess, toNode);
+                continue;
+            }
+
+            Observation prev = steps.get(t - 1);
+            double gpsDistance = distCalc.calcDist(prev.point.lat, prev.point.lon, curr.point.lat, curr.point.lon);
+            target.clear();
+            target.add(toNode);
+            search.search(prev.chosen.queryResult.getClosestNode(), target, gpsDistance * maxDetourFactor + 2 * searchRadius);
+            edges.clear();
+            adjNodes.clear();
+            search.extractPath(toNode, edges, adjNodes);
+            for (int i = 0; i < edges.size(); i++)
+            {
+                EdgeIteratorState edge = queryGraph.getEdgeIteratorState(edges.get(i), adjNodes.get(i));
+                int originalEdge = edge.getEdge();
+                if (queryGraph.isVirtualEdge(originalEdge))
+                    originalEdge = ((VirtualEdgeIteratorState) edge).getOriginalTraversalKey() >> 1;
+
+                result.addEdge(originalEdge, edge.getDistance());
+                result.getPoints().add(edge.fetchWayGeometry(0));
+                // virtual nodes of other candidates are on the geometry and can be skipped
+                int adjNode = adjNodes.get(i);
+                if (adjNode == toNode || !queryGraph.isVirtualNode(adjNode))
+                    result.getPoints().add(nodeAccess, adjNode);
+            }
+        }
+    }
+
+    private static class Observation
+    {
+        final int index;
+        final GHPoint point;
+        final List<Candidate> candidates = new ArrayList<Candidate>(5);
+        Candidate chosen;
+
+        Observation( int index, GHPoint point )
+        {
+            this.index = index;
+            this.point = point;
+        }
+    }
+
+    /**
+     * A possible position of a GPS point. The original snapping is kept as the query result is
+     * changed by the query graph.
+     */
+    private static class Candidate
+    {
+        final Observation observation;
+        final QueryResult queryResult;
+        final int edge;
+        final int adjNode;
+        final int closestNode;
+        final int wayIndex;
+        final QueryResult.Position position;
+
+        Candidate( Observation observation, QueryResult queryResult )
+        {
+            this.observation = observation;
+            this.queryResult = queryResult;
+            this.edge = queryResult.getClosestEdge().getEdge();
+            this.adjNode = queryResult.getClosestEdge().getAdjNode();
+            this.closestNode = queryResult.getClosestNode();
+            this.wayIndex = queryResult.getWayIndex();
+            this.position = queryResult.getSnappedPosition();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.util.PointList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The matched points of a GPS trace and the path through the road network connecting them. Where
+ * no path between two consecutive points was found the matching is broken and the geometry jumps
+ * to the next matched point.
+ */
+public class MatchResult
+{
+    private final List<MatchedPoint> matchedPoints;
+    private final TIntArrayList edges;
+    private final PointList points;
+    private double distance;
+    private int breaks;
+
+    public MatchResult( boolean is3D )
+    {
+        matchedPoints = new ArrayList<MatchedPoint>();
+        edges = new TIntArrayList();
+        points = new PointList(10, is3D);
+    }
+
+    /**
+     * @return the result for every GPS point in the order of the trace
+     */
+    public List<MatchedPoint> getMatchedPoints()
+    {
+        return matchedPoints;
+    }
+
+    /**
+     * @return the ids of the traversed edges in the original graph
+     */
+    public TIntArrayList getEdges()
+    {
+        return edges;
+    }
+
+    /**
+     * @return the geometry of the matched path
+     */
+    public PointList getPoints()
+    {
+        return points;
+    }
+
+    /**
+     * @return the length of the matched path in meter
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * @return the number of times the path was interrupted as consecutive points were not
+     * connected
+     */
+    public int getBreaks()
+    {
+        return breaks;
+    }
+
+    void addMatchedPoint( MatchedPoint point )
+    {
+        matchedPoints.add(point);
+    }
+
+    void addEdge( int edge, double edgeDistance )
+    {
+        if (edges.isEmpty() || edges.get(edges.size() - 1) != edge)
+            edges.add(edge);
+        distance += edgeDistance;
+    }
+
+    void addBreak()
+    {
+        breaks++;
+    }
+
+    /**
+     * Appends the specified result of the following window.
+     */
+    public MatchResult add( MatchResult other )
+    {
+        matchedPoints.addAll(other.matchedPoints);
+        for (int i = 0; i < other.edges.size(); i++)
+        {
+            addEdge(other.edges.get(i), 0);
+        }
+        points.add(other.points);
+        distance += other.distance;
+        breaks += other.breaks;
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "points:" + matchedPoints.size() + ", edges:" + edges.size() + ", distance:" + distance
+                + ", breaks:" + breaks;
+    }
+}
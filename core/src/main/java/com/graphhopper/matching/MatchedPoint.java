@@ -0,0 +1,100 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * The result of the map matching for one GPS point.
+ */
+public class MatchedPoint
+{
+    private final int index;
+    private final GHPoint gpsPoint;
+    private final int edge;
+    private final GHPoint snappedPoint;
+    private final double distance;
+
+    /**
+     * Creates a point which could not be matched to a road.
+     */
+    public MatchedPoint( int index, GHPoint gpsPoint )
+    {
+        this(index, gpsPoint, EdgeIterator.NO_EDGE, null, Double.NaN);
+    }
+
+    public MatchedPoint( int index, GHPoint gpsPoint, int edge, GHPoint snappedPoint, double distance )
+    {
+        this.index = index;
+        this.gpsPoint = gpsPoint;
+        this.edge = edge;
+        this.snappedPoint = snappedPoint;
+        this.distance = distance;
+    }
+
+    /**
+     * @return the position of this point in the trace
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public GHPoint getGPSPoint()
+    {
+        return gpsPoint;
+    }
+
+    public boolean isMatched()
+    {
+        return edge != EdgeIterator.NO_EDGE;
+    }
+
+    /**
+     * @return the id of the edge in the original graph this point was matched to or NO_EDGE
+     */
+    public int getEdge()
+    {
+        return edge;
+    }
+
+    /**
+     * @return the point on the matched edge or null if not matched
+     */
+    public GHPoint getSnappedPoint()
+    {
+        return snappedPoint;
+    }
+
+    /**
+     * @return the distance in meter from the GPS point to the snapped point
+     */
+    public double getDistance()
+    {
+        return distance;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (!isMatched())
+            return index + ": " + gpsPoint + " unmatched";
+        return index + ": " + gpsPoint + " -> " + snappedPoint + ", edge:" + edge + ", distance:" + distance;
+    }
+}
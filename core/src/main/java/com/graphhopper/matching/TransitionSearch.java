@@ -0,0 +1,142 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * A one to many dijkstra on the distance which is bounded by a maximum distance and a maximum
+ * number of visited nodes. In contrast to DijkstraOneToMany the state is stored in hash maps so
+ * that it stays small for the short searches between GPS points, and it is reused between
+ * searches.
+ */
+class TransitionSearch
+{
+    private final TIntDoubleHashMap weights = new TIntDoubleHashMap(64, 0.5f, -1, Double.MAX_VALUE);
+    private final TIntIntHashMap parentEdges = new TIntIntHashMap(64, 0.5f, -1, EdgeIterator.NO_EDGE);
+    private final TIntIntHashMap parentNodes = new TIntIntHashMap(64, 0.5f, -1, -1);
+    private final TIntHashSet settled = new TIntHashSet(64, 0.5f, -1);
+    private final IntDoubleBinHeap heap = new IntDoubleBinHeap(64);
+    private EdgeExplorer explorer;
+    private int maxVisitedNodes = Integer.MAX_VALUE;
+    private int fromNode = -1;
+    private int visitedNodes;
+
+    void setExplorer( EdgeExplorer explorer )
+    {
+        this.explorer = explorer;
+    }
+
+    void setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        this.maxVisitedNodes = maxVisitedNodes;
+    }
+
+    /**
+     * Searches from the specified node until all target nodes are settled or one of the limits
+     * is reached.
+     */
+    void search( int from, TIntHashSet targets, double maxDistance )
+    {
+        weights.clear();
+        parentEdges.clear();
+        parentNodes.clear();
+        settled.clear();
+        heap.clear();
+        visitedNodes = 0;
+        fromNode = from;
+
+        int remaining = targets.size();
+        weights.put(from, 0);
+        heap.insert_(0, from);
+        while (!heap.isEmpty())
+        {
+            int node = heap.poll_element();
+            if (!settled.add(node))
+                continue;
+
+            if (targets.contains(node) && --remaining <= 0)
+                break;
+
+            if (++visitedNodes > maxVisitedNodes)
+                break;
+
+            double weight = weights.get(node);
+            EdgeIterator iter = explorer.setBaseNode(node);
+            while (iter.next())
+            {
+                int adjNode = iter.getAdjNode();
+                if (settled.contains(adjNode))
+                    continue;
+
+                double tmpWeight = weight + iter.getDistance();
+                if (tmpWeight > maxDistance || tmpWeight >= weights.get(adjNode))
+                    continue;
+
+                weights.put(adjNode, tmpWeight);
+                parentEdges.put(adjNode, iter.getEdge());
+                parentNodes.put(adjNode, node);
+                heap.insert_(tmpWeight, adjNode);
+            }
+        }
+    }
+
+    /**
+     * @return the distance of the shortest path to the specified node or Double.MAX_VALUE if it
+     * was not reached in the last search
+     */
+    double getDistance( int node )
+    {
+        if (!settled.contains(node))
+            return Double.MAX_VALUE;
+        return weights.get(node);
+    }
+
+    /**
+     * Adds the edges of the shortest path to the specified node in the order of traversal and the
+     * adjacent node of every edge to the specified node list.
+     */
+    void extractPath( int toNode, TIntArrayList edges, TIntArrayList adjNodes )
+    {
+        if (!settled.contains(toNode))
+            throw new IllegalStateException("Node " + toNode + " was not reached from " + fromNode);
+
+        int edgeStart = edges.size();
+        int nodeStart = adjNodes.size();
+        int node = toNode;
+        while (node != fromNode)
+        {
+            edges.add(parentEdges.get(node));
+            adjNodes.add(node);
+            node = parentNodes.get(node);
+        }
+        edges.reverse(edgeStart, edges.size());
+        adjNodes.reverse(nodeStart, adjNodes.size());
+    }
+
+    int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
@@ -104,6 +104,8 @@ public class AStar extends AbstractRoutingAlgorithm
             if (finished())
                 break;
 
+            checkLimits(visitedCount);
+
             EdgeIterator iter = explorer.setBaseNode(currVertex);
             while (iter.next())
             {
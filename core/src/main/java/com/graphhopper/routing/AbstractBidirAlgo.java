@@ -68,6 +68,7 @@ public abstract class AbstractBidirAlgo extends AbstractRoutingAlgorithm
     {
         while (!finished() && !isWeightLimitExceeded())
         {
+            checkLimits(visitedCountFrom + visitedCountTo);
             if (!finishedFrom && !finishedTo)
             {
                 if (getCurrentFromWeight() < getCurrentToWeight())
@@ -39,6 +39,8 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
     protected final FlagEncoder flagEncoder;
     protected final TraversalMode traversalMode;
     protected double weightLimit = Double.MAX_VALUE;
+    protected int maxVisitedNodes = Integer.MAX_VALUE;
+    protected long deadline = Long.MAX_VALUE;
     private boolean alreadyRun;
 
     /**
@@ -64,6 +66,18 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         this.weightLimit = weight;
     }
 
+    @Override
+    public void setMaxVisitedNodes( int maxVisitedNodes )
+    {
+        this.maxVisitedNodes = maxVisitedNodes;
+    }
+
+    @Override
+    public void setDeadline( long deadline )
+    {
+        this.deadline = deadline;
+    }
+
     public RoutingAlgorithm setEdgeFilter( EdgeFilter additionalEdgeFilter )
     {
         this.additionalEdgeFilter = additionalEdgeFilter;
@@ -90,6 +104,20 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         alreadyRun = true;
     }
 
+    /**
+     * Throws an exception if the search visited too many nodes or is running too long. The clock
+     * is only read every 256 visited nodes.
+     */
+    protected void checkLimits( int visitedNodes )
+    {
+        if (visitedNodes > maxVisitedNodes)
+            throw new RoutingBudgetExceededException("Routing aborted as the maximum number of visited nodes ("
+                    + maxVisitedNodes + ") was exceeded");
+
+        if (deadline != Long.MAX_VALUE && (visitedNodes & 0xFF) == 0 && System.currentTimeMillis() > deadline)
+            throw new RoutingBudgetExceededException("Routing aborted as it took too long, visited nodes: " + visitedNodes);
+    }
+
     protected EdgeEntry createEdgeEntry( int node, double weight )
     {
         return new EdgeEntry(EdgeIterator.NO_EDGE, node, weight);
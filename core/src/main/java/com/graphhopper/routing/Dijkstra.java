@@ -79,6 +79,8 @@ public class Dijkstra extends AbstractRoutingAlgorithm
             if (isWeightLimitExceeded() || finished())
                 break;
 
+            checkLimits(visitedNodes);
+
             int startNode = currEdge.adjNode;
             EdgeIterator iter = explorer.setBaseNode(startNode);
             while (iter.next())
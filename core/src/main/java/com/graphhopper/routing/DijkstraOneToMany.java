@@ -155,6 +155,7 @@ public class DijkstraOneToMany extends AbstractRoutingAlgorithm
         while (true)
         {
             visitedNodes++;
+            checkLimits(visitedNodes);
             EdgeIterator iter = outEdgeExplorer.setBaseNode(currNode);
             while (iter.next())
             {
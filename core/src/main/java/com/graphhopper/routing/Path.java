@@ -49,7 +49,7 @@ public class Path
     protected long time;
     private boolean found;
     protected EdgeEntry edgeEntry;
-    final StopWatch extractSW = new StopWatch("extract");
+    long extractNanos;
     private int fromNode = -1;
     protected int endNode = -1;
     private TIntList edgeIds;
@@ -180,7 +180,7 @@ public class Path
         if (isFound())
             throw new IllegalStateException("Extract can only be called once");
 
-        extractSW.start();
+        long start = System.nanoTime();
         EdgeEntry goalEdge = edgeEntry;
         setEndNode(goalEdge.adjNode);
         while (EdgeIterator.Edge.isValid(goalEdge.edge))
@@ -191,7 +191,7 @@ public class Path
 
         setFromNode(goalEdge.adjNode);
         reverseOrder();
-        extractSW.stop();
+        extractNanos = System.nanoTime() - start;
         return setFound(true);
     }
 
@@ -208,12 +208,20 @@ public class Path
      */
     public long getExtractTime()
     {
-        return extractSW.getNanos();
+        return extractNanos;
     }
 
     public String getDebugInfo()
     {
-        return extractSW.toString();
+        return "extract time:" + extractNanos / 1e9f;
+    }
+
+    /**
+     * @return the number of edges of this path
+     */
+    public int getEdgeCount()
+    {
+        return edgeIds.size();
     }
 
     /**
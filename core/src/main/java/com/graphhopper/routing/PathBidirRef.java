@@ -68,7 +68,7 @@ public class PathBidirRef extends Path
         if (edgeEntry.adjNode != edgeTo.adjNode)
             throw new IllegalStateException("Locations of the 'to'- and 'from'-Edge has to be the same." + toString() + ", fromEntry:" + edgeEntry + ", toEntry:" + edgeTo);
 
-        extractSW.start();
+        long start = System.nanoTime();
         if (switchWrapper)
         {
             EdgeEntry ee = edgeEntry;
@@ -93,7 +93,7 @@ public class PathBidirRef extends Path
             tmpEdge = currEdge.edge;
         }
         setEndNode(currEdge.adjNode);
-        extractSW.stop();
+        extractNanos = System.nanoTime() - start;
         return setFound(true);
     }
 }
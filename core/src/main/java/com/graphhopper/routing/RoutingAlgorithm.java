@@ -40,6 +40,18 @@ public interface RoutingAlgorithm
      */
     void setWeightLimit( double weight );
 
+    /**
+     * Aborts the search with a RoutingBudgetExceededException if more nodes are visited. The default is
+     * Integer.MAX_VALUE.
+     */
+    void setMaxVisitedNodes( int maxVisitedNodes );
+
+    /**
+     * Aborts the search with a RoutingBudgetExceededException if it is still running at the specified
+     * time in milliseconds (see System.currentTimeMillis). The default is Long.MAX_VALUE.
+     */
+    void setDeadline( long deadline );
+
     /**
      * @return name of this algorithm
      */
@@ -439,7 +439,14 @@ public class EncodingManager
      */
     public static EncodingManager create( String ghLoc )
     {
-        Directory dir = new RAMDirectory(ghLoc, true);
+        return create(new RAMDirectory(ghLoc, true));
+    }
+
+    /**
+     * Create the EncodingManager from the properties stored in the specified directory.
+     */
+    public static EncodingManager create( Directory dir )
+    {
         StorableProperties properties = new StorableProperties(dir);
         if (!properties.loadExisting())
             throw new IllegalStateException("Cannot load properties to fetch EncodingManager configuration at: "
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.routing.util;
 
+import com.graphhopper.storage.SpeedOverlay;
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PMap;
 
@@ -38,6 +39,7 @@ public class FastestWeighting implements Weighting
     private final double heading_penalty;
     protected final FlagEncoder flagEncoder;
     private final double maxSpeed;
+    private SpeedOverlay speedOverlay;
 
     public FastestWeighting( FlagEncoder encoder, PMap pMap )
     {
@@ -54,6 +56,19 @@ public class FastestWeighting implements Weighting
         this(encoder, new PMap(0));
     }
 
+    /**
+     * Uses the speeds of the specified overlay instead of the speeds from the edge flags where
+     * available. The overlay has to be for the same vehicle.
+     */
+    public FastestWeighting setSpeedOverlay( SpeedOverlay speedOverlay )
+    {
+        if (speedOverlay != null && speedOverlay.getEncoder() != flagEncoder)
+            throw new IllegalArgumentException("Speed overlay " + speedOverlay + " is not for " + flagEncoder);
+
+        this.speedOverlay = speedOverlay;
+        return this;
+    }
+
     @Override
     public double getMinWeight( double distance )
     {
@@ -63,7 +78,7 @@ public class FastestWeighting implements Weighting
     @Override
     public double calcWeight( EdgeIteratorState edge, boolean reverse, int prevOrNextEdgeId )
     {
-        double speed = reverse ? flagEncoder.getReverseSpeed(edge.getFlags()) : flagEncoder.getSpeed(edge.getFlags());
+        double speed = getSpeed(edge, reverse);
         if (speed == 0)
             return Double.POSITIVE_INFINITY;
 
@@ -77,6 +92,17 @@ public class FastestWeighting implements Weighting
         return time;
     }
 
+    protected double getSpeed( EdgeIteratorState edge, boolean reverse )
+    {
+        if (speedOverlay != null)
+        {
+            double speed = speedOverlay.getSpeed(edge, reverse);
+            if (!Double.isNaN(speed))
+                return speed;
+        }
+        return reverse ? flagEncoder.getReverseSpeed(edge.getFlags()) : flagEncoder.getSpeed(edge.getFlags());
+    }
+
     @Override
     public FlagEncoder getFlagEncoder()
     {
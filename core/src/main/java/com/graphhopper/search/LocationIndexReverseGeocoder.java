@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.search;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.QueryResult;
+import com.graphhopper.util.shapes.GHPlace;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the street name of a point via the closest edge of the location index. Results are cached
+ * per cell of quantized coordinates, so points of the same cell (by default ~10m) share the street
+ * and snapped point of the first lookup. The cache is direct mapped with immutable entries and needs
+ * no locking, so it can be used from many threads.
+ */
+public class LocationIndexReverseGeocoder implements ReverseGeocoding
+{
+    private static final double METERS_PER_DEGREE = 111200;
+    private final LocationIndex index;
+    private EdgeFilter edgeFilter = EdgeFilter.ALL_EDGES;
+    private double factor;
+    private CacheEntry[] cache;
+    private int cacheBits;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocationIndexReverseGeocoder( LocationIndex index )
+    {
+        this.index = index;
+        setCacheResolution(10);
+        setCacheSize(1 << 16);
+    }
+
+    /**
+     * @param meters the size of the cells for which the result is cached
+     */
+    public LocationIndexReverseGeocoder setCacheResolution( double meters )
+    {
+        if (meters <= 0)
+            throw new IllegalArgumentException("resolution has to be positive but was " + meters);
+
+        factor = METERS_PER_DEGREE / meters;
+        clearCache();
+        return this;
+    }
+
+    /**
+     * @param size the number of cached cells, rounded to a power of two. 0 disables the cache.
+     */
+    public LocationIndexReverseGeocoder setCacheSize( int size )
+    {
+        cacheBits = size <= 0 ? -1 : Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+        clearCache();
+        return this;
+    }
+
+    /**
+     * Restricts the edges which are considered, e.g. to the edges accessible for a vehicle.
+     */
+    public LocationIndexReverseGeocoder setEdgeFilter( EdgeFilter edgeFilter )
+    {
+        this.edgeFilter = edgeFilter;
+        clearCache();
+        return this;
+    }
+
+    public final void clearCache()
+    {
+        cache = cacheBits < 0 ? null : new CacheEntry[1 << cacheBits];
+    }
+
+    public long getCacheHits()
+    {
+        return hits.get();
+    }
+
+    public long getCacheMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns one place for every point in the same order. The place is the snapped point with the
+     * name of the closest street or the unchanged point with an empty name if no street was found.
+     */
+    @Override
+    public List<GHPlace> places2names( GHPlace... points )
+    {
+        List<GHPlace> resList = new ArrayList<GHPlace>(points.length);
+        for (GHPlace point : points)
+        {
+            resList.add(lookup(point.lat, point.lon));
+        }
+        return resList;
+    }
+
+    /**
+     * Batch variant of places2names for many points, e.g. GPS traces.
+     */
+    public List<GHPlace> points2names( List<? extends GHPoint> points )
+    {
+        List<GHPlace> resList = new ArrayList<GHPlace>(points.size());
+        for (GHPoint point : points)
+        {
+            resList.add(lookup(point.lat, point.lon));
+        }
+        return resList;
+    }
+
+    /**
+     * @return the name of the street closest to the specified point or an empty string
+     */
+    public String getName( double lat, double lon )
+    {
+        return lookup(lat, lon).getName();
+    }
+
+    private GHPlace lookup( double lat, double lon )
+    {
+        CacheEntry[] tmpCache = cache;
+        if (tmpCache == null)
+            return find(lat, lon);
+
+        long key = (long) Math.floor(lat * factor) << 32 | (long) Math.floor(lon * factor) & 0xFFFFFFFFL;
+        int cacheIndex = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - cacheBits));
+        CacheEntry entry = tmpCache[cacheIndex];
+        if (entry != null && entry.key == key)
+        {
+            hits.incrementAndGet();
+            return new GHPlace(entry.lat, entry.lon).setName(entry.name);
+        }
+
+        misses.incrementAndGet();
+        GHPlace place = find(lat, lon);
+        tmpCache[cacheIndex] = new CacheEntry(key, place.lat, place.lon, place.getName());
+        return place;
+    }
+
+    private GHPlace find( double lat, double lon )
+    {
+        QueryResult qr = index.findClosest(lat, lon, edgeFilter);
+        if (!qr.isValid())
+            return new GHPlace(lat, lon);
+
+        return new GHPlace(qr.getSnappedPoint().lat, qr.getSnappedPoint().lon).setName(qr.getClosestEdge().getName());
+    }
+
+    private static class CacheEntry
+    {
+        final long key;
+        final double lat;
+        final double lon;
+        final String name;
+
+        CacheEntry( long key, double lat, double lon, String name )
+        {
+            this.key = key;
+            this.lat = lat;
+            this.lon = lon;
+            this.name = name;
+        }
+    }
+}
@@ -19,13 +19,21 @@ package com.graphhopper.search;
 
 import com.graphhopper.storage.DataAccess;
 import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.MemoryReport;
 import com.graphhopper.storage.Storable;
 import com.graphhopper.util.BitUtil;
 import com.graphhopper.util.Helper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
+ * Stores the names of the edges. Identical names are stored only once: while putting names a
+ * dictionary from the name to its pointer is used, which is rebuilt from the stored names if
+ * necessary. Recently decoded names are cached.
+ * <p>
  * @author Ottavio Campana
  * @author Peter Karich
  */
@@ -33,11 +41,17 @@ public class NameIndex implements Storable<NameIndex>
 {
     private static final Logger logger = LoggerFactory.getLogger(NameIndex.class);
     private static final long START_POINTER = 1;
+    private static final int CACHE_BITS = 10;
     private final DataAccess names;
     private long bytePointer = START_POINTER;
     // minor optimization for the previous stored name
     private String lastName;
     private long lastIndex;
+    // only necessary while putting names, null if not yet (re)built
+    private Map<String, Long> dictionary;
+    private int maxDictionarySize = 1 << 20;
+    // direct mapped, entries are immutable so no synchronization is necessary
+    private final CacheEntry[] cache = new CacheEntry[1 << CACHE_BITS];
 
     public NameIndex( Directory dir )
     {
@@ -63,6 +77,16 @@ public class NameIndex implements Storable<NameIndex>
         return false;
     }
 
+    /**
+     * Limits the number of distinct names hold in memory for deduplication while putting names.
+     * Names not in the dictionary are stored again.
+     */
+    public NameIndex setMaxDictionarySize( int maxDictionarySize )
+    {
+        this.maxDictionarySize = maxDictionarySize;
+        return this;
+    }
+
     /**
      * @return the byte pointer to the name
      */
@@ -76,6 +100,17 @@ public class NameIndex implements Storable<NameIndex>
         {
             return lastIndex;
         }
+        if (dictionary == null)
+            initDictionary();
+
+        Long existing = dictionary.get(name);
+        if (existing != null)
+        {
+            lastName = name;
+            lastIndex = existing;
+            return existing;
+        }
+
         byte[] bytes = getBytes(name);
         long oldPointer = bytePointer;
         names.ensureCapacity(bytePointer + 1 + bytes.length);
@@ -89,9 +124,28 @@ public class NameIndex implements Storable<NameIndex>
         bytePointer += bytes.length;
         lastName = name;
         lastIndex = oldPointer;
+        if (dictionary.size() < maxDictionarySize)
+            dictionary.put(name, oldPointer);
         return oldPointer;
     }
 
+    /**
+     * Reads all stored names into the dictionary, e.g. if names are added after loading.
+     */
+    private void initDictionary()
+    {
+        dictionary = new HashMap<String, Long>();
+        long pointer = START_POINTER;
+        while (pointer < bytePointer && dictionary.size() < maxDictionarySize)
+        {
+            int size = getSize(pointer);
+            String name = decode(pointer, size);
+            if (!dictionary.containsKey(name))
+                dictionary.put(name, pointer);
+            pointer += 1 + size;
+        }
+    }
+
     private byte[] getBytes( String name )
     {
         byte[] bytes = null;
@@ -125,17 +179,35 @@ public class NameIndex implements Storable<NameIndex>
         if (pointer == 0)
             return "";
 
+        int cacheIndex = (int) ((pointer * 0x9E3779B97F4A7C15L) >>> (64 - CACHE_BITS));
+        CacheEntry entry = cache[cacheIndex];
+        if (entry != null && entry.pointer == pointer)
+            return entry.name;
+
+        String name = decode(pointer, getSize(pointer));
+        cache[cacheIndex] = new CacheEntry(pointer, name);
+        return name;
+    }
+
+    private int getSize( long pointer )
+    {
         byte[] sizeBytes = new byte[1];
         names.getBytes(pointer, sizeBytes, 1);
-        int size = sizeBytes[0] & 0xFF;
+        return sizeBytes[0] & 0xFF;
+    }
+
+    private String decode( long pointer, int size )
+    {
         byte[] bytes = new byte[size];
-        names.getBytes(pointer + sizeBytes.length, bytes, size);
+        names.getBytes(pointer + 1, bytes, size);
         return new String(bytes, Helper.UTF_CS);
     }
 
     @Override
     public void flush()
     {
+        // free the memory, it will be rebuilt if more names are put
+        dictionary = null;
         names.setHeader(0, BitUtil.LITTLE.getIntLow(bytePointer));
         names.setHeader(4, BitUtil.LITTLE.getIntHigh(bytePointer));
         names.flush();
@@ -164,8 +236,26 @@ public class NameIndex implements Storable<NameIndex>
         return names.getCapacity();
     }
 
+    public void updateMemoryReport( MemoryReport report )
+    {
+        report.setUsedBytes(names, bytePointer);
+    }
+
     public void copyTo( NameIndex nameIndex )
     {
         names.copyTo(nameIndex.names);
+        nameIndex.dictionary = null;
+    }
+
+    private static class CacheEntry
+    {
+        final long pointer;
+        final String name;
+
+        CacheEntry( long pointer, String name )
+        {
+            this.pointer = pointer;
+            this.name = name;
+        }
     }
 }
@@ -0,0 +1,520 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.search;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.Storable;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPlace;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * An embedded geocoder for street names. All distinct edge names are stored sorted by their
+ * normalized form (lower case, single spaces) together with the ids of their edges, so a name or
+ * prefix is found via binary search directly in the DataAccess, which can be memory mapped.
+ * <p>
+ * Fuzzy lookups allow up to 2 typos but require the first letter to match. To keep the latency
+ * bounded only names of a similar length are compared and at most MAX_FUZZY_NAMES names per
+ * lookup are scanned.
+ */
+public class StreetNameIndex implements Geocoding, Storable<StreetNameIndex>
+{
+    private static final Logger logger = LoggerFactory.getLogger(StreetNameIndex.class);
+    private static final int MAGIC_INT = 0x534e4902;
+    // every entry has a pointer to the name, to its normalized key, the start of its edge ids and the number of edges
+    private static final int E_NAME = 0, E_KEY = 4, E_EDGES = 8, E_EDGE_COUNT = 12, ENTRY_BYTES = 16;
+    private static final int MAX_BYTES = 255;
+    static final int MAX_FUZZY_NAMES = 20000;
+    private final Graph graph;
+    private final DataAccess index;
+    private int nameCount;
+    private int edgeCount;
+    private long edgesStart;
+    private long namesStart;
+
+    public StreetNameIndex( Graph graph, Directory dir )
+    {
+        this.graph = graph;
+        this.index = dir.find("street_name_index");
+    }
+
+    @Override
+    public StreetNameIndex create( long bytes )
+    {
+        index.create(bytes);
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!index.loadExisting())
+            return false;
+
+        if (index.getHeader(0) != MAGIC_INT)
+            throw new IllegalStateException("incorrect street name index version");
+
+        nameCount = index.getHeader(1 * 4);
+        edgeCount = index.getHeader(2 * 4);
+        initOffsets();
+        return true;
+    }
+
+    private void initOffsets()
+    {
+        edgesStart = (long) nameCount * ENTRY_BYTES;
+        namesStart = edgesStart + (long) edgeCount * 4;
+    }
+
+    /**
+     * Collects the names of all edges of the graph and stores them sorted.
+     */
+    public StreetNameIndex prepareIndex()
+    {
+        StopWatch sw = new StopWatch().start();
+        Map<String, TIntArrayList> edgesPerName = new HashMap<String, TIntArrayList>();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            String name = iter.getName();
+            if (Helper.isEmpty(name))
+                continue;
+
+            TIntArrayList edges = edgesPerName.get(name);
+            if (edges == null)
+            {
+                edges = new TIntArrayList(2);
+                edgesPerName.put(name, edges);
+            }
+            edges.add(iter.getEdge());
+        }
+
+        List<String> names = new ArrayList<String>(edgesPerName.keySet());
+        final Map<String, byte[]> keys = new HashMap<String, byte[]>(names.size());
+        for (String name : names)
+        {
+            keys.put(name, toBytes(normalize(name)));
+        }
+        // sorted by the bytes of the key so that a lookup can compare the stored bytes directly
+        Collections.sort(names, new Comparator<String>()
+        {
+            @Override
+            public int compare( String o1, String o2 )
+            {
+                byte[] key1 = keys.get(o1);
+                byte[] key2 = keys.get(o2);
+                int res = compareBytes(key1, key1.length, key2, key2.length);
+                return res != 0 ? res : o1.compareTo(o2);
+            }
+        });
+
+        nameCount = names.size();
+        edgeCount = 0;
+        for (TIntArrayList edges : edgesPerName.values())
+        {
+            edgeCount += edges.size();
+        }
+        initOffsets();
+
+        List<byte[]> nameBytes = new ArrayList<byte[]>(nameCount);
+        long bytes = namesStart;
+        for (String name : names)
+        {
+            byte[] b = toBytes(name);
+            nameBytes.add(b);
+            bytes += 2 + b.length + keys.get(name).length;
+        }
+
+        create(Math.max(4, bytes));
+        long namePointer = namesStart;
+        long edgePointer = edgesStart;
+        for (int i = 0; i < nameCount; i++)
+        {
+            TIntArrayList edges = edgesPerName.get(names.get(i));
+            long entryPointer = (long) i * ENTRY_BYTES;
+            index.setInt(entryPointer + E_NAME, (int) (namePointer - namesStart));
+            byte[] b = nameBytes.get(i);
+            namePointer = writeBytes(namePointer, b);
+            index.setInt(entryPointer + E_KEY, (int) (namePointer - namesStart));
+            namePointer = writeBytes(namePointer, keys.get(names.get(i)));
+            index.setInt(entryPointer + E_EDGES, (int) ((edgePointer - edgesStart) / 4));
+            index.setInt(entryPointer + E_EDGE_COUNT, edges.size());
+            for (int j = 0; j < edges.size(); j++, edgePointer += 4)
+            {
+                index.setInt(edgePointer, edges.get(j));
+            }
+        }
+        flush();
+        logger.info("street name index created in " + sw.stop().getSeconds() + "s, names: " + nameCount
+                + ", edges: " + edgeCount + ", size:" + Helper.nf(bytes));
+        return this;
+    }
+
+    private long writeBytes( long pointer, byte[] b )
+    {
+        index.setBytes(pointer, new byte[]
+        {
+            (byte) b.length
+        }, 1);
+        index.setBytes(pointer + 1, b, b.length);
+        return pointer + 1 + b.length;
+    }
+
+    /**
+     * @return the UTF-8 bytes of the specified string limited to 255 bytes
+     */
+    static byte[] toBytes( String str )
+    {
+        byte[] b = str.getBytes(Helper.UTF_CS);
+        // names are already limited to 255 bytes by the NameIndex
+        if (b.length > MAX_BYTES)
+            b = str.substring(0, 256 / 4).getBytes(Helper.UTF_CS);
+        return b;
+    }
+
+    /**
+     * Compares the bytes unsigned, which is the order of the code points for UTF-8.
+     */
+    static int compareBytes( byte[] b1, int len1, byte[] b2, int len2 )
+    {
+        int len = Math.min(len1, len2);
+        for (int i = 0; i < len; i++)
+        {
+            int res = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+            if (res != 0)
+                return res;
+        }
+        return len1 - len2;
+    }
+
+    private static boolean startsWith( byte[] b, int len, byte[] prefix )
+    {
+        if (len < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++)
+        {
+            if (b[i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lower case with single spaces as separator.
+     */
+    public static String normalize( String name )
+    {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c))
+            {
+                space = sb.length() > 0;
+                continue;
+            }
+
+            if (space)
+                sb.append(' ');
+            space = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    public int getNameCount()
+    {
+        return nameCount;
+    }
+
+    String getName( int entry )
+    {
+        long pointer = namesStart + index.getInt((long) entry * ENTRY_BYTES + E_NAME);
+        byte[] sizeBytes = new byte[1];
+        index.getBytes(pointer, sizeBytes, 1);
+        int size = sizeBytes[0] & 0xFF;
+        byte[] bytes = new byte[size];
+        index.getBytes(pointer + 1, bytes, size);
+        return new String(bytes, Helper.UTF_CS);
+    }
+
+    /**
+     * Reads the normalized key of the specified entry into the buffer without allocating.
+     * <p>
+     * @return the length of the key
+     */
+    private int readKey( int entry, byte[] buffer )
+    {
+        long pointer = namesStart + index.getInt((long) entry * ENTRY_BYTES + E_KEY);
+        index.getBytes(pointer, buffer, 1);
+        int size = buffer[0] & 0xFF;
+        index.getBytes(pointer + 1, buffer, size);
+        return size;
+    }
+
+    int[] getEdges( int entry )
+    {
+        long entryPointer = (long) entry * ENTRY_BYTES;
+        long pointer = edgesStart + (long) index.getInt(entryPointer + E_EDGES) * 4;
+        int[] edges = new int[index.getInt(entryPointer + E_EDGE_COUNT)];
+        for (int i = 0; i < edges.length; i++, pointer += 4)
+        {
+            edges[i] = index.getInt(pointer);
+        }
+        return edges;
+    }
+
+    /**
+     * @return the index of the first name whose key is not smaller than the specified key
+     */
+    private int lowerBound( byte[] key, byte[] buffer )
+    {
+        int low = 0, high = nameCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (compareBytes(buffer, readKey(mid, buffer), key, key.length) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Finds streets whose name starts with the specified query, exact matches first. If fuzzy is
+     * true and not enough streets were found, names with a few typos are added.
+     */
+    public List<Match> search( String query, int limit, boolean fuzzy )
+    {
+        List<Match> result = new ArrayList<Match>();
+        String key = normalize(query);
+        if (key.isEmpty() || limit <= 0)
+            return result;
+
+        byte[] keyBytes = toBytes(key);
+        byte[] buffer = new byte[MAX_BYTES];
+        TIntHashSet found = new TIntHashSet();
+        List<Match> prefixMatches = new ArrayList<Match>();
+        // exact matches are sorted first, the prefix matches are already sorted
+        for (int entry = lowerBound(keyBytes, buffer); entry < nameCount; entry++)
+        {
+            int len = readKey(entry, buffer);
+            if (!startsWith(buffer, len, keyBytes))
+                break;
+
+            boolean exact = len == keyBytes.length;
+            Match m = new Match(entry, getName(entry), 0, exact);
+            if (exact)
+                result.add(m);
+            else
+                prefixMatches.add(m);
+            found.add(entry);
+            if (result.size() + prefixMatches.size() >= limit)
+                break;
+        }
+        result.addAll(prefixMatches);
+
+        if (fuzzy && result.size() < limit)
+        {
+            int maxDistance = key.length() <= 4 ? 1 : 2;
+            byte[] firstLetter = toBytes(key.substring(0, Character.charCount(key.codePointAt(0))));
+            List<Match> fuzzyMatches = new ArrayList<Match>();
+            int start = lowerBound(firstLetter, buffer);
+            int end = (int) Math.min(nameCount, (long) start + MAX_FUZZY_NAMES);
+            for (int entry = start; entry < end; entry++)
+            {
+                int len = readKey(entry, buffer);
+                if (!startsWith(buffer, len, firstLetter))
+                    break;
+
+                // one typo changes at most 3 bytes in UTF-8
+                if (found.contains(entry) || Math.abs(len - keyBytes.length) > 3 * maxDistance)
+                    continue;
+
+                int distance = calcDistance(new String(buffer, 0, len, Helper.UTF_CS), key, maxDistance);
+                if (distance <= maxDistance)
+                    fuzzyMatches.add(new Match(entry, getName(entry), distance, false));
+            }
+            Collections.sort(fuzzyMatches, new Comparator<Match>()
+            {
+                @Override
+                public int compare( Match o1, Match o2 )
+                {
+                    return o1.distance - o2.distance;
+                }
+            });
+            result.addAll(fuzzyMatches);
+        }
+
+        if (result.size() > limit)
+            result = new ArrayList<Match>(result.subList(0, limit));
+        return result;
+    }
+
+    /**
+     * @return the Levenshtein distance or maxDistance + 1 if it is larger than maxDistance
+     */
+    static int calcDistance( String s1, String s2, int maxDistance )
+    {
+        if (Math.abs(s1.length() - s2.length()) > maxDistance)
+            return maxDistance + 1;
+
+        int[] prev = new int[s2.length() + 1];
+        int[] curr = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++)
+        {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++)
+        {
+            curr[0] = i;
+            int rowMin = curr[0];
+            for (int j = 1; j <= s2.length(); j++)
+            {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, curr[j]);
+            }
+            if (rowMin > maxDistance)
+                return maxDistance + 1;
+
+            int[] tmp = prev;
+            prev = curr;
+            curr = tmp;
+        }
+        return Math.min(prev[s2.length()], maxDistance + 1);
+    }
+
+    /**
+     * @return the middle point of the first edge with the name of the specified match
+     */
+    public GHPlace getPlace( Match match )
+    {
+        int edge = getEdges(match.entry)[0];
+        PointList points = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE).fetchWayGeometry(3);
+        int middle = points.getSize() / 2;
+        return new GHPlace(points.getLatitude(middle), points.getLongitude(middle)).setName(match.name);
+    }
+
+    /**
+     * @return the ids of all edges with the name of the specified match
+     */
+    public int[] getEdges( Match match )
+    {
+        return getEdges(match.entry);
+    }
+
+    /**
+     * Returns the best matching street for every place name. Places without a match are skipped.
+     */
+    @Override
+    public List<GHPlace> names2places( GHPlace... places )
+    {
+        List<GHPlace> resList = new ArrayList<GHPlace>(places.length);
+        for (GHPlace place : places)
+        {
+            if (Helper.isEmpty(place.getName()))
+                continue;
+
+            List<Match> matches = search(place.getName(), 1, true);
+            if (!matches.isEmpty())
+                resList.add(getPlace(matches.get(0)));
+        }
+        return resList;
+    }
+
+    @Override
+    public void flush()
+    {
+        index.setHeader(0, MAGIC_INT);
+        index.setHeader(1 * 4, nameCount);
+        index.setHeader(2 * 4, edgeCount);
+        index.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        index.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return index.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return index.getCapacity();
+    }
+
+    public static class Match
+    {
+        private final int entry;
+        private final String name;
+        private final int distance;
+        private final boolean exact;
+
+        Match( int entry, String name, int distance, boolean exact )
+        {
+            this.entry = entry;
+            this.name = name;
+            this.distance = distance;
+            this.exact = exact;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the number of typos, 0 for exact and prefix matches
+         */
+        public int getDistance()
+        {
+            return distance;
+        }
+
+        public boolean isExact()
+        {
+            return exact;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name + (exact ? "" : distance == 0 ? "*" : "~" + distance);
+        }
+    }
+}
@@ -110,10 +110,19 @@ public abstract class AbstractDataAccess implements DataAccess
 
     protected long readHeader( RandomAccessFile raFile ) throws IOException
     {
-        raFile.seek(0);
-        if (raFile.length() == 0)
+        return readHeader(raFile, 0);
+    }
+
+    /**
+     * Reads the header which starts at the specified position of the file.
+     */
+    protected long readHeader( RandomAccessFile raFile, long filePosition ) throws IOException
+    {
+        if (raFile.length() <= filePosition)
             return -1;
 
+        raFile.seek(filePosition);
+
         String versionHint = raFile.readUTF();
         if (!"GH".equals(versionHint))
             throw new IllegalArgumentException("Not a GraphHopper file! Expected 'GH' as file marker but was " + versionHint);
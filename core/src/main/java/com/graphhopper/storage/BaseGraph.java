@@ -56,6 +56,13 @@ class BaseGraph implements Graph
     int edgeEntryBytes;
     private boolean initialized = false;
     final DataAccess edges;
+    // optional storage for the edge fields only necessary to build the response (geometry, name,
+    // additional field). If null these fields are stored together with the routing data in 'edges'
+    DataAccess coldEdges;
+    /**
+     * Specifies how many entries (integers) are used per edge in the cold edge area.
+     */
+    int coldEdgeEntryBytes;
     /**
      * interval [0,n)
      */
@@ -74,7 +81,7 @@ class BaseGraph implements Graph
     final BBox bounds;
     // remove markers are not yet persistent!
     private GHBitSet removedNodes;
-    private int edgeEntryIndex, nodeEntryIndex;
+    private int edgeEntryIndex, coldEdgeEntryIndex, nodeEntryIndex;
     final NodeAccess nodeAccess;
     final GraphExtension extStorage;
     // length | nodeA | nextNode | ... | nodeB
@@ -223,6 +230,18 @@ class BaseGraph implements Graph
         return 5;
     }
 
+    protected int loadColdEdgesHeader()
+    {
+        coldEdgeEntryBytes = coldEdges.getHeader(0);
+        return 1;
+    }
+
+    protected int setColdEdgesHeader()
+    {
+        coldEdges.setHeader(0, coldEdgeEntryBytes);
+        return 1;
+    }
+
     protected int loadWayGeometryHeader()
     {
         maxGeoRef = wayGeometry.getHeader(0);
@@ -238,6 +257,7 @@ class BaseGraph implements Graph
     void initStorage()
     {
         edgeEntryIndex = 0;
+        coldEdgeEntryIndex = 0;
         nodeEntryIndex = 0;
         boolean flagsSizeIsLong = encodingManager.getBytesForFlags() == 8;
         edgeAccess.init(nextEdgeEntryIndex(4),
@@ -248,10 +268,10 @@ class BaseGraph implements Graph
                 nextEdgeEntryIndex(encodingManager.getBytesForFlags()),
                 flagsSizeIsLong);
 
-        E_GEO = nextEdgeEntryIndex(4);
-        E_NAME = nextEdgeEntryIndex(4);
+        E_GEO = nextColdEdgeEntryIndex(4);
+        E_NAME = nextColdEdgeEntryIndex(4);
         if (extStorage.isRequireEdgeField())
-            E_ADDITIONAL = nextEdgeEntryIndex(4);
+            E_ADDITIONAL = nextColdEdgeEntryIndex(4);
         else
             E_ADDITIONAL = -1;
 
@@ -298,6 +318,20 @@ class BaseGraph implements Graph
         return tmp;
     }
 
+    /**
+     * Reserves space for a field which is not necessary while routing. Without separate cold edges
+     * it is appended to the edge entry.
+     */
+    private int nextColdEdgeEntryIndex( int sizeInBytes )
+    {
+        if (coldEdges == null)
+            return nextEdgeEntryIndex(sizeInBytes);
+
+        int tmp = coldEdgeEntryIndex;
+        coldEdgeEntryIndex += sizeInBytes;
+        return tmp;
+    }
+
     protected final int nextNodeEntryIndex( int sizeInBytes )
     {
         int tmp = nodeEntryIndex;
@@ -309,6 +343,43 @@ class BaseGraph implements Graph
     {
         nodeEntryBytes = nodeEntryIndex;
         edgeEntryBytes = edgeEntryIndex;
+        coldEdgeEntryBytes = coldEdgeEntryIndex;
+    }
+
+    /**
+     * Moves the edge fields only necessary to build the response (geometry, name, additional
+     * field) into a separate DataAccess 'edges_cold'. Edge ids are the same in both areas and the
+     * routing data in 'edges' gets more compact, which means less cache misses while exploring the
+     * graph.
+     */
+    void setSeparateColdEdges( boolean separate )
+    {
+        checkInit();
+        coldEdges = separate ? dir.find("edges_cold") : null;
+    }
+
+    boolean isSeparateColdEdges()
+    {
+        return coldEdges != null;
+    }
+
+    /**
+     * @return the storage of the geometry reference, the name and the additional edge field
+     */
+    final DataAccess getColdEdges()
+    {
+        return coldEdges == null ? edges : coldEdges;
+    }
+
+    /**
+     * Converts the pointer of a base edge into the pointer of its cold fields
+     */
+    final long toColdPointer( long edgePointer )
+    {
+        if (coldEdges == null)
+            return edgePointer;
+
+        return edgePointer / edgeEntryBytes * coldEdgeEntryBytes;
     }
 
     /**
@@ -362,6 +433,8 @@ class BaseGraph implements Graph
         checkInit();
         nodes.setSegmentSize(bytes);
         edges.setSegmentSize(bytes);
+        if (coldEdges != null)
+            coldEdges.setSegmentSize(bytes);
         wayGeometry.setSegmentSize(bytes);
         nameIndex.setSegmentSize(bytes);
         extStorage.setSegmentSize(bytes);
@@ -391,6 +464,8 @@ class BaseGraph implements Graph
     {
         nodes.create(initSize);
         edges.create(initSize);
+        if (coldEdges != null)
+            coldEdges.create(initSize);
         wayGeometry.create(initSize);
         nameIndex.create(1000);
         extStorage.create(initSize);
@@ -401,9 +476,22 @@ class BaseGraph implements Graph
         initNodeRefs(0, nodes.getCapacity());
     }
 
+    void updateMemoryReport( MemoryReport report )
+    {
+        report.setUsedBytes(nodes, (long) nodeCount * nodeEntryBytes);
+        report.setUsedBytes(edges, (long) edgeCount * edgeEntryBytes);
+        if (coldEdges != null)
+            report.setUsedBytes(coldEdges, (long) edgeCount * coldEdgeEntryBytes);
+        report.setUsedBytes(wayGeometry, (long) maxGeoRef * 4);
+        nameIndex.updateMemoryReport(report);
+        if (extStorage instanceof TurnCostExtension)
+            ((TurnCostExtension) extStorage).updateMemoryReport(report);
+    }
+
     String toDetailsString()
     {
         return "edges:" + nf(edgeCount) + "(" + edges.getCapacity() / Helper.MB + "MB), "
+                + (coldEdges == null ? "" : "cold edges:(" + coldEdges.getCapacity() / Helper.MB + "MB), ")
                 + "nodes:" + nf(getNodes()) + "(" + nodes.getCapacity() / Helper.MB + "MB), "
                 + "name:(" + nameIndex.getCapacity() / Helper.MB + "MB), "
                 + "geo:" + nf(maxGeoRef) + "(" + wayGeometry.getCapacity() / Helper.MB + "MB), "
@@ -419,6 +507,11 @@ class BaseGraph implements Graph
         wayGeometry.flush();
         nameIndex.flush();
         edges.flush();
+        if (coldEdges != null)
+        {
+            setColdEdgesHeader();
+            coldEdges.flush();
+        }
         nodes.flush();
         extStorage.flush();
     }
@@ -428,13 +521,16 @@ class BaseGraph implements Graph
         wayGeometry.close();
         nameIndex.close();
         edges.close();
+        if (coldEdges != null)
+            coldEdges.close();
         nodes.close();
         extStorage.close();
     }
 
     long getCapacity()
     {
-        return edges.getCapacity() + nodes.getCapacity() + nameIndex.getCapacity()
+        return edges.getCapacity() + (coldEdges == null ? 0 : coldEdges.getCapacity())
+                + nodes.getCapacity() + nameIndex.getCapacity()
                 + wayGeometry.getCapacity() + extStorage.getCapacity();
     }
 
@@ -450,6 +546,9 @@ class BaseGraph implements Graph
         if (!edges.loadExisting())
             throw new IllegalStateException("Cannot load edges. corrupt file or directory? " + dir);
 
+        if (coldEdges != null && !coldEdges.loadExisting())
+            throw new IllegalStateException("Cannot load cold edges. corrupt file or directory? " + dir);
+
         if (!wayGeometry.loadExisting())
             throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
 
@@ -465,6 +564,8 @@ class BaseGraph implements Graph
         // now load some properties from stored data
         loadNodesHeader();
         loadEdgesHeader();
+        if (coldEdges != null)
+            loadColdEdgesHeader();
         loadWayGeometryHeader();
     }
 
@@ -524,6 +625,8 @@ class BaseGraph implements Graph
             throw new IllegalStateException("too many edges. new edge id would be negative. " + toString());
 
         edges.ensureCapacity(((long) edgeCount + 1) * edgeEntryBytes);
+        if (coldEdges != null)
+            coldEdges.ensureCapacity(((long) edgeCount + 1) * coldEdgeEntryBytes);
         return nextEdge;
     }
 
@@ -580,6 +683,11 @@ class BaseGraph implements Graph
             throw new IllegalStateException("edgeEntryBytes cannot be different for cloned graph. "
                     + "Cloned: " + clonedG.edgeEntryBytes + " vs " + edgeEntryBytes);
 
+        if (clonedG.isSeparateColdEdges() != isSeparateColdEdges()
+                || clonedG.coldEdgeEntryBytes != coldEdgeEntryBytes)
+            throw new IllegalStateException("cold edge layout cannot be different for cloned graph. "
+                    + "Cloned: " + clonedG.coldEdgeEntryBytes + " vs " + coldEdgeEntryBytes);
+
         if (clonedG.nodeEntryBytes != nodeEntryBytes)
             throw new IllegalStateException("nodeEntryBytes cannot be different for cloned graph. "
                     + "Cloned: " + clonedG.nodeEntryBytes + " vs " + nodeEntryBytes);
@@ -598,6 +706,13 @@ class BaseGraph implements Graph
         edges.copyTo(clonedG.edges);
         clonedG.loadEdgesHeader();
 
+        if (coldEdges != null)
+        {
+            setColdEdgesHeader();
+            coldEdges.copyTo(clonedG.coldEdges);
+            clonedG.loadColdEdgesHeader();
+        }
+
         // name
         nameIndex.copyTo(clonedG.nameIndex);
 
@@ -814,7 +929,7 @@ class BaseGraph implements Graph
     public void setAdditionalEdgeField( long edgePointer, int value )
     {
         if (extStorage.isRequireEdgeField() && E_ADDITIONAL >= 0)
-            edges.setInt(edgePointer + E_ADDITIONAL, value);
+            getColdEdges().setInt(toColdPointer(edgePointer) + E_ADDITIONAL, value);
         else
             throw new AssertionError("This graph does not support an additional edge field.");
     }
@@ -830,7 +945,7 @@ class BaseGraph implements Graph
             int len = pillarNodes.getSize();
             int dim = nodeAccess.getDimension();
             int tmpRef = nextGeoRef(len * dim);
-            edges.setInt(edgePointer + E_GEO, tmpRef);
+            getColdEdges().setInt(toColdPointer(edgePointer) + E_GEO, tmpRef);
             long geoRef = (long) tmpRef * 4;
             byte[] bytes = new byte[len * dim * 4 + 4];
             ensureGeometry(geoRef, bytes.length);
@@ -858,13 +973,13 @@ class BaseGraph implements Graph
             wayGeometry.setBytes(geoRef, bytes, bytes.length);
         } else
         {
-            edges.setInt(edgePointer + E_GEO, 0);
+            getColdEdges().setInt(toColdPointer(edgePointer) + E_GEO, 0);
         }
     }
 
     private PointList fetchWayGeometry_( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode )
     {
-        long geoRef = edges.getInt(edgePointer + E_GEO);
+        long geoRef = getColdEdges().getInt(toColdPointer(edgePointer) + E_GEO);
         int count = 0;
         byte[] bytes = null;
         if (geoRef > 0)
@@ -926,7 +1041,7 @@ class BaseGraph implements Graph
         if (nameIndexRef < 0)
             throw new IllegalStateException("Too many names are stored, currently limited to int pointer");
 
-        edges.setInt(edgePointer + E_NAME, nameIndexRef);
+        getColdEdges().setInt(toColdPointer(edgePointer) + E_NAME, nameIndexRef);
     }
 
     GHBitSet getRemovedNodes()
@@ -1219,7 +1334,7 @@ class BaseGraph implements Graph
         @Override
         public final int getAdditionalField()
         {
-            return baseGraph.edges.getInt(edgePointer + baseGraph.E_ADDITIONAL);
+            return baseGraph.getColdEdges().getInt(baseGraph.toColdPointer(edgePointer) + baseGraph.E_ADDITIONAL);
         }
 
         @Override
@@ -1275,7 +1390,7 @@ class BaseGraph implements Graph
         @Override
         public String getName()
         {
-            int nameIndexRef = baseGraph.edges.getInt(edgePointer + baseGraph.E_NAME);
+            int nameIndexRef = baseGraph.getColdEdges().getInt(baseGraph.toColdPointer(edgePointer) + baseGraph.E_NAME);
             return baseGraph.nameIndex.get(nameIndexRef);
         }
 
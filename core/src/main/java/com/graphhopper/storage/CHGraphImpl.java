@@ -281,6 +281,12 @@ public class CHGraphImpl implements CHGraph, Storable<CHGraph>
         }
     }
 
+    void updateMemoryReport( MemoryReport report )
+    {
+        report.setUsedBytes(nodesCH, (long) baseGraph.getNodes() * nodeCHEntryBytes);
+        report.setUsedBytes(shortcuts, (long) shortcutCount * shortcutEntryBytes);
+    }
+
     String toDetailsString()
     {
         return toString() + ", shortcuts:" + nf(shortcutCount) + ", nodesCH:(" + nodesCH.getCapacity() / Helper.MB + "MB)";
@@ -0,0 +1,126 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import java.io.File;
+import java.nio.ByteOrder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only Directory backed by a {@link GraphContainer}. Every DataAccess object which is
+ * contained maps its section of the container file directly, without unpacking. Objects not
+ * contained in the file are created in memory and cannot be loaded.
+ */
+public class ContainerDirectory implements Directory
+{
+    private final Map<String, DataAccess> map = new HashMap<String, DataAccess>();
+    private final GraphContainer container;
+    private final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+
+    public ContainerDirectory( File containerFile )
+    {
+        this(new GraphContainer(containerFile));
+    }
+
+    public ContainerDirectory( GraphContainer container )
+    {
+        this.container = container;
+    }
+
+    public GraphContainer getContainer()
+    {
+        return container;
+    }
+
+    @Override
+    public String getLocation()
+    {
+        return container.getFile().getPath();
+    }
+
+    @Override
+    public ByteOrder getByteOrder()
+    {
+        return byteOrder;
+    }
+
+    @Override
+    public DataAccess find( String name )
+    {
+        return find(name, getDefaultType());
+    }
+
+    /**
+     * The type is ignored as contained objects are always memory mapped and read-only.
+     */
+    @Override
+    public DataAccess find( String name, DAType type )
+    {
+        DataAccess da = map.get(name);
+        if (da != null)
+            return da;
+
+        GraphContainer.Section section = container.getSection(name);
+        if (section == null)
+            da = new RAMDataAccess(name, "", false, byteOrder);
+        else
+            da = new MMapDataAccess(name, container.getFile(), section.getOffset(), byteOrder);
+
+        map.put(name, da);
+        return da;
+    }
+
+    @Override
+    public void remove( DataAccess da )
+    {
+        if (map.remove(da.getName()) == null)
+            throw new IllegalStateException("Couldn't remove dataAccess object:" + da.getName());
+
+        da.close();
+    }
+
+    @Override
+    public DAType getDefaultType()
+    {
+        return DAType.MMAP_RO;
+    }
+
+    @Override
+    public void clear()
+    {
+        for (DataAccess da : map.values())
+        {
+            da.close();
+        }
+        map.clear();
+    }
+
+    @Override
+    public Collection<DataAccess> getAll()
+    {
+        return map.values();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getLocation();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A single file which contains all files of a graph folder, e.g. to ship a graph to many servers.
+ * The file starts with a table of the sections with their name, offset, length and CRC32 checksum.
+ * Every section is an unmodified copy of a DataAccess file and starts at a multiple of the page
+ * size, so that it can be memory mapped directly via {@link ContainerDirectory} without unpacking.
+ */
+public class GraphContainer
+{
+    private static final String MARKER = "GHC";
+    private static final int VERSION = 1;
+    static final int PAGE_SIZE = 4096;
+    private final File file;
+    private final Map<String, Section> sections = new LinkedHashMap<String, Section>();
+
+    /**
+     * Reads the section table of the specified container file.
+     */
+    public GraphContainer( File file )
+    {
+        this.file = file;
+        try
+        {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                String marker = in.readUTF();
+                if (!MARKER.equals(marker))
+                    throw new IllegalArgumentException("Not a graph container " + file + ", marker was " + marker);
+
+                int version = in.readInt();
+                if (version != VERSION)
+                    throw new IllegalArgumentException("Unsupported graph container version " + version
+                            + ", expected " + VERSION + " for " + file);
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    Section s = new Section(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+                    sections.put(s.name, s);
+                }
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Cannot read graph container " + file, ex);
+        }
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public Collection<Section> getSections()
+    {
+        return sections.values();
+    }
+
+    /**
+     * @return the section with the specified name or null if not contained
+     */
+    public Section getSection( String name )
+    {
+        return sections.get(name);
+    }
+
+    /**
+     * Compares the checksum of every section with the stored one.
+     * <p>
+     * @throws IllegalStateException if a section is corrupt
+     */
+    public void verify()
+    {
+        try
+        {
+            RandomAccessFile raFile = new RandomAccessFile(file, "r");
+            try
+            {
+                for (Section s : sections.values())
+                {
+                    raFile.seek(s.offset);
+                    long crc = calcChecksum(raFile, s.length);
+                    if (crc != s.checksum)
+                        throw new IllegalStateException("Checksum of section " + s.name + " in " + file
+                                + " does not match, was " + crc + " but expected " + s.checksum);
+                }
+            } finally
+            {
+                raFile.close();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Cannot verify graph container " + file, ex);
+        }
+    }
+
+    /**
+     * Packs all DataAccess files of the specified graph folder into one container file.
+     */
+    public static GraphContainer pack( File graphFolder, File target )
+    {
+        List<File> files = new ArrayList<File>();
+        File[] list = graphFolder.listFiles();
+        if (list == null)
+            throw new IllegalArgumentException("Graph folder " + graphFolder + " does not exist");
+
+        Arrays.sort(list);
+        for (File f : list)
+        {
+            if (f.isFile() && isDataAccessFile(f))
+                files.add(f);
+        }
+
+        if (files.isEmpty())
+            throw new IllegalArgumentException("No graph files found in " + graphFolder);
+
+        try
+        {
+            // the table size only depends on the names
+            long offset = 2 + MARKER.length() + 4 + 4;
+            for (File f : files)
+            {
+                offset += 2 + f.getName().getBytes(Helper.UTF_CS).length + 3 * 8;
+            }
+
+            List<Section> sections = new ArrayList<Section>(files.size());
+            for (File f : files)
+            {
+                offset = align(offset);
+                RandomAccessFile in = new RandomAccessFile(f, "r");
+                try
+                {
+                    sections.add(new Section(f.getName(), offset, f.length(), calcChecksum(in, f.length())));
+                } finally
+                {
+                    in.close();
+                }
+                offset += f.length();
+            }
+
+            RandomAccessFile out = new RandomAccessFile(target, "rw");
+            try
+            {
+                out.setLength(0);
+                out.writeUTF(MARKER);
+                out.writeInt(VERSION);
+                out.writeInt(sections.size());
+                for (Section s : sections)
+                {
+                    out.writeUTF(s.name);
+                    out.writeLong(s.offset);
+                    out.writeLong(s.length);
+                    out.writeLong(s.checksum);
+                }
+
+                byte[] buffer = new byte[1 << 16];
+                for (int i = 0; i < files.size(); i++)
+                {
+                    out.seek(sections.get(i).offset);
+                    InputStream in = new FileInputStream(files.get(i));
+                    try
+                    {
+                        int read;
+                        while ((read = in.read(buffer)) > 0)
+                        {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally
+                    {
+                        in.close();
+                    }
+                }
+                // pad the last section too, so every section can be mapped page-wise
+                out.setLength(align(out.length()));
+            } finally
+            {
+                out.close();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Cannot pack " + graphFolder + " into " + target, ex);
+        }
+        return new GraphContainer(target);
+    }
+
+    static long align( long offset )
+    {
+        long rest = offset % PAGE_SIZE;
+        return rest == 0 ? offset : offset + PAGE_SIZE - rest;
+    }
+
+    /**
+     * @return true if the specified file starts with the marker of a DataAccess file
+     */
+    static boolean isDataAccessFile( File file )
+    {
+        if (file.length() < AbstractDataAccess.HEADER_OFFSET)
+            return false;
+
+        try
+        {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try
+            {
+                return "GH".equals(in.readUTF());
+            } finally
+            {
+                in.close();
+            }
+        } catch (IOException ex)
+        {
+            return false;
+        }
+    }
+
+    private static long calcChecksum( RandomAccessFile raFile, long length ) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        long remaining = length;
+        while (remaining > 0)
+        {
+            int read = raFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0)
+                throw new EOFException("Section ends unexpectedly, " + remaining + " bytes missing");
+
+            crc.update(buffer, 0, read);
+            remaining -= read;
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        return file + " " + sections.keySet();
+    }
+
+    public static class Section
+    {
+        private final String name;
+        private final long offset;
+        private final long length;
+        private final long checksum;
+
+        Section( String name, long offset, long length, long checksum )
+        {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public long getLength()
+        {
+            return length;
+        }
+
+        public long getChecksum()
+        {
+            return checksum;
+        }
+    }
+}
@@ -161,6 +161,22 @@ public final class GraphHopperStorage implements GraphStorage, Graph
         }
     }
 
+    /**
+     * Stores the edge fields which are only necessary to build the response (geometry, name,
+     * additional field) separately from the routing data of an edge. This makes the edge entries
+     * read while routing more compact. When loading an existing graph the stored layout is used.
+     */
+    public GraphHopperStorage setSeparateColdEdges( boolean separate )
+    {
+        baseGraph.setSeparateColdEdges(separate);
+        return this;
+    }
+
+    public boolean isSeparateColdEdges()
+    {
+        return baseGraph.isSeparateColdEdges();
+    }
+
     /**
      * After configuring this storage you need to create it explicitly.
      */
@@ -179,6 +195,7 @@ public final class GraphHopperStorage implements GraphStorage, Graph
 
         properties.put("graph.byteOrder", dir.getByteOrder());
         properties.put("graph.dimension", baseGraph.nodeAccess.getDimension());
+        properties.put("graph.separateColdEdges", baseGraph.isSeparateColdEdges());
         properties.putCurrentVersions();
 
         baseGraph.create(initSize);
@@ -269,6 +286,10 @@ public final class GraphHopperStorage implements GraphStorage, Graph
             if (!byteOrder.equalsIgnoreCase("" + dir.getByteOrder()))
                 throw new IllegalStateException("Configured byteOrder (" + byteOrder + ") is not equal to byteOrder of loaded graph (" + dir.getByteOrder() + ")");
 
+            boolean separateColdEdges = "true".equals(properties.get("graph.separateColdEdges"));
+            if (separateColdEdges != baseGraph.isSeparateColdEdges())
+                baseGraph.setSeparateColdEdges(separateColdEdges);
+
             String dim = properties.get("graph.dimension");
             baseGraph.loadExisting(dim);
 
@@ -331,6 +352,20 @@ public final class GraphHopperStorage implements GraphStorage, Graph
         return cnt;
     }
 
+    /**
+     * @return the DataAccess objects of this storage with their capacity and used bytes
+     */
+    public MemoryReport getMemoryReport()
+    {
+        MemoryReport report = new MemoryReport().add(getDirectory());
+        baseGraph.updateMemoryReport(report);
+        for (CHGraphImpl cg : chGraphs)
+        {
+            cg.updateMemoryReport(report);
+        }
+        return report;
+    }
+
     /**
      * Avoid that edges and nodes of the base graph are further modified. Necessary as hook for e.g.
      * ch graphs on top to initilize themself
@@ -44,11 +44,37 @@ public class MMapDataAccess extends AbstractDataAccess
     private List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
     private boolean cleanAndRemap = false;
     private final boolean allowWrites;
+    // if not null the data is a section of this file starting at fileOffset
+    private final File sectionFile;
+    private final long fileOffset;
 
     MMapDataAccess( String name, String location, ByteOrder order, boolean allowWrites )
     {
         super(name, location, order);
         this.allowWrites = allowWrites;
+        this.sectionFile = null;
+        this.fileOffset = 0;
+    }
+
+    /**
+     * Creates a read-only object which maps the section of the specified file starting at
+     * fileOffset, e.g. of a {@link GraphContainer}.
+     */
+    MMapDataAccess( String name, File sectionFile, long fileOffset, ByteOrder order )
+    {
+        super(name, "", order);
+        this.allowWrites = false;
+        this.sectionFile = sectionFile;
+        this.fileOffset = fileOffset;
+    }
+
+    @Override
+    protected String getFullName()
+    {
+        if (sectionFile == null)
+            return super.getFullName();
+
+        return sectionFile.getPath();
     }
 
     MMapDataAccess cleanAndRemap( boolean cleanAndRemap )
@@ -102,7 +128,7 @@ public class MMapDataAccess extends AbstractDataAccess
     @Override
     public boolean ensureCapacity( long bytes )
     {
-        return mapIt(HEADER_OFFSET, bytes, true);
+        return mapIt(fileOffset + HEADER_OFFSET, bytes, true);
     }
 
     protected boolean mapIt( long offset, long byteCount, boolean clearNew )
@@ -238,11 +264,11 @@ public class MMapDataAccess extends AbstractDataAccess
         initRandomAccessFile();
         try
         {
-            long byteCount = readHeader(raFile);
+            long byteCount = readHeader(raFile, fileOffset);
             if (byteCount < 0)
                 return false;
 
-            mapIt(HEADER_OFFSET, byteCount - HEADER_OFFSET, false);
+            mapIt(fileOffset + HEADER_OFFSET, byteCount - HEADER_OFFSET, false);
             return true;
         } catch (IOException ex)
         {
@@ -358,14 +384,15 @@ public class MMapDataAccess extends AbstractDataAccess
         assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
         int bufferIndex = (int) (bytePos >>> segmentSizePower);
         int index = (int) (bytePos & indexDivisor);
-        ByteBuffer bb = segments.get(bufferIndex);
+        // duplicate as the position is not thread safe and reads can happen concurrently
+        ByteBuffer bb = segments.get(bufferIndex).duplicate();
         bb.position(index);
         int delta = index + length - segmentSizeInBytes;
         if (delta > 0)
         {
             length -= delta;
             bb.get(values, 0, length);
-            bb = segments.get(bufferIndex + 1);
+            bb = segments.get(bufferIndex + 1).duplicate();
             bb.position(0);
             bb.get(values, length, delta);
         } else
@@ -456,6 +483,9 @@ public class MMapDataAccess extends AbstractDataAccess
     @Override
     public void rename( String newName )
     {
+        if (sectionFile != null)
+            throw new IllegalStateException("Cannot rename a section of " + sectionFile);
+
         if (!checkBeforeRename(newName))
         {
             return;
@@ -472,6 +502,9 @@ public class MMapDataAccess extends AbstractDataAccess
     @Override
     public DAType getType()
     {
+        if (sectionFile != null)
+            return DAType.MMAP_RO;
+
         return DAType.MMAP;
     }
 }
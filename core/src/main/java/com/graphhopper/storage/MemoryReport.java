@@ -0,0 +1,203 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lists the DataAccess objects of one or more Directories with their capacity, segment count and
+ * type. The owners of the DataAccess objects can add how many bytes are actually used, e.g. the
+ * edge count times the bytes per edge, which makes it possible to plan the size of an instance.
+ */
+public class MemoryReport
+{
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    /**
+     * Adds all DataAccess objects of the specified directory.
+     */
+    public MemoryReport add( Directory dir )
+    {
+        for (DataAccess da : dir.getAll())
+        {
+            add(da);
+        }
+        return this;
+    }
+
+    public MemoryReport add( DataAccess da )
+    {
+        if (!da.isClosed())
+            entries.put(da.getName(), new Entry(da.getName(), da.getType(), da.getCapacity(), da.getSegments()));
+        return this;
+    }
+
+    /**
+     * Sets the number of bytes which are in use for the specified DataAccess object. Does nothing
+     * if it was not added before.
+     */
+    public MemoryReport setUsedBytes( DataAccess da, long usedBytes )
+    {
+        if (da == null)
+            return this;
+
+        Entry e = entries.get(da.getName());
+        if (e != null)
+            e.usedBytes = Math.min(usedBytes, e.capacity);
+        return this;
+    }
+
+    /**
+     * @return the entries sorted by capacity, largest first
+     */
+    public List<Entry> getEntries()
+    {
+        List<Entry> list = new ArrayList<Entry>(entries.values());
+        Collections.sort(list, new Comparator<Entry>()
+        {
+            @Override
+            public int compare( Entry o1, Entry o2 )
+            {
+                if (o1.capacity == o2.capacity)
+                    return o1.name.compareTo(o2.name);
+                return o1.capacity > o2.capacity ? -1 : 1;
+            }
+        });
+        return list;
+    }
+
+    public Entry getEntry( String name )
+    {
+        return entries.get(name);
+    }
+
+    /**
+     * @return the sum of the capacities in bytes
+     */
+    public long getCapacity()
+    {
+        long sum = 0;
+        for (Entry e : entries.values())
+        {
+            sum += e.capacity;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the capacities in bytes of all objects which are held in the heap or, if
+     * onHeap is false, memory mapped or outside of the heap
+     */
+    public long getCapacity( boolean onHeap )
+    {
+        long sum = 0;
+        for (Entry e : entries.values())
+        {
+            if (e.type.isInMemory() == onHeap)
+                sum += e.capacity;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the sum of the used bytes where the capacity is taken if unknown
+     */
+    public long getUsedBytes()
+    {
+        long sum = 0;
+        for (Entry e : entries.values())
+        {
+            sum += e.usedBytes < 0 ? e.capacity : e.usedBytes;
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("total:").append(getCapacity() / Helper.MB).append("MB, heap:").
+                append(getCapacity(true) / Helper.MB).append("MB");
+        for (Entry e : getEntries())
+        {
+            sb.append("\n").append(e);
+        }
+        return sb.toString();
+    }
+
+    public static class Entry
+    {
+        private final String name;
+        private final DAType type;
+        private final long capacity;
+        private final int segments;
+        private long usedBytes = -1;
+
+        Entry( String name, DAType type, long capacity, int segments )
+        {
+            this.name = name;
+            this.type = type;
+            this.capacity = capacity;
+            this.segments = segments;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public DAType getType()
+        {
+            return type;
+        }
+
+        public long getCapacity()
+        {
+            return capacity;
+        }
+
+        public int getSegments()
+        {
+            return segments;
+        }
+
+        /**
+         * @return the used bytes or -1 if unknown
+         */
+        public long getUsedBytes()
+        {
+            return usedBytes;
+        }
+
+        @Override
+        public String toString()
+        {
+            String str = name + ": " + Helper.nf(capacity) + " bytes";
+            if (usedBytes >= 0)
+                str += " (used " + Helper.nf(usedBytes) + ")";
+            return str + ", " + segments + " segments, " + type;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.EdgeIteratorState;
+
+/**
+ * Stores speeds per edge which override the speeds encoded in the edge flags of one vehicle, e.g.
+ * to reflect the current traffic situation without a new import. For every edge one integer is
+ * used: the upper 16 bits hold the speed in storage direction (from the lower to the higher node
+ * id) and the lower 16 bits the speed in the other direction, so both are updated atomically.
+ * <p>
+ * The capacity is fixed to the edge count on creation. Updates are plain integer writes and
+ * therefore lock-free for readers and can happen while routing, but a running request could see an
+ * update only partially.
+ */
+public class SpeedOverlay implements Storable<SpeedOverlay>
+{
+    private static final int NO_SPEED = 0;
+    // 0.1km/h resolution, 0 is reserved for 'no override'
+    private static final double SPEED_FACTOR = 10;
+    private static final int MAX_VALUE = 0xFFFF;
+    private final FlagEncoder encoder;
+    private final DataAccess speeds;
+    private final double maxSpeed;
+    private int edgeCount;
+
+    public SpeedOverlay( Directory dir, FlagEncoder encoder )
+    {
+        this.encoder = encoder;
+        this.speeds = dir.find("speed_overlay_" + encoder.toString());
+        // a faster speed would make the beeline approximation of AStar inadmissible
+        this.maxSpeed = Math.min(encoder.getMaxSpeed(), (MAX_VALUE - 1) / SPEED_FACTOR);
+    }
+
+    public FlagEncoder getEncoder()
+    {
+        return encoder;
+    }
+
+    /**
+     * @param edgeCount the number of edges of the graph, not the byte count
+     */
+    @Override
+    public SpeedOverlay create( long edgeCount )
+    {
+        this.edgeCount = (int) edgeCount;
+        speeds.create(Math.max(4, edgeCount * 4));
+        speeds.setHeader(0, this.edgeCount);
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!speeds.loadExisting())
+            return false;
+
+        edgeCount = speeds.getHeader(0);
+        return true;
+    }
+
+    /**
+     * @return the speed in km/h of the specified edge state in its direction from base to adjacent
+     * node or NaN if there is no override
+     */
+    public final double getSpeed( EdgeIteratorState edge, boolean reverse )
+    {
+        int edgeId = edge.getEdge();
+        if (edgeId < 0 || edgeId >= edgeCount)
+            return Double.NaN;
+
+        boolean storageDirection = edge.getBaseNode() <= edge.getAdjNode();
+        return getSpeed(edgeId, storageDirection != reverse);
+    }
+
+    /**
+     * @param forward true for the storage direction of the edge, i.e. from the lower to the higher
+     * node id
+     * @return the speed in km/h or NaN if there is no override
+     */
+    public final double getSpeed( int edgeId, boolean forward )
+    {
+        int value = speeds.getInt((long) edgeId * 4);
+        int speed = forward ? value >>> 16 : value & MAX_VALUE;
+        if (speed == NO_SPEED)
+            return Double.NaN;
+
+        return (speed - 1) / SPEED_FACTOR;
+    }
+
+    /**
+     * Overrides the speeds of the specified edge. A speed of 0 blocks the edge in that direction.
+     * <p>
+     * @param forwardSpeed the speed in km/h in storage direction, i.e. from the lower to the higher
+     * node id. NaN or a negative value removes the override.
+     * @param backwardSpeed the speed in km/h in the other direction
+     */
+    public void setSpeed( int edgeId, double forwardSpeed, double backwardSpeed )
+    {
+        if (edgeId < 0 || edgeId >= edgeCount)
+            throw new IllegalArgumentException("edge " + edgeId + " out of bounds [0," + edgeCount + ")");
+
+        speeds.setInt((long) edgeId * 4, toInt(forwardSpeed) << 16 | toInt(backwardSpeed));
+    }
+
+    /**
+     * Overrides the speed of the specified edge in the direction from its base to its adjacent node
+     * and keeps the other direction.
+     */
+    public void setSpeed( EdgeIteratorState edge, double speed )
+    {
+        int edgeId = edge.getEdge();
+        boolean storageDirection = edge.getBaseNode() <= edge.getAdjNode();
+        double other = getSpeed(edgeId, !storageDirection);
+        if (storageDirection)
+            setSpeed(edgeId, speed, other);
+        else
+            setSpeed(edgeId, other, speed);
+    }
+
+    public void removeSpeed( int edgeId )
+    {
+        setSpeed(edgeId, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Removes all overrides.
+     */
+    public void clear()
+    {
+        for (long pointer = 0; pointer < (long) edgeCount * 4; pointer += 4)
+        {
+            speeds.setInt(pointer, NO_SPEED);
+        }
+    }
+
+    private int toInt( double speed )
+    {
+        if (Double.isNaN(speed) || speed < 0)
+            return NO_SPEED;
+
+        return (int) Math.round(Math.min(speed, maxSpeed) * SPEED_FACTOR) + 1;
+    }
+
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    @Override
+    public void flush()
+    {
+        speeds.setHeader(0, edgeCount);
+        speeds.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        speeds.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return speeds.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return speeds.getCapacity();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "speed_overlay_" + encoder;
+    }
+}
@@ -17,13 +17,20 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHBitSetImpl;
 import com.graphhopper.util.EdgeIterator;
 
+import java.util.Arrays;
+
 /**
  * Holds turn cost tables for each node. The additional field of a node will be used to point
  * towards the first entry within a node cost table to identify turn restrictions, or later, turn
  * getCosts.
  * <p>
+ * For lookups a hash table keyed by (edge from, node via, edge to) is built from these lists on
+ * flush or on the first lookup, so that turn costs are found without walking the list of the node.
+ * <p>
  * @author Karl Hübner
  * @author Peter Karich
  */
@@ -43,7 +50,10 @@ public class TurnCostExtension implements GraphExtension
     private int turnCostsEntryIndex = -4;
     private int turnCostsEntryBytes;
     private int turnCostsCount;
+    private Graph graph;
     private NodeAccess nodeAccess;
+    // read optimized copy of the lists, null if outdated
+    private volatile Table table;
 
     public TurnCostExtension()
     {
@@ -61,6 +71,7 @@ public class TurnCostExtension implements GraphExtension
         if (turnCostsCount > 0)
             throw new AssertionError("The turn cost storage must be initialized only once.");
 
+        this.graph = graph;
         this.nodeAccess = graph.getNodeAccess();
         this.turnCosts = dir.find("turn_costs");
     }
@@ -90,6 +101,8 @@ public class TurnCostExtension implements GraphExtension
         turnCosts.setHeader(0, turnCostsEntryBytes);
         turnCosts.setHeader(1 * 4, turnCostsCount);
         turnCosts.flush();
+        if (table == null)
+            buildTable();
     }
 
     @Override
@@ -104,6 +117,11 @@ public class TurnCostExtension implements GraphExtension
         return turnCosts.getCapacity();
     }
 
+    void updateMemoryReport( MemoryReport report )
+    {
+        report.setUsedBytes(turnCosts, (long) turnCostsCount * turnCostsEntryBytes);
+    }
+
     @Override
     public boolean loadExisting()
     {
@@ -125,6 +143,7 @@ public class TurnCostExtension implements GraphExtension
         if (turnFlags == EMPTY_FLAGS)
             return;
 
+        table = null;
         // append
         int newEntryIndex = turnCostsCount;
         turnCostsCount++;
@@ -171,10 +190,49 @@ public class TurnCostExtension implements GraphExtension
         if (nodeVia < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
-        return nextCostFlags(edgeFrom, nodeVia, edgeTo);
+        Table tmp = table;
+        if (tmp == null)
+            tmp = buildTable();
+
+        return tmp.get(edgeFrom, nodeVia, edgeTo);
     }
 
-    private long nextCostFlags( int edgeFrom, int nodeVia, int edgeTo )
+    /**
+     * Creates the hash table from the lists of all nodes. Synchronized as it is called lazily from
+     * lookups, which could run in parallel.
+     */
+    private synchronized Table buildTable()
+    {
+        if (table != null)
+            return table;
+
+        int nodes = graph.getNodes();
+        Table tmp = new Table(turnCostsCount, nodes);
+        for (int node = 0; node < nodes; node++)
+        {
+            int turnCostIndex = nodeAccess.getAdditionalNodeField(node);
+            if (turnCostIndex == NO_TURN_ENTRY)
+                continue;
+
+            int i = 0;
+            for (; i < 1000 && turnCostIndex != NO_TURN_ENTRY; i++)
+            {
+                long turnCostPtr = (long) turnCostIndex * turnCostsEntryBytes;
+                tmp.put(turnCosts.getInt(turnCostPtr + TC_FROM), node, turnCosts.getInt(turnCostPtr + TC_TO),
+                        turnCosts.getInt(turnCostPtr + TC_FLAGS));
+                turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+            if (i >= 1000)
+                throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list!?");
+        }
+        table = tmp;
+        return tmp;
+    }
+
+    /**
+     * Walks the list of the via node instead of using the hash table.
+     */
+    long nextCostFlags( int edgeFrom, int nodeVia, int edgeTo )
     {
         int turnCostIndex = nodeAccess.getAdditionalNodeField(nodeVia);
         int i = 0;
@@ -258,4 +316,70 @@ public class TurnCostExtension implements GraphExtension
     {
         return "turnCost";
     }
+
+    /**
+     * Open addressing hash table with linear probing. A bit set of the via nodes avoids probing
+     * for the majority of nodes without turn costs.
+     */
+    private static final class Table
+    {
+        private final GHBitSet viaNodes;
+        private final long[] edges;
+        private final int[] vias;
+        private final int[] flags;
+        private final int mask;
+
+        Table( int expectedEntries, int nodes )
+        {
+            viaNodes = new GHBitSetImpl(Math.max(1, nodes));
+            // keep the load factor below 0.5
+            int size = Integer.highestOneBit(Math.max(2, expectedEntries) * 2) * 2;
+            mask = size - 1;
+            edges = new long[size];
+            vias = new int[size];
+            flags = new int[size];
+            Arrays.fill(vias, -1);
+        }
+
+        private static int hash( int edgeFrom, int nodeVia, int edgeTo )
+        {
+            int h = edgeFrom * 0x9E3779B1 ^ edgeTo * 0x85EBCA6B ^ nodeVia * 0xC2B2AE35;
+            return h ^ (h >>> 16);
+        }
+
+        void put( int edgeFrom, int nodeVia, int edgeTo, int value )
+        {
+            viaNodes.add(nodeVia);
+            long key = (long) edgeFrom << 32 | edgeTo & 0xFFFFFFFFL;
+            int index = hash(edgeFrom, nodeVia, edgeTo) & mask;
+            while (vias[index] >= 0)
+            {
+                // keep the first entry like the list lookup does
+                if (vias[index] == nodeVia && edges[index] == key)
+                    return;
+
+                index = (index + 1) & mask;
+            }
+            edges[index] = key;
+            vias[index] = nodeVia;
+            flags[index] = value;
+        }
+
+        long get( int edgeFrom, int nodeVia, int edgeTo )
+        {
+            if (!viaNodes.contains(nodeVia))
+                return 0;
+
+            long key = (long) edgeFrom << 32 | edgeTo & 0xFFFFFFFFL;
+            int index = hash(edgeFrom, nodeVia, edgeTo) & mask;
+            while (vias[index] >= 0)
+            {
+                if (vias[index] == nodeVia && edges[index] == key)
+                    return flags[index];
+
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,461 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.CHGraph;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.BBox;
+import gnu.trove.list.array.TIntArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * A static R-tree over all segments of all edges, packed bottom-up in the Hilbert order of the
+ * segment centers. In contrast to LocationIndexTree the segments themselves are stored, so the
+ * closest segment is found via a best-first traversal of the tree without exploring the graph and
+ * independent of the density of the road network.
+ * <p>
+ * Layout of the DataAccess: first all segments with 6 ints each (lat1, lon1, lat2, lon2, edge, way
+ * index) in Hilbert order, then the bounding boxes of the tree nodes with 4 ints each (minLat,
+ * minLon, maxLat, maxLon) level by level, where the last one is the root. The children of a node are
+ * the NODE_SIZE consecutive entries of the level below, so no pointers are necessary.
+ */
+public class LocationIndexRTree implements LocationIndex
+{
+    private static final int MAGIC_INT = 0x52545231;
+    static final int NODE_SIZE = 16;
+    private static final int SEGMENT_BYTES = 6 * 4;
+    private static final int NODE_BYTES = 4 * 4;
+    private static final int HILBERT_ORDER = 15;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Graph graph;
+    private final DataAccess dataAccess;
+    private DistanceCalc distCalc = Helper.DIST_PLANE;
+    private int segments;
+    // the first index of every level, level 0 are the segments
+    private int[] levelStarts;
+    private boolean initialized = false;
+
+    public LocationIndexRTree( Graph g, Directory dir )
+    {
+        if (g instanceof CHGraph)
+            throw new IllegalArgumentException("Use base graph for LocationIndexRTree instead of CHGraph");
+
+        this.graph = g;
+        dataAccess = dir.find("location_index_rtree");
+    }
+
+    /**
+     * The R-tree has no resolution, every segment is stored exactly.
+     */
+    @Override
+    public LocationIndex setResolution( int resolution )
+    {
+        return this;
+    }
+
+    @Override
+    public LocationIndex setApproximation( boolean approx )
+    {
+        if (approx)
+            distCalc = Helper.DIST_PLANE;
+        else
+            distCalc = Helper.DIST_EARTH;
+        return this;
+    }
+
+    @Override
+    public LocationIndex prepareIndex()
+    {
+        if (initialized)
+            throw new IllegalStateException("Call prepareIndex only once");
+
+        StopWatch sw = new StopWatch().start();
+        TIntArrayList coords = new TIntArrayList();
+        TIntArrayList infos = new TIntArrayList();
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            PointList points = iter.fetchWayGeometry(3);
+            int prevLat = Helper.degreeToInt(points.getLatitude(0));
+            int prevLon = Helper.degreeToInt(points.getLongitude(0));
+            for (int i = 1; i < points.getSize(); i++)
+            {
+                int lat = Helper.degreeToInt(points.getLatitude(i));
+                int lon = Helper.degreeToInt(points.getLongitude(i));
+                coords.add(prevLat);
+                coords.add(prevLon);
+                coords.add(lat);
+                coords.add(lon);
+                infos.add(iter.getEdge());
+                infos.add(i - 1);
+                prevLat = lat;
+                prevLon = lon;
+            }
+        }
+
+        segments = infos.size() / 2;
+        long[] order = createHilbertOrder(coords);
+        initLevels();
+        dataAccess.create(64 * 1024);
+        dataAccess.ensureCapacity(getPointer(levelStarts[levelStarts.length - 1]));
+        for (int i = 0; i < segments; i++)
+        {
+            int segment = (int) order[i];
+            long pointer = getPointer(i);
+            for (int j = 0; j < 4; j++)
+            {
+                dataAccess.setInt(pointer + j * 4, coords.get(segment * 4 + j));
+            }
+            dataAccess.setInt(pointer + 16, infos.get(segment * 2));
+            dataAccess.setInt(pointer + 20, infos.get(segment * 2 + 1));
+        }
+
+        int[] box = new int[4];
+        int[] childBox = new int[4];
+        for (int level = 1; level < levelStarts.length - 1; level++)
+        {
+            for (int node = levelStarts[level]; node < levelStarts[level + 1]; node++)
+            {
+                box[0] = box[1] = Integer.MAX_VALUE;
+                box[2] = box[3] = Integer.MIN_VALUE;
+                int childEnd = getChildEnd(level, node);
+                for (int child = getChildStart(level, node); child < childEnd; child++)
+                {
+                    getBox(child, childBox);
+                    box[0] = Math.min(box[0], childBox[0]);
+                    box[1] = Math.min(box[1], childBox[1]);
+                    box[2] = Math.max(box[2], childBox[2]);
+                    box[3] = Math.max(box[3], childBox[3]);
+                }
+                long pointer = getPointer(node);
+                for (int j = 0; j < 4; j++)
+                {
+                    dataAccess.setInt(pointer + j * 4, box[j]);
+                }
+            }
+        }
+
+        flush();
+        initialized = true;
+        logger.info("rtree location index created in " + sw.stop().getSeconds() + "s, segments:" + Helper.nf(segments)
+                + ", levels:" + (levelStarts.length - 1) + ", size:" + Helper.nf(getCapacity()));
+        return this;
+    }
+
+    /**
+     * @return the segment indices in the lower 32 bits, sorted by the Hilbert value of their center
+     */
+    private long[] createHilbertOrder( TIntArrayList coords )
+    {
+        BBox bounds = graph.getBounds();
+        double latFactor = ((1 << HILBERT_ORDER) - 1) / Math.max(bounds.maxLat - bounds.minLat, 1e-6);
+        double lonFactor = ((1 << HILBERT_ORDER) - 1) / Math.max(bounds.maxLon - bounds.minLon, 1e-6);
+        long[] order = new long[segments];
+        for (int i = 0; i < segments; i++)
+        {
+            double lat = Helper.intToDegree(coords.get(i * 4)) / 2 + Helper.intToDegree(coords.get(i * 4 + 2)) / 2;
+            double lon = Helper.intToDegree(coords.get(i * 4 + 1)) / 2 + Helper.intToDegree(coords.get(i * 4 + 3)) / 2;
+            int y = clampToGrid((lat - bounds.minLat) * latFactor);
+            int x = clampToGrid((lon - bounds.minLon) * lonFactor);
+            order[i] = calcHilbertValue(x, y) << 32 | i;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    private static int clampToGrid( double value )
+    {
+        return (int) Math.max(0, Math.min((1 << HILBERT_ORDER) - 1, value));
+    }
+
+    /**
+     * @return the distance of the specified cell along the Hilbert curve
+     */
+    static long calcHilbertValue( int x, int y )
+    {
+        int n = 1 << HILBERT_ORDER;
+        long d = 0;
+        for (int s = n / 2; s > 0; s /= 2)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return d;
+    }
+
+    private void initLevels()
+    {
+        TIntArrayList starts = new TIntArrayList();
+        starts.add(0);
+        int count = segments;
+        int end = segments;
+        while (count > 0)
+        {
+            count = (count + NODE_SIZE - 1) / NODE_SIZE;
+            starts.add(end);
+            end += count;
+            if (count == 1)
+                break;
+        }
+        // the end of the last level
+        starts.add(end);
+        levelStarts = starts.toArray();
+    }
+
+    private long getPointer( int index )
+    {
+        if (index < segments)
+            return (long) index * SEGMENT_BYTES;
+
+        return (long) segments * SEGMENT_BYTES + (long) (index - segments) * NODE_BYTES;
+    }
+
+    private int getChildStart( int level, int node )
+    {
+        return levelStarts[level - 1] + (node - levelStarts[level]) * NODE_SIZE;
+    }
+
+    private int getChildEnd( int level, int node )
+    {
+        return Math.min(getChildStart(level, node) + NODE_SIZE, levelStarts[level]);
+    }
+
+    private int getLevel( int node )
+    {
+        int level = 1;
+        while (node >= levelStarts[level + 1])
+        {
+            level++;
+        }
+        return level;
+    }
+
+    private void getBox( int index, int[] box )
+    {
+        long pointer = getPointer(index);
+        if (index < segments)
+        {
+            int lat1 = dataAccess.getInt(pointer);
+            int lon1 = dataAccess.getInt(pointer + 4);
+            int lat2 = dataAccess.getInt(pointer + 8);
+            int lon2 = dataAccess.getInt(pointer + 12);
+            box[0] = Math.min(lat1, lat2);
+            box[1] = Math.min(lon1, lon2);
+            box[2] = Math.max(lat1, lat2);
+            box[3] = Math.max(lon1, lon2);
+        } else
+        {
+            for (int j = 0; j < 4; j++)
+            {
+                box[j] = dataAccess.getInt(pointer + j * 4);
+            }
+        }
+    }
+
+    @Override
+    public int findID( double lat, double lon )
+    {
+        return findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestNode();
+    }
+
+    @Override
+    public QueryResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        QueryResult closestMatch = new QueryResult(queryLat, queryLon);
+        if (segments == 0)
+            return closestMatch;
+
+        IntDoubleBinHeap heap = new IntDoubleBinHeap(64);
+        heap.insert_(0, levelStarts[levelStarts.length - 2]);
+        while (!heap.isEmpty())
+        {
+            int index = heap.poll_element();
+            if (index < segments)
+            {
+                // all other segments and nodes are further away
+                EdgeIteratorState edge = graph.getEdgeIteratorState(dataAccess.getInt(getPointer(index) + 16), Integer.MIN_VALUE);
+                if (!edgeFilter.accept(edge))
+                    continue;
+
+                initQueryResult(closestMatch, edge, dataAccess.getInt(getPointer(index) + 20));
+                return closestMatch;
+            }
+
+            int level = getLevel(index);
+            int childEnd = getChildEnd(level, index);
+            for (int child = getChildStart(level, index); child < childEnd; child++)
+            {
+                heap.insert_(calcNormalizedDist(queryLat, queryLon, child), child);
+            }
+        }
+        return closestMatch;
+    }
+
+    /**
+     * @return the normalized distance to the segment or the lower bound of it for a tree node
+     */
+    private double calcNormalizedDist( double queryLat, double queryLon, int index )
+    {
+        long pointer = getPointer(index);
+        double lat1 = Helper.intToDegree(dataAccess.getInt(pointer));
+        double lon1 = Helper.intToDegree(dataAccess.getInt(pointer + 4));
+        double lat2 = Helper.intToDegree(dataAccess.getInt(pointer + 8));
+        double lon2 = Helper.intToDegree(dataAccess.getInt(pointer + 12));
+        if (index < segments)
+        {
+            if (distCalc.validEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2))
+                return distCalc.calcNormalizedEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2);
+
+            return Math.min(distCalc.calcNormalizedDist(queryLat, queryLon, lat1, lon1),
+                    distCalc.calcNormalizedDist(queryLat, queryLon, lat2, lon2));
+        }
+
+        // the closest point of the box: lat1, lon1 is the minimum and lat2, lon2 the maximum
+        double lat = Math.max(lat1, Math.min(lat2, queryLat));
+        double lon = Math.max(lon1, Math.min(lon2, queryLon));
+        return distCalc.calcNormalizedDist(queryLat, queryLon, lat, lon);
+    }
+
+    private void initQueryResult( QueryResult qr, EdgeIteratorState edge, int segmentIndex )
+    {
+        double queryLat = qr.getQueryPoint().lat;
+        double queryLon = qr.getQueryPoint().lon;
+        PointList points = edge.fetchWayGeometry(3);
+        int last = points.getSize() - 1;
+        double lat1 = points.getLatitude(segmentIndex), lon1 = points.getLongitude(segmentIndex);
+        double lat2 = points.getLatitude(segmentIndex + 1), lon2 = points.getLongitude(segmentIndex + 1);
+        int wayIndex = segmentIndex;
+        QueryResult.Position pos = QueryResult.Position.EDGE;
+        if (!distCalc.validEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2))
+        {
+            if (distCalc.calcNormalizedDist(queryLat, queryLon, lat2, lon2)
+                    < distCalc.calcNormalizedDist(queryLat, queryLon, lat1, lon1))
+                wayIndex++;
+
+            pos = wayIndex == 0 || wayIndex == last ? QueryResult.Position.TOWER : QueryResult.Position.PILLAR;
+        }
+
+        double baseDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(0), points.getLongitude(0));
+        double adjDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(last), points.getLongitude(last));
+        qr.setClosestNode(adjDist < baseDist ? edge.getAdjNode() : edge.getBaseNode());
+        qr.setClosestEdge(edge);
+        qr.setWayIndex(wayIndex);
+        qr.setSnappedPosition(pos);
+        qr.calcSnappedPoint(distCalc);
+        qr.setQueryDistance(distCalc.calcDist(queryLat, queryLon, qr.getSnappedPoint().lat, qr.getSnappedPoint().lon));
+    }
+
+    int calcChecksum()
+    {
+        return graph.getNodes();
+    }
+
+    @Override
+    public LocationIndexRTree create( long size )
+    {
+        throw new UnsupportedOperationException("Not supported. Use prepareIndex instead.");
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (initialized)
+            throw new IllegalStateException("Call loadExisting only once");
+
+        if (!dataAccess.loadExisting())
+            return false;
+
+        if (dataAccess.getHeader(0) != MAGIC_INT)
+            throw new IllegalStateException("incorrect rtree location index version, expected:" + MAGIC_INT);
+
+        if (dataAccess.getHeader(1 * 4) != calcChecksum())
+            throw new IllegalStateException("rtree location index was opened with incorrect graph: "
+                    + dataAccess.getHeader(1 * 4) + " vs. " + calcChecksum());
+
+        if (dataAccess.getHeader(3 * 4) != NODE_SIZE)
+            throw new IllegalStateException("rtree location index has a different node size: "
+                    + dataAccess.getHeader(3 * 4) + " vs. " + NODE_SIZE);
+
+        segments = dataAccess.getHeader(2 * 4);
+        initLevels();
+        initialized = true;
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        dataAccess.setHeader(0, MAGIC_INT);
+        dataAccess.setHeader(1 * 4, calcChecksum());
+        dataAccess.setHeader(2 * 4, segments);
+        dataAccess.setHeader(3 * 4, NODE_SIZE);
+        dataAccess.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        dataAccess.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return dataAccess.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return dataAccess.getCapacity();
+    }
+
+    @Override
+    public void setSegmentSize( int bytes )
+    {
+        dataAccess.setSegmentSize(bytes);
+    }
+}
@@ -31,10 +31,16 @@ import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.procedure.TIntProcedure;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +76,11 @@ public class LocationIndexTree implements LocationIndex
     // do not start with 0 as a positive value means leaf and a negative means "entry with subentries"
     static final int START_POINTER = 1;
     int maxRegionSearch = 4;
+    private int prepareThreads = 1;
+    // do not start a thread for less points
+    private static final int MIN_BATCH_CHUNK = 1000;
+    // more chunks than threads limit the size of the partial trees during a parallel preparation
+    private static final int CHUNKS_PER_THREAD = 4;
     /**
      * If normed distance is smaller than this value the node or edge is 'identical' and the
      * algorithm can stop search.
@@ -105,6 +116,18 @@ public class LocationIndexTree implements LocationIndex
         return this;
     }
 
+    /**
+     * Specifies the number of threads used to build the index in prepareIndex.
+     */
+    public LocationIndexTree setPrepareThreads( int prepareThreads )
+    {
+        if (prepareThreads < 1)
+            throw new IllegalArgumentException("At least one thread is necessary " + prepareThreads);
+
+        this.prepareThreads = prepareThreads;
+        return this;
+    }
+
     /**
      * Searches also neighbouring tiles until the maximum distance from the query point is reached
      * (minResolutionInMeter*regionAround). Set to 1 for to force avoiding a fall back, good if you
@@ -232,7 +255,10 @@ public class LocationIndexTree implements LocationIndex
     InMemConstructionIndex getPrepareInMemIndex()
     {
         InMemConstructionIndex memIndex = new InMemConstructionIndex(entries[0]);
-        memIndex.prepare();
+        if (prepareThreads > 1)
+            memIndex.prepare(prepareThreads);
+        else
+            memIndex.prepare();
         return memIndex;
     }
 
@@ -335,7 +361,8 @@ public class LocationIndexTree implements LocationIndex
                 + ", depth:" + entries.length
                 + ", checksum:" + calcChecksum()
                 + ", entries:" + Arrays.toString(entries)
-                + ", entriesPerLeaf:" + entriesPerLeaf);
+                + ", entriesPerLeaf:" + entriesPerLeaf
+                + ", threads:" + prepareThreads);
 
         return this;
     }
@@ -384,18 +411,37 @@ public class LocationIndexTree implements LocationIndex
 
         void prepare()
         {
-            final EdgeIterator allIter = graph.getAllEdges();
+            prepare(0, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Rasterizes all edges with an id in the range [fromEdge, toEdge).
+         */
+        void prepare( int fromEdge, int toEdge )
+        {
+            toEdge = Math.min(toEdge, graph.getAllEdges().getMaxId());
+            int edge = fromEdge;
             try
             {
-                while (allIter.next())
+                for (; edge < toEdge; edge++)
                 {
-                    int nodeA = allIter.getBaseNode();
-                    int nodeB = allIter.getAdjNode();
+                    EdgeIteratorState edgeState;
+                    try
+                    {
+                        edgeState = graph.getEdgeIteratorState(edge, Integer.MIN_VALUE);
+                    } catch (IllegalStateException ex)
+                    {
+                        // removed edges are marked as invalid
+                        continue;
+                    }
+
+                    int nodeA = edgeState.getBaseNode();
+                    int nodeB = edgeState.getAdjNode();
                     double lat1 = nodeAccess.getLatitude(nodeA);
                     double lon1 = nodeAccess.getLongitude(nodeA);
                     double lat2;
                     double lon2;
-                    PointList points = allIter.fetchWayGeometry(0);
+                    PointList points = edgeState.fetchWayGeometry(0);
                     int len = points.getSize();
                     for (int i = 0; i < len; i++)
                     {
@@ -411,8 +457,93 @@ public class LocationIndexTree implements LocationIndex
                 }
             } catch (Exception ex)
             {
-                logger.error("Problem! base:" + allIter.getBaseNode() + ", adj:" + allIter.getAdjNode()
-                        + ", edge:" + allIter.getEdge(), ex);
+                logger.error("Problem! edge:" + edge, ex);
+            }
+        }
+
+        /**
+         * Rasterizes the edges in parallel. Every task fills its own tree for a range of edge ids
+         * and the trees are merged into this index as soon as they are finished. The edges are split
+         * into more chunks than threads and only one chunk per thread is in-flight, so the partial
+         * trees alive at the same time cover only a fraction of the graph.
+         */
+        void prepare( int threads )
+        {
+            final int edges = graph.getAllEdges().getMaxId();
+            final int chunkSize = Math.max(1, (edges + CHUNKS_PER_THREAD * threads - 1) / (CHUNKS_PER_THREAD * threads));
+            ExecutorService service = Executors.newFixedThreadPool(threads);
+            try
+            {
+                CompletionService<InMemConstructionIndex> completionService
+                        = new ExecutorCompletionService<InMemConstructionIndex>(service);
+                int nextEdge = 0;
+                int inFlight = 0;
+                while (nextEdge < edges || inFlight > 0)
+                {
+                    if (nextEdge < edges && inFlight < threads)
+                    {
+                        final int fromEdge = nextEdge;
+                        final int toEdge = Math.min(edges, fromEdge + chunkSize);
+                        completionService.submit(new Callable<InMemConstructionIndex>()
+                        {
+                            @Override
+                            public InMemConstructionIndex call()
+                            {
+                                InMemConstructionIndex partial = new InMemConstructionIndex(entries[0]);
+                                partial.prepare(fromEdge, toEdge);
+                                return partial;
+                            }
+                        });
+                        nextEdge = toEdge;
+                        inFlight++;
+                        continue;
+                    }
+
+                    merge(root, completionService.take().get().root);
+                    inFlight--;
+                }
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while preparing location index", ex);
+            } catch (ExecutionException ex)
+            {
+                throw new IllegalStateException("Cannot prepare location index", ex.getCause());
+            } finally
+            {
+                service.shutdown();
+            }
+        }
+
+        /**
+         * Moves all entries of source into target. Subtrees not yet existing in target are taken
+         * over without copying.
+         */
+        void merge( InMemTreeEntry target, InMemTreeEntry source )
+        {
+            for (int index = 0; index < source.subEntries.length; index++)
+            {
+                InMemEntry sourceEntry = source.subEntries[index];
+                if (sourceEntry == null)
+                    continue;
+
+                source.subEntries[index] = null;
+                InMemEntry targetEntry = target.subEntries[index];
+                if (targetEntry == null)
+                {
+                    target.subEntries[index] = sourceEntry;
+                } else if (targetEntry.isLeaf())
+                {
+                    InMemLeafEntry targetLeaf = (InMemLeafEntry) targetEntry;
+                    TIntArrayList nodes = ((InMemLeafEntry) sourceEntry).getResults();
+                    for (int i = 0; i < nodes.size(); i++)
+                    {
+                        targetLeaf.addNode(nodes.get(i));
+                    }
+                } else
+                {
+                    merge((InMemTreeEntry) targetEntry, (InMemTreeEntry) sourceEntry);
+                }
             }
         }
 
@@ -564,6 +695,8 @@ public class LocationIndexTree implements LocationIndex
                         continue;
                     }
                     dataAccess.ensureCapacity((long) (intIndex + 1) * 4);
+                    // the stored subtree is not needed anymore, which reduces the peak memory
+                    treeEntry.subEntries[subCounter] = null;
                     int beforeIntIndex = intIndex;
                     intIndex = store(subEntry, beforeIntIndex);
                     if (intIndex == beforeIntIndex)
@@ -713,6 +846,34 @@ public class LocationIndexTree implements LocationIndex
      */
     public final boolean findNetworkEntries( double queryLat, double queryLon,
                                              TIntHashSet foundEntries, int iteration )
+    {
+        findNetworkEntriesRing(queryLat, queryLon, foundEntries, iteration);
+        if (iteration % 2 == 1)
+        {
+            // Check if something was found already...
+            if (!foundEntries.isEmpty())
+            {
+                double rMin = calculateRMin(queryLat, queryLon, iteration);
+                double minDistance = calcMinDistance(queryLat, queryLon, foundEntries);
+
+                if (minDistance < rMin)
+                    // early finish => foundEntries contains a nearest node for sure
+                    return true;
+                // else: continue as an undetected nearer node may sit in a neighbouring tile.
+                // Now calculate how far we have to look outside to find any hidden nearest nodes
+                // and repeat whole process with wider search area until this distance is covered.
+            }
+        }
+
+        // no early finish possible
+        return false;
+    }
+
+    /**
+     * Collects the node indices of the tiles in the border of the search box with the dimension
+     * 2*iteration + 1 tiles.
+     */
+    final void findNetworkEntriesRing( double queryLat, double queryLon, TIntHashSet foundEntries, int iteration )
     {
         // find entries in border of searchbox
         for (int yreg = -iteration; yreg <= iteration; yreg++)
@@ -735,26 +896,6 @@ public class LocationIndexTree implements LocationIndex
             findNetworkEntriesSingleRegion(foundEntries, subqueryLatA, subqueryLon);
             findNetworkEntriesSingleRegion(foundEntries, subqueryLatB, subqueryLon);
         }
-
-        if (iteration % 2 == 1)
-        {
-            // Check if something was found already...
-            if (!foundEntries.isEmpty())
-            {
-                double rMin = calculateRMin(queryLat, queryLon, iteration);
-                double minDistance = calcMinDistance(queryLat, queryLon, foundEntries);
-
-                if (minDistance < rMin)
-                    // early finish => foundEntries contains a nearest node for sure
-                    return true;
-                // else: continue as an undetected nearer node may sit in a neighbouring tile.
-                // Now calculate how far we have to look outside to find any hidden nearest nodes
-                // and repeat whole process with wider search area until this distance is covered.
-            }
-        }
-
-        // no early finish possible
-        return false;
     }
 
     final double calcMinDistance( double queryLat, double queryLon, TIntHashSet pointset )
@@ -787,64 +928,378 @@ public class LocationIndexTree implements LocationIndex
         if (isClosed())
             throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
 
-        TIntHashSet allCollectedEntryIds = new TIntHashSet();
-        final QueryResult closestMatch = new QueryResult(queryLat, queryLon);
-        for (int iteration = 0; iteration < maxRegionSearch; iteration++)
+        return new SnapSearch(edgeFilter).find(queryLat, queryLon);
+    }
+
+    /**
+     * Finds the k edges closest to the specified point. The search region is extended tile by tile
+     * until the k-th candidate is closer than the searched area or maxDistance is reached.
+     * <p>
+     * @param maxDistance in meter, edges further away are ignored
+     * @param candidates the buffer to be filled, which can be reused for the next query
+     * @return the specified candidates, sorted by distance
+     */
+    public SnapCandidates findKNearest( double queryLat, double queryLon, int k, double maxDistance,
+                                        EdgeFilter edgeFilter, SnapCandidates candidates )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (k < 1)
+            throw new IllegalArgumentException("k has to be positive but was " + k);
+
+        candidates.reset(queryLat, queryLon, k);
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int iteration = 0;; iteration++)
         {
-            TIntHashSet storedNetworkEntryIds = new TIntHashSet();
-            boolean earlyFinish = findNetworkEntries(queryLat, queryLon, storedNetworkEntryIds, iteration);
-            storedNetworkEntryIds.removeAll(allCollectedEntryIds);
-            allCollectedEntryIds.addAll(storedNetworkEntryIds);
+            collectCandidates(candidates, iteration, maxDistance, edgeFilter, explorer);
+            if (isOutsideBounds(queryLat, queryLon, iteration))
+                break;
 
-            // clone storedIds to avoid interference with forEach
-            final GHBitSet checkBitset = new GHTBitSet(new TIntHashSet(storedNetworkEntryIds));
-            // find nodes from the network entries which are close to 'point'
-            final EdgeExplorer explorer = graph.createEdgeExplorer();
-            storedNetworkEntryIds.forEach(new TIntProcedure()
+            // one more ring than necessary as the rasterization of an edge is not exact
+            if (iteration > 0)
             {
-                @Override
-                public boolean execute( int networkEntryNodeId )
+                double rMin = calculateRMin(queryLat, queryLon, iteration - 1);
+                if (rMin >= maxDistance || candidates.isFull() && candidates.getDistance(k - 1) <= rMin)
+                    break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Finds all edges with a distance of at most radius meter to the specified point.
+     * <p>
+     * @param candidates the buffer to be filled, which can be reused for the next query
+     * @return the specified candidates, sorted by distance
+     */
+    public SnapCandidates findWithinRadius( double queryLat, double queryLon, double radius,
+                                            EdgeFilter edgeFilter, SnapCandidates candidates )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (radius < 0)
+            throw new IllegalArgumentException("radius must not be negative but was " + radius);
+
+        candidates.reset(queryLat, queryLon, Integer.MAX_VALUE);
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (int iteration = 0;; iteration++)
+        {
+            collectCandidates(candidates, iteration, radius, edgeFilter, explorer);
+            if (isOutsideBounds(queryLat, queryLon, iteration))
+                break;
+
+            if (iteration > 0 && calculateRMin(queryLat, queryLon, iteration - 1) >= radius)
+                break;
+        }
+        return candidates;
+    }
+
+    /**
+     * Creates the full QueryResult, including the snapped point, of the specified candidate.
+     */
+    public QueryResult createQueryResult( SnapCandidates candidates, int index )
+    {
+        QueryResult qr = new QueryResult(candidates.getQueryLat(), candidates.getQueryLon());
+        qr.setClosestNode(candidates.getClosestNode(index));
+        qr.setClosestEdge(graph.getEdgeIteratorState(candidates.getEdge(index), candidates.getAdjNode(index)));
+        qr.setWayIndex(candidates.getWayIndex(index));
+        qr.setSnappedPosition(candidates.getPosition(index));
+        qr.setQueryDistance(candidates.getDistance(index));
+        qr.calcSnappedPoint(distCalc);
+        return qr;
+    }
+
+    private boolean isOutsideBounds( double queryLat, double queryLon, int iteration )
+    {
+        BBox bounds = graph.getBounds();
+        return queryLat - iteration * deltaLat < bounds.minLat && queryLat + iteration * deltaLat > bounds.maxLat
+                && queryLon - iteration * deltaLon < bounds.minLon && queryLon + iteration * deltaLon > bounds.maxLon;
+    }
+
+    /**
+     * Adds the edges of the network entries in the specified ring of tiles to the candidates.
+     */
+    private void collectCandidates( SnapCandidates candidates, int iteration, double maxDistance,
+                                    EdgeFilter edgeFilter, EdgeExplorer explorer )
+    {
+        double queryLat = candidates.getQueryLat();
+        double queryLon = candidates.getQueryLon();
+        TIntHashSet ringEntries = candidates.ringEntries;
+        ringEntries.clear();
+        findNetworkEntriesRing(queryLat, queryLon, ringEntries, iteration);
+        TIntIterator iter = ringEntries.iterator();
+        while (iter.hasNext())
+        {
+            int node = iter.next();
+            if (!candidates.networkEntries.add(node))
+                continue;
+
+            EdgeIterator edgeIter = explorer.setBaseNode(node);
+            while (edgeIter.next())
+            {
+                int edge = edgeIter.getEdge();
+                // a directional filter could accept the edge from the other node
+                if (candidates.visitedEdges.contains(edge) || !edgeFilter.accept(edgeIter))
+                    continue;
+
+                candidates.visitedEdges.add(edge);
+                addCandidate(candidates, edgeIter, maxDistance);
+            }
+        }
+    }
+
+    private void addCandidate( SnapCandidates candidates, EdgeIteratorState edge, double maxDistance )
+    {
+        double queryLat = candidates.getQueryLat();
+        double queryLon = candidates.getQueryLon();
+        PointList points = edge.fetchWayGeometry(3);
+        int len = points.getSize();
+        double bestNormedDist = Double.MAX_VALUE;
+        int bestIndex = -1;
+        QueryResult.Position bestPos = null;
+        double snappedLat = 0, snappedLon = 0;
+        double lat = points.getLatitude(0);
+        double lon = points.getLongitude(0);
+        for (int i = 0; i < len; i++)
+        {
+            double normedDist = distCalc.calcNormalizedDist(queryLat, queryLon, lat, lon);
+            // prefer the node if the query point is identical to it
+            if (normedDist < bestNormedDist
+                    || normedDist <= equalNormedDelta && bestPos == QueryResult.Position.EDGE)
+            {
+                bestNormedDist = normedDist;
+                bestIndex = i;
+                bestPos = i == 0 || i + 1 == len ? QueryResult.Position.TOWER : QueryResult.Position.PILLAR;
+                snappedLat = lat;
+                snappedLon = lon;
+            }
+
+            if (i + 1 == len)
+                break;
+
+            double nextLat = points.getLatitude(i + 1);
+            double nextLon = points.getLongitude(i + 1);
+            if (distCalc.validEdgeDistance(queryLat, queryLon, lat, lon, nextLat, nextLon))
+            {
+                normedDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon, lat, lon, nextLat, nextLon);
+                if (normedDist < bestNormedDist
+                        && (bestPos == QueryResult.Position.EDGE || bestNormedDist > equalNormedDelta))
+                {
+                    GHPoint crossing = distCalc.calcCrossingPointToEdge(queryLat, queryLon, lat, lon, nextLat, nextLon);
+                    bestNormedDist = normedDist;
+                    bestIndex = i;
+                    bestPos = QueryResult.Position.EDGE;
+                    snappedLat = crossing.lat;
+                    snappedLon = crossing.lon;
+                }
+            }
+            lat = nextLat;
+            lon = nextLon;
+        }
+
+        double distance = distCalc.calcDenormalizedDist(bestNormedDist);
+        if (distance > maxDistance)
+            return;
+
+        double baseDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(0), points.getLongitude(0));
+        double adjDist = distCalc.calcNormalizedDist(queryLat, queryLon, points.getLatitude(len - 1), points.getLongitude(len - 1));
+        int closestNode = baseDist <= adjDist ? edge.getBaseNode() : edge.getAdjNode();
+        candidates.add(edge.getEdge(), edge.getAdjNode(), closestNode, bestIndex, bestPos,
+                distance, snappedLat, snappedLon);
+    }
+
+    /**
+     * Snaps many points at once. The points are processed in the order of their spatial key so that
+     * consecutive lookups hit the same tree cells and pages and the search structures are reused
+     * for all points of one thread.
+     * <p>
+     * @param service the pool, usually shared between batches, to snap chunks of the sorted points in
+     * parallel. If null all points are snapped in the calling thread.
+     * @param parallelism the maximum number of chunks snapped in parallel
+     * @return the results in the order of the specified points
+     */
+    public QueryResult[] findClosest( final double[] lats, final double[] lons, final EdgeFilter edgeFilter,
+                                      ExecutorService service, int parallelism )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (lats.length != lons.length)
+            throw new IllegalArgumentException("Latitudes and longitudes must have the same length "
+                    + lats.length + " vs. " + lons.length);
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism has to be positive " + parallelism);
+
+        final QueryResult[] results = new QueryResult[lats.length];
+        final int[] order = createSpatialOrder(lats, lons);
+        int chunks = Math.min(parallelism, (lats.length + MIN_BATCH_CHUNK - 1) / MIN_BATCH_CHUNK);
+        if (service == null || chunks <= 1)
+        {
+            snapChunk(lats, lons, edgeFilter, order, 0, order.length, results);
+            return results;
+        }
+
+        try
+        {
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(chunks);
+            int chunkSize = (order.length + chunks - 1) / chunks;
+            for (int from = 0; from < order.length; from += chunkSize)
+            {
+                final int chunkFrom = from;
+                final int chunkTo = Math.min(order.length, from + chunkSize);
+                tasks.add(new Callable<Object>()
                 {
-                    new XFirstSearchCheck(queryLat, queryLon, checkBitset, edgeFilter)
+                    @Override
+                    public Object call()
                     {
-                        @Override
-                        protected double getQueryDistance()
-                        {
-                            return closestMatch.getQueryDistance();
-                        }
+                        snapChunk(lats, lons, edgeFilter, order, chunkFrom, chunkTo, results);
+                        return null;
+                    }
+                });
+            }
 
-                        @Override
-                        protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
-                        {
-                            if (normedDist < closestMatch.getQueryDistance())
-                            {
-                                closestMatch.setQueryDistance(normedDist);
-                                closestMatch.setClosestNode(node);
-                                closestMatch.setClosestEdge(edge.detach(false));
-                                closestMatch.setWayIndex(wayIndex);
-                                closestMatch.setSnappedPosition(pos);
-                                return true;
-                            }
-                            return false;
-                        }
-                    }.start(explorer, networkEntryNodeId);
-                    return true;
+            for (Future<Object> future : service.invokeAll(tasks))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while snapping points", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+
+            throw new IllegalStateException("Cannot snap points", ex.getCause());
+        }
+        return results;
+    }
+
+    private void snapChunk( double[] lats, double[] lons, EdgeFilter edgeFilter, int[] order, int from, int to,
+                            QueryResult[] results )
+    {
+        SnapSearch search = new SnapSearch(edgeFilter);
+        for (int i = from; i < to; i++)
+        {
+            int index = order[i];
+            results[index] = search.find(lats[index], lons[index]);
+        }
+    }
+
+    /**
+     * @return the indices of the specified points sorted by their spatial key
+     */
+    final int[] createSpatialOrder( double[] lats, double[] lons )
+    {
+        final long[] keys = new long[lats.length];
+        Integer[] tmp = new Integer[lats.length];
+        for (int i = 0; i < lats.length; i++)
+        {
+            keys[i] = keyAlgo.encode(lats[i], lons[i]);
+            tmp[i] = i;
+        }
+
+        Arrays.sort(tmp, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer o1, Integer o2 )
+            {
+                long k1 = keys[o1];
+                long k2 = keys[o2];
+                return k1 < k2 ? -1 : (k1 == k2 ? 0 : 1);
+            }
+        });
+
+        int[] order = new int[tmp.length];
+        for (int i = 0; i < tmp.length; i++)
+        {
+            order[i] = tmp[i];
+        }
+        return order;
+    }
+
+    /**
+     * Holds the scratch structures for snapping points one after the other. Not thread safe.
+     */
+    private class SnapSearch extends XFirstSearchCheck
+    {
+        private final TIntHashSet allCollectedEntryIds = new TIntHashSet();
+        private final TIntHashSet storedNetworkEntryIds = new TIntHashSet();
+        private final TIntHashSet checkedIds;
+        private final EdgeExplorer explorer = graph.createEdgeExplorer();
+        private QueryResult closestMatch;
+
+        SnapSearch( EdgeFilter edgeFilter )
+        {
+            this(new TIntHashSet(), edgeFilter);
+        }
+
+        private SnapSearch( TIntHashSet checkedIds, EdgeFilter edgeFilter )
+        {
+            super(0, 0, new GHTBitSet(checkedIds), edgeFilter);
+            this.checkedIds = checkedIds;
+        }
+
+        QueryResult find( double queryLat, double queryLon )
+        {
+            setQuery(queryLat, queryLon);
+            allCollectedEntryIds.clear();
+            closestMatch = new QueryResult(queryLat, queryLon);
+            for (int iteration = 0; iteration < maxRegionSearch; iteration++)
+            {
+                storedNetworkEntryIds.clear();
+                boolean earlyFinish = findNetworkEntries(queryLat, queryLon, storedNetworkEntryIds, iteration);
+                storedNetworkEntryIds.removeAll(allCollectedEntryIds);
+                allCollectedEntryIds.addAll(storedNetworkEntryIds);
+
+                // copy storedIds to avoid interference with the iteration
+                checkedIds.clear();
+                checkedIds.addAll(storedNetworkEntryIds);
+                // find nodes from the network entries which are close to 'point'
+                TIntIterator iter = storedNetworkEntryIds.iterator();
+                while (iter.hasNext())
+                {
+                    goFurther = true;
+                    start(explorer, iter.next());
                 }
-            });
 
-            // do early finish only if something was found (#318)
-            if (earlyFinish && closestMatch.isValid())
-                break;
+                // do early finish only if something was found (#318)
+                if (earlyFinish && closestMatch.isValid())
+                    break;
+            }
+
+            // denormalize distance and calculate snapping point only if closed match was found
+            if (closestMatch.isValid())
+            {
+                closestMatch.setQueryDistance(distCalc.calcDenormalizedDist(closestMatch.getQueryDistance()));
+                closestMatch.calcSnappedPoint(distCalc);
+            }
+
+            QueryResult res = closestMatch;
+            closestMatch = null;
+            return res;
         }
 
-        // denormalize distance and calculate snapping point only if closed match was found
-        if (closestMatch.isValid())
+        @Override
+        protected double getQueryDistance()
         {
-            closestMatch.setQueryDistance(distCalc.calcDenormalizedDist(closestMatch.getQueryDistance()));
-            closestMatch.calcSnappedPoint(distCalc);
+            return closestMatch.getQueryDistance();
         }
 
-        return closestMatch;
+        @Override
+        protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
+        {
+            if (normedDist < closestMatch.getQueryDistance())
+            {
+                closestMatch.setQueryDistance(normedDist);
+                closestMatch.setClosestNode(node);
+                closestMatch.setClosestEdge(edge.detach(false));
+                closestMatch.setWayIndex(wayIndex);
+                closestMatch.setSnappedPosition(pos);
+                return true;
+            }
+            return false;
+        }
     }
 
     /**
@@ -857,8 +1312,8 @@ public class LocationIndexTree implements LocationIndex
         double currLat;
         double currLon;
         int currNode;
-        final double queryLat;
-        final double queryLon;
+        double queryLat;
+        double queryLon;
         final GHBitSet checkBitset;
         final EdgeFilter edgeFilter;
 
@@ -870,6 +1325,16 @@ public class LocationIndexTree implements LocationIndex
             this.edgeFilter = edgeFilter;
         }
 
+        /**
+         * Prepares this search to be started again for a different query point.
+         */
+        void setQuery( double queryLat, double queryLon )
+        {
+            this.queryLat = queryLat;
+            this.queryLon = queryLon;
+            goFurther = true;
+        }
+
         @Override
         protected GHBitSet createBitSet()
         {
@@ -0,0 +1,161 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.Helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the snapping of points to the closest edge, e.g. for depots and stores which are used
+ * again and again as start or end of a route. The key is the cell of the quantized coordinates
+ * (by default ~1m) plus an object identifying the edge filter like the FlagEncoder. For a hit the
+ * edge and the position on it are reused and only the snapped point is calculated for the exact
+ * query point. The cache is direct mapped with immutable entries and needs no locking.
+ */
+public class QueryResultCache
+{
+    private static final double METERS_PER_DEGREE = 111200;
+    private static final QueryResult.Position[] POSITIONS = QueryResult.Position.values();
+    private final LocationIndex index;
+    private final Graph graph;
+    private final DistanceCalc distCalc = Helper.DIST_PLANE;
+    private double factor;
+    private CacheEntry[] cache;
+    private int cacheBits;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public QueryResultCache( LocationIndex index, Graph graph )
+    {
+        this.index = index;
+        this.graph = graph;
+        setResolution(1);
+        setSize(1 << 14);
+    }
+
+    /**
+     * @param meters the size of the cells for which the snapped edge is reused
+     */
+    public QueryResultCache setResolution( double meters )
+    {
+        if (meters <= 0)
+            throw new IllegalArgumentException("resolution has to be positive but was " + meters);
+
+        factor = METERS_PER_DEGREE / meters;
+        clear();
+        return this;
+    }
+
+    /**
+     * @param size the maximum number of cached entries, rounded to a power of two
+     */
+    public QueryResultCache setSize( int size )
+    {
+        if (size <= 0)
+            throw new IllegalArgumentException("size has to be positive but was " + size);
+
+        cacheBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+        clear();
+        return this;
+    }
+
+    public int getSize()
+    {
+        return 1 << cacheBits;
+    }
+
+    public final void clear()
+    {
+        cache = new CacheEntry[1 << cacheBits];
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Same as LocationIndex.findClosest but the result is cached.
+     * <p>
+     * @param filterKey identifies the edge filter, e.g. the FlagEncoder for a DefaultEdgeFilter. It
+     * must implement equals and hashCode if not the same instance is used for every call.
+     */
+    public QueryResult findClosest( double lat, double lon, EdgeFilter edgeFilter, Object filterKey )
+    {
+        CacheEntry[] tmpCache = cache;
+        long key = (long) Math.floor(lat * factor) << 32 | (long) Math.floor(lon * factor) & 0xFFFFFFFFL;
+        int cacheIndex = (int) (((key ^ filterKey.hashCode()) * 0x9E3779B97F4A7C15L) >>> (64 - cacheBits));
+        CacheEntry entry = tmpCache[cacheIndex];
+        if (entry != null && entry.key == key && entry.filterKey.equals(filterKey))
+        {
+            hits.incrementAndGet();
+            return entry.createQueryResult(lat, lon);
+        }
+
+        misses.incrementAndGet();
+        QueryResult qr = index.findClosest(lat, lon, edgeFilter);
+        // a failed lookup is not cached as it is cheap to repeat compared to routing
+        if (qr.isValid())
+            tmpCache[cacheIndex] = new CacheEntry(key, filterKey, qr);
+
+        return qr;
+    }
+
+    private class CacheEntry
+    {
+        final long key;
+        final Object filterKey;
+        final int edge;
+        final int adjNode;
+        final int closestNode;
+        final int wayIndex;
+        final byte position;
+
+        CacheEntry( long key, Object filterKey, QueryResult qr )
+        {
+            this.key = key;
+            this.filterKey = filterKey;
+            this.edge = qr.getClosestEdge().getEdge();
+            this.adjNode = qr.getClosestEdge().getAdjNode();
+            this.closestNode = qr.getClosestNode();
+            this.wayIndex = qr.getWayIndex();
+            this.position = (byte) qr.getSnappedPosition().ordinal();
+        }
+
+        QueryResult createQueryResult( double lat, double lon )
+        {
+            QueryResult qr = new QueryResult(lat, lon);
+            qr.setClosestNode(closestNode);
+            qr.setClosestEdge(graph.getEdgeIteratorState(edge, adjNode));
+            qr.setWayIndex(wayIndex);
+            qr.setSnappedPosition(POSITIONS[position]);
+            qr.calcSnappedPoint(distCalc);
+            qr.setQueryDistance(distCalc.calcDist(lat, lon, qr.getSnappedPoint().lat, qr.getSnappedPoint().lon));
+            return qr;
+        }
+    }
+}
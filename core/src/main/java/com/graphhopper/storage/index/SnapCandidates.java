@@ -0,0 +1,240 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer for the edges found close to a query point by LocationIndexTree.findKNearest or
+ * findWithinRadius. The candidates are kept sorted by their distance to the query point, only one
+ * candidate per edge is stored. Create a QueryResult only for the candidates you really need via
+ * LocationIndexTree.createQueryResult. Not thread safe.
+ */
+public class SnapCandidates
+{
+    private static final QueryResult.Position[] POSITIONS = QueryResult.Position.values();
+    // scratch structures reused by the queries
+    final TIntHashSet networkEntries = new TIntHashSet();
+    final TIntHashSet ringEntries = new TIntHashSet();
+    final TIntHashSet visitedEdges = new TIntHashSet();
+    private double queryLat;
+    private double queryLon;
+    private int maxSize;
+    private int size;
+    private int[] edges;
+    private int[] adjNodes;
+    private int[] closestNodes;
+    private int[] wayIndices;
+    private byte[] positions;
+    private double[] distances;
+    private double[] snappedLats;
+    private double[] snappedLons;
+
+    public SnapCandidates()
+    {
+        this(16);
+    }
+
+    public SnapCandidates( int capacity )
+    {
+        capacity = Math.max(1, capacity);
+        edges = new int[capacity];
+        adjNodes = new int[capacity];
+        closestNodes = new int[capacity];
+        wayIndices = new int[capacity];
+        positions = new byte[capacity];
+        distances = new double[capacity];
+        snappedLats = new double[capacity];
+        snappedLons = new double[capacity];
+    }
+
+    /**
+     * Removes all candidates and prepares this buffer for a new query.
+     * <p>
+     * @param maxSize only the closest maxSize candidates are kept
+     */
+    void reset( double queryLat, double queryLon, int maxSize )
+    {
+        this.queryLat = queryLat;
+        this.queryLon = queryLon;
+        this.maxSize = maxSize;
+        size = 0;
+        networkEntries.clear();
+        ringEntries.clear();
+        visitedEdges.clear();
+    }
+
+    /**
+     * Inserts the candidate at its position according to the distance.
+     * <p>
+     * @return false if this buffer is full and the candidate is not closer than the last one
+     */
+    boolean add( int edge, int adjNode, int closestNode, int wayIndex, QueryResult.Position pos,
+                 double distance, double snappedLat, double snappedLon )
+    {
+        if (size == maxSize)
+        {
+            if (distance >= distances[size - 1])
+                return false;
+
+            size--;
+        }
+
+        int index = Arrays.binarySearch(distances, 0, size, distance);
+        if (index < 0)
+            index = -index - 1;
+        else
+            // keep insertion order for equal distances
+            while (index < size && distances[index] == distance)
+            {
+                index++;
+            }
+
+        ensureCapacity(size + 1);
+        int len = size - index;
+        if (len > 0)
+        {
+            System.arraycopy(edges, index, edges, index + 1, len);
+            System.arraycopy(adjNodes, index, adjNodes, index + 1, len);
+            System.arraycopy(closestNodes, index, closestNodes, index + 1, len);
+            System.arraycopy(wayIndices, index, wayIndices, index + 1, len);
+            System.arraycopy(positions, index, positions, index + 1, len);
+            System.arraycopy(distances, index, distances, index + 1, len);
+            System.arraycopy(snappedLats, index, snappedLats, index + 1, len);
+            System.arraycopy(snappedLons, index, snappedLons, index + 1, len);
+        }
+        edges[index] = edge;
+        adjNodes[index] = adjNode;
+        closestNodes[index] = closestNode;
+        wayIndices[index] = wayIndex;
+        positions[index] = (byte) pos.ordinal();
+        distances[index] = distance;
+        snappedLats[index] = snappedLat;
+        snappedLons[index] = snappedLon;
+        size++;
+        return true;
+    }
+
+    private void ensureCapacity( int capacity )
+    {
+        if (capacity <= edges.length)
+            return;
+
+        capacity = Math.max(capacity, edges.length * 2);
+        edges = Arrays.copyOf(edges, capacity);
+        adjNodes = Arrays.copyOf(adjNodes, capacity);
+        closestNodes = Arrays.copyOf(closestNodes, capacity);
+        wayIndices = Arrays.copyOf(wayIndices, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+        snappedLats = Arrays.copyOf(snappedLats, capacity);
+        snappedLons = Arrays.copyOf(snappedLons, capacity);
+    }
+
+    boolean isFull()
+    {
+        return size == maxSize;
+    }
+
+    public double getQueryLat()
+    {
+        return queryLat;
+    }
+
+    public double getQueryLon()
+    {
+        return queryLon;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int getEdge( int index )
+    {
+        return edges[index];
+    }
+
+    /**
+     * @return the adjacent node of the edge, which defines the direction the way index refers to
+     */
+    public int getAdjNode( int index )
+    {
+        return adjNodes[index];
+    }
+
+    /**
+     * @return the tower node of the edge closest to the query point
+     */
+    public int getClosestNode( int index )
+    {
+        return closestNodes[index];
+    }
+
+    /**
+     * @see QueryResult#getWayIndex()
+     */
+    public int getWayIndex( int index )
+    {
+        return wayIndices[index];
+    }
+
+    public QueryResult.Position getPosition( int index )
+    {
+        return POSITIONS[positions[index]];
+    }
+
+    /**
+     * @return the distance in meter from the query point to the snapped point
+     */
+    public double getDistance( int index )
+    {
+        return distances[index];
+    }
+
+    public double getSnappedLat( int index )
+    {
+        return snappedLats[index];
+    }
+
+    public double getSnappedLon( int index )
+    {
+        return snappedLons[index];
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(edges[i]).append(':').append(Math.round(distances[i] * 10) / 10.0).append('m');
+        }
+        return sb.toString();
+    }
+}
@@ -70,10 +70,16 @@ public class Downloader
         conn.connect();
 
         InputStream is;
-        if (readErrorStreamNoException && conn.getResponseCode() >= 400 && conn.getErrorStream() != null)
+        if (readErrorStreamNoException && conn.getResponseCode() >= 400)
+        {
             is = conn.getErrorStream();
-        else
+            // an error without body
+            if (is == null)
+                return new ByteArrayInputStream(new byte[0]);
+        } else
+        {
             is = conn.getInputStream();
+        }
 
         // wrap
         try
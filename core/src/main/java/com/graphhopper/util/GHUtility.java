@@ -323,6 +323,7 @@ public class GHUtility
 
         return new GraphHopperStorage(store.getCHWeightings(), outdir, store.getEncodingManager(),
                 is3D, store.getExtension()).
+                setSeparateColdEdges(store.isSeparateColdEdges()).
                 create(store.getNodes());
     }
 
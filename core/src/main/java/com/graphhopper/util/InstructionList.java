@@ -79,10 +79,7 @@ public class InstructionList implements Iterable<Instruction>
             instrList.add(instrJson);
 
             InstructionAnnotation ia = instruction.getAnnotation();
-            String str = instruction.getTurnDescription(tr);
-            if (Helper.isEmpty(str))
-                str = ia.getMessage();
-            instrJson.put("text", Helper.firstBig(str));
+            instrJson.put("text", createText(instruction));
             if (!ia.isEmpty())
             {
                 instrJson.put("annotation_text", ia.getMessage());
@@ -107,6 +104,18 @@ public class InstructionList implements Iterable<Instruction>
         return instrList;
     }
 
+    /**
+     * @return the translated turn description of the specified instruction or its annotation if
+     * there is no description
+     */
+    public String createText( Instruction instruction )
+    {
+        String str = instruction.getTurnDescription(tr);
+        if (Helper.isEmpty(str))
+            str = instruction.getAnnotation().getMessage();
+        return Helper.firstBig(str);
+    }
+
     public boolean isEmpty()
     {
         return instructions.isEmpty();
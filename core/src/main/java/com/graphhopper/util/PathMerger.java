@@ -104,8 +104,8 @@ public class PathMerger
 
         if (!fullPoints.isEmpty())
         {
-            String debug = rsp.getDebugInfo() + ", simplify (" + origPoints + "->" + fullPoints.getSize() + ")";
-            rsp.setDebugInfo(debug);
+            rsp.getTrace().addCount(RouteTrace.POINTS_BEFORE_SIMPLIFY, origPoints);
+            rsp.getTrace().addCount(RouteTrace.POINTS, fullPoints.getSize());
         }
 
         if (enableInstructions)
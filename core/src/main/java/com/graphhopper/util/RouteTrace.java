@@ -0,0 +1,149 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+/**
+ * Records the time of the phases and some counters of a route request without creating any
+ * objects while routing. It is only turned into text if the debug information is requested.
+ */
+public class RouteTrace
+{
+    public static final int SNAP = 0;
+    public static final int QUERY_GRAPH = 1;
+    public static final int ALGO_INIT = 2;
+    public static final int ALGO = 3;
+    public static final int EXTRACT = 4;
+    public static final int INSTRUCTIONS = 5;
+    private static final String[] PHASE_NAMES = new String[]
+    {
+        "snap", "query_graph", "algo_init", "algo", "extract", "instructions"
+    };
+    public static final int PHASES = PHASE_NAMES.length;
+    public static final int VISITED_NODES = 0;
+    public static final int VIRTUAL_NODES = 1;
+    public static final int PATH_EDGES = 2;
+    public static final int POINTS_BEFORE_SIMPLIFY = 3;
+    public static final int POINTS = 4;
+    private static final String[] COUNTER_NAMES = new String[]
+    {
+        "visited_nodes", "virtual_nodes", "path_edges", "points_before_simplify", "points"
+    };
+    public static final int COUNTERS = COUNTER_NAMES.length;
+    private final long[] nanos = new long[PHASES];
+    private final long[] counters = new long[COUNTERS];
+    private String algorithm = "";
+    private String weighting = "";
+
+    public static String getPhaseName( int phase )
+    {
+        return PHASE_NAMES[phase];
+    }
+
+    public static String getCounterName( int counter )
+    {
+        return COUNTER_NAMES[counter];
+    }
+
+    /**
+     * Adds the time since the specified start, which is usually taken from System.nanoTime.
+     * <p>
+     * @return the current System.nanoTime to be used as start of the next phase
+     */
+    public long addSince( int phase, long startNanos )
+    {
+        long now = System.nanoTime();
+        nanos[phase] += now - startNanos;
+        return now;
+    }
+
+    public RouteTrace addNanos( int phase, long value )
+    {
+        nanos[phase] += value;
+        return this;
+    }
+
+    /**
+     * @return the time in nanoseconds spent in the specified phase
+     */
+    public long getNanos( int phase )
+    {
+        return nanos[phase];
+    }
+
+    public RouteTrace addCount( int counter, long value )
+    {
+        counters[counter] += value;
+        return this;
+    }
+
+    public long getCount( int counter )
+    {
+        return counters[counter];
+    }
+
+    /**
+     * Sets the name of the used algorithm, e.g. dijkstrabi.
+     */
+    public RouteTrace setAlgorithm( String algorithm )
+    {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    public String getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * Sets the name of the used weighting, e.g. fastest.
+     */
+    public RouteTrace setWeighting( String weighting )
+    {
+        this.weighting = weighting;
+        return this;
+    }
+
+    public String getWeighting()
+    {
+        return weighting;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        if (!algorithm.isEmpty())
+            sb.append(algorithm);
+        if (!weighting.isEmpty())
+            sb.append(sb.length() > 0 ? ", " : "").append(weighting);
+
+        for (int i = 0; i < PHASES; i++)
+        {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(PHASE_NAMES[i]).append(':').append(nanos[i] / 1e9f).append('s');
+        }
+
+        for (int i = 0; i < COUNTERS; i++)
+        {
+            sb.append(", ").append(COUNTER_NAMES[i]).append(':').append(counters[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -26,6 +26,7 @@ import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Instruction;
+import com.graphhopper.util.RouteTrace;
 import com.graphhopper.util.shapes.GHPoint;
 import org.junit.After;
 import org.junit.Before;
@@ -107,6 +108,51 @@ public class GraphHopperTest
         }
     }
 
+    @Test
+    public void testLoadContainer()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        gh.close();
+
+        File containerFile = new File(ghLoc, "graph.ghc");
+        GraphContainer.pack(new File(ghLoc), containerFile).verify();
+
+        // no encoding manager necessary
+        gh = new GraphHopper().forServer();
+        assertTrue(gh.load(containerFile.getPath()));
+        assertEquals(DAType.MMAP_RO, gh.getGraphHopperStorage().getDirectory().getDefaultType());
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        gh.close();
+    }
+
+    @Test
+    public void testSnapCache()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm).
+                setSnapCache(100, 1);
+        gh.importOrLoad();
+        GHResponse rsp1 = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp1.hasErrors());
+        assertEquals(0, gh.getSnapCache().getHits());
+        assertEquals(2, gh.getSnapCache().getMisses());
+
+        GHResponse rsp2 = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp2.hasErrors());
+        assertEquals(2, gh.getSnapCache().getHits());
+        assertEquals(rsp1.getDistance(), rsp2.getDistance(), 1e-6);
+        assertEquals(rsp1.getPoints(), rsp2.getPoints());
+        gh.close();
+    }
+
     @Test
     public void testLoadOSMNoCH()
     {
@@ -585,6 +631,41 @@ public class GraphHopperTest
         assertEquals(5, rsp.getPoints().getSize());
         assertEquals(5, rsp.getInstructions().size());
         assertEquals(Instruction.REACHED_VIA, rsp.getInstructions().get(1).getSign());
+
+        RouteTrace trace = rsp.getTrace();
+        assertEquals(rsp.getHints().getLong("visited_nodes.sum", -1), trace.getCount(RouteTrace.VISITED_NODES));
+        assertTrue(trace.getCount(RouteTrace.PATH_EDGES) > 0);
+        assertEquals(5, trace.getCount(RouteTrace.POINTS));
+        assertTrue(trace.getNanos(RouteTrace.ALGO) > 0);
+        assertEquals("dijkstrabiCH", trace.getAlgorithm());
+        assertEquals("fastest", trace.getWeighting());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("visited_nodes:"));
+    }
+
+    @Test
+    public void testMaxVisitedNodes()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                init(new CmdArgs().
+                        put("osmreader.osm", testOsm3).
+                        put("prepare.minNetworkSize", "1").
+                        put("graph.flagEncoders", "CAR").
+                        put("routing.maxVisitedNodes", "1")).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+        assertEquals(1, instance.getMaxVisitedNodes());
+
+        GHRequest req = new GHRequest().addPoint(new GHPoint(11.1, 50)).addPoint(new GHPoint(12, 51));
+        GHResponse rsp = instance.route(req);
+        assertTrue(rsp.hasErrors());
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().get(0).getMessage().contains("visited nodes"));
+        assertTrue(rsp.getErrors().get(0) instanceof RoutingBudgetExceededException);
+
+        // the hint overwrites the configured limit
+        req.getHints().put("max_visited_nodes", 1000);
+        rsp = instance.route(req);
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertEquals(147930.5, rsp.getDistance(), .1);
     }
 
     @Test
@@ -0,0 +1,238 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.matching;
+
+import com.graphhopper.routing.util.CarFlagEncoder;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphExtension;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MapMatchingTest
+{
+    private static final int SIZE = 5;
+    private final DistanceCalc distCalc = Helper.DIST_EARTH;
+    private FlagEncoder encoder;
+    private GraphHopperStorage graph;
+    private LocationIndexTree index;
+    private int[][] horizontalEdges;
+    private int[][] verticalEdges;
+
+    @Before
+    public void setUp()
+    {
+        encoder = new CarFlagEncoder();
+        graph = new GraphHopperStorage(new RAMDirectory(), new EncodingManager(encoder), false,
+                new GraphExtension.NoOpExtension()).create(100);
+        // a grid with ~110m between the nodes
+        NodeAccess na = graph.getNodeAccess();
+        for (int row = 0; row < SIZE; row++)
+        {
+            for (int col = 0; col < SIZE; col++)
+            {
+                na.setNode(row * SIZE + col, lat(row), lon(col));
+            }
+        }
+
+        horizontalEdges = new int[SIZE][SIZE - 1];
+        verticalEdges = new int[SIZE - 1][SIZE];
+        for (int row = 0; row < SIZE; row++)
+        {
+            for (int col = 0; col < SIZE; col++)
+            {
+                if (col + 1 < SIZE)
+                    horizontalEdges[row][col] = connect(row * SIZE + col, row * SIZE + col + 1);
+                if (row + 1 < SIZE)
+                    verticalEdges[row][col] = connect(row * SIZE + col, (row + 1) * SIZE + col);
+            }
+        }
+        index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+    }
+
+    @After
+    public void tearDown()
+    {
+        graph.close();
+    }
+
+    private static double lat( int row )
+    {
+        return 50 + row * 0.001;
+    }
+
+    private static double lon( int col )
+    {
+        return 10 + col * 0.0015;
+    }
+
+    private int connect( int from, int to )
+    {
+        NodeAccess na = graph.getNodeAccess();
+        double dist = distCalc.calcDist(na.getLatitude(from), na.getLongitude(from),
+                na.getLatitude(to), na.getLongitude(to));
+        return graph.edge(from, to, dist, true).getEdge();
+    }
+
+    /**
+     * Drives along the first row to the last column and then up, with some noise perpendicular to
+     * the road.
+     */
+    private List<GHPoint> createTrace()
+    {
+        List<GHPoint> trace = new ArrayList<GHPoint>();
+        int counter = 0;
+        for (double lon = lon(0) + 0.0002; lon < lon(SIZE - 1); lon += 0.0004)
+        {
+            trace.add(new GHPoint(lat(0) + (counter++ % 2 == 0 ? 0.00006 : -0.00006), lon));
+        }
+        for (double lat = lat(0); lat <= lat(SIZE - 2) + 0.0008; lat += 0.0003)
+        {
+            trace.add(new GHPoint(lat, lon(SIZE - 1) + (counter++ % 2 == 0 ? 0.00009 : -0.00009)));
+        }
+        return trace;
+    }
+
+    private TIntArrayList createExpectedEdges()
+    {
+        TIntArrayList expected = new TIntArrayList();
+        for (int col = 0; col < SIZE - 1; col++)
+        {
+            expected.add(horizontalEdges[0][col]);
+        }
+        for (int row = 0; row < SIZE - 1; row++)
+        {
+            expected.add(verticalEdges[row][SIZE - 1]);
+        }
+        return expected;
+    }
+
+    @Test
+    public void testMatch()
+    {
+        List<GHPoint> trace = createTrace();
+        MatchResult result = new MapMatching(graph, index, encoder).match(trace);
+
+        assertEquals(createExpectedEdges(), result.getEdges());
+        assertEquals(0, result.getBreaks());
+        assertEquals(trace.size(), result.getMatchedPoints().size());
+        for (int i = 0; i < trace.size(); i++)
+        {
+            MatchedPoint mp = result.getMatchedPoints().get(i);
+            assertEquals(i, mp.getIndex());
+            assertTrue(mp.toString(), mp.isMatched());
+            assertTrue(mp.toString(), mp.getDistance() < 11);
+        }
+
+        GHPoint first = result.getMatchedPoints().get(0).getSnappedPoint();
+        GHPoint last = result.getMatchedPoints().get(trace.size() - 1).getSnappedPoint();
+        double expectedDistance = distCalc.calcDist(first.lat, first.lon, lat(0), lon(SIZE - 1))
+                + distCalc.calcDist(lat(0), lon(SIZE - 1), last.lat, last.lon);
+        assertEquals(expectedDistance, result.getDistance(), 1);
+        assertEquals(first, result.getPoints().toGHPoint(0));
+        assertEquals(last, result.getPoints().toGHPoint(result.getPoints().size() - 1));
+    }
+
+    @Test
+    public void testWindowsGiveSameResult()
+    {
+        List<GHPoint> trace = createTrace();
+        MatchResult expected = new MapMatching(graph, index, encoder).match(trace);
+
+        final List<MatchResult> windows = new ArrayList<MatchResult>();
+        MapMatching mapMatching = new MapMatching(graph, index, encoder).setWindowSize(3);
+        mapMatching.match(trace.iterator(), new MatchListener()
+        {
+            @Override
+            public void onMatch( MatchResult result )
+            {
+                windows.add(result);
+            }
+        });
+        assertEquals((trace.size() + 2) / 3, windows.size());
+
+        MatchResult merged = new MatchResult(false);
+        for (MatchResult window : windows)
+        {
+            merged.add(window);
+        }
+        assertEquals(expected.getEdges(), merged.getEdges());
+        assertEquals(expected.getDistance(), merged.getDistance(), 1e-6);
+        assertEquals(expected.getPoints().size(), merged.getPoints().size());
+        for (int i = 0; i < trace.size(); i++)
+        {
+            assertEquals(i, merged.getMatchedPoints().get(i).getIndex());
+            assertEquals(expected.getMatchedPoints().get(i).getEdge(), merged.getMatchedPoints().get(i).getEdge());
+        }
+    }
+
+    @Test
+    public void testUnmatchedPoint()
+    {
+        List<GHPoint> trace = createTrace();
+        // an outlier in the middle of a block
+        trace.add(3, new GHPoint(lat(0) + 0.0005, lon(1) + 0.00075));
+        MatchResult result = new MapMatching(graph, index, encoder).match(trace);
+
+        assertFalse(result.getMatchedPoints().get(3).isMatched());
+        assertEquals(createExpectedEdges(), result.getEdges());
+        assertEquals(0, result.getBreaks());
+    }
+
+    @Test
+    public void testBreak()
+    {
+        // an isolated road north of the grid
+        NodeAccess na = graph.getNodeAccess();
+        int node = SIZE * SIZE;
+        na.setNode(node, lat(SIZE + 2), lon(0));
+        na.setNode(node + 1, lat(SIZE + 2), lon(1));
+        int isolatedEdge = connect(node, node + 1);
+        index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+
+        List<GHPoint> trace = new ArrayList<GHPoint>();
+        trace.add(new GHPoint(lat(0), lon(0) + 0.0003));
+        trace.add(new GHPoint(lat(0), lon(0) + 0.0008));
+        trace.add(new GHPoint(lat(SIZE + 2), lon(0) + 0.0003));
+        trace.add(new GHPoint(lat(SIZE + 2), lon(0) + 0.0008));
+        MatchResult result = new MapMatching(graph, index, encoder).match(trace);
+
+        assertEquals(1, result.getBreaks());
+        assertEquals(TIntArrayList.wrap(new int[]
+        {
+            horizontalEdges[0][0], isolatedEdge
+        }), result.getEdges());
+        assertEquals(isolatedEdge, result.getMatchedPoints().get(3).getEdge());
+    }
+}
@@ -99,6 +99,51 @@ public abstract class AbstractRoutingAlgorithmTester
         assertEquals(p.toString(), Helper.createTList(), p.calcNodes());
     }
 
+    @Test
+    public void testMaxVisitedNodes()
+    {
+        GraphHopperStorage ghStorage = createTestStorage();
+        RoutingAlgorithm algo = createAlgo(ghStorage);
+        algo.setMaxVisitedNodes(0);
+        try
+        {
+            algo.calcPath(0, 7);
+            assertTrue(false);
+        } catch (RoutingBudgetExceededException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("visited nodes"));
+        }
+
+        algo = createAlgo(ghStorage);
+        algo.setMaxVisitedNodes(100);
+        assertTrue(algo.calcPath(0, 7).isFound());
+    }
+
+    @Test
+    public void testDeadline()
+    {
+        GraphHopperStorage graph = createGHStorage(false);
+        for (int i = 0; i < 600; i++)
+        {
+            graph.edge(i, i + 1, 1, true);
+        }
+
+        RoutingAlgorithm algo = createAlgo(graph);
+        algo.setDeadline(System.currentTimeMillis() - 1);
+        try
+        {
+            algo.calcPath(0, 600);
+            assertTrue(false);
+        } catch (RoutingBudgetExceededException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("took too long"));
+        }
+
+        algo = createAlgo(graph);
+        algo.setDeadline(System.currentTimeMillis() + 60000);
+        assertTrue(algo.calcPath(0, 600).isFound());
+    }
+
     @Test
     public void testWeightLimit_issue380()
     {
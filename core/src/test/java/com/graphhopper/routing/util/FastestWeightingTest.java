@@ -18,7 +18,12 @@
 package com.graphhopper.routing.util;
 
 import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.SpeedOverlay;
 import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.PMap;
@@ -76,6 +81,30 @@ public class FastestWeightingTest
         assertEquals(1.0 / 0, instance.calcWeight(createEdge(0, encoder.setProperties(0, true, true)), false, EdgeIterator.NO_EDGE), 1e-8);
     }
 
+    @Test
+    public void testSpeedOverlay()
+    {
+        EncodingManager em = new EncodingManager("CAR");
+        FlagEncoder encoder = em.getEncoder("CAR");
+        GraphHopperStorage g = new GraphBuilder(em).create();
+        EdgeIteratorState edge = g.edge(0, 1).setDistance(1000).setFlags(encoder.setProperties(100, true, true));
+        SpeedOverlay overlay = new SpeedOverlay(new RAMDirectory(), encoder).create(g.getAllEdges().getMaxId());
+        FastestWeighting instance = new FastestWeighting(encoder).setSpeedOverlay(overlay);
+        assertEquals(36, instance.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+
+        overlay.setSpeed(edge, 50);
+        assertEquals(72, instance.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+        // other direction is unchanged
+        assertEquals(36, instance.calcWeight(edge, true, EdgeIterator.NO_EDGE), 1e-8);
+        assertEquals(72, instance.calcWeight(g.getEdgeIteratorState(edge.getEdge(), 0), true, EdgeIterator.NO_EDGE), 1e-8);
+
+        overlay.setSpeed(edge, 0);
+        assertEquals(1.0 / 0, instance.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+
+        overlay.removeSpeed(edge.getEdge());
+        assertEquals(36, instance.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-8);
+    }
+
     EdgeIterator createEdge( final double distance, final long flags )
     {
         return new GHUtility.DisabledEdgeIterator()
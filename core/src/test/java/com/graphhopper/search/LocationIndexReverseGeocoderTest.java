@@ -0,0 +1,88 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.search;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.storage.index.LocationIndexTree;
+import com.graphhopper.util.shapes.GHPlace;
+import com.graphhopper.util.shapes.GHPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocationIndexReverseGeocoderTest
+{
+    private LocationIndexReverseGeocoder geocoder;
+
+    @Before
+    public void setUp()
+    {
+        GraphHopperStorage graph = new GraphBuilder(new EncodingManager("CAR")).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50, 10);
+        na.setNode(1, 50, 10.01);
+        na.setNode(2, 50.01, 10.01);
+        graph.edge(0, 1, 700, true).setName("South Street");
+        graph.edge(1, 2, 1100, true).setName("East Street");
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+        geocoder = new LocationIndexReverseGeocoder(index);
+    }
+
+    @Test
+    public void testPlaces2Names()
+    {
+        List<GHPlace> places = geocoder.places2names(new GHPlace(49.999, 10.005), new GHPlace(50.005, 10.011));
+        assertEquals(2, places.size());
+        assertEquals("South Street", places.get(0).getName());
+        assertEquals(50, places.get(0).lat, 1e-6);
+        assertEquals(10.005, places.get(0).lon, 1e-6);
+        assertEquals("East Street", places.get(1).getName());
+        assertEquals(10.01, places.get(1).lon, 1e-6);
+    }
+
+    @Test
+    public void testCache()
+    {
+        assertEquals("South Street", geocoder.getName(49.999, 10.005));
+        assertEquals(0, geocoder.getCacheHits());
+        assertEquals(1, geocoder.getCacheMisses());
+
+        // same cell
+        assertEquals("South Street", geocoder.getName(49.99901, 10.00501));
+        assertEquals(1, geocoder.getCacheHits());
+
+        List<GHPlace> places = geocoder.points2names(Arrays.asList(new GHPoint(50.005, 10.011), new GHPoint(49.999, 10.005)));
+        assertEquals("East Street", places.get(0).getName());
+        assertEquals("South Street", places.get(1).getName());
+        assertEquals(2, geocoder.getCacheHits());
+
+        geocoder.setCacheSize(0);
+        assertEquals("South Street", geocoder.getName(49.999, 10.005));
+        assertEquals(2, geocoder.getCacheHits());
+        assertEquals(2, geocoder.getCacheMisses());
+    }
+}
@@ -62,6 +62,26 @@ public class NameIndexTest
         index.close();
     }
 
+    @Test
+    public void testDeduplicate()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        long main = index.put("Main Street");
+        long other = index.put("Other Street");
+        assertEquals(main, index.put("Main Street"));
+        assertEquals(other, index.put("Other Street"));
+        long used = index.put("x");
+        assertEquals(used, index.put("x"));
+
+        // reached the limit => store again
+        index.setMaxDictionarySize(3);
+        long pointer = index.put("y");
+        assertTrue(pointer != index.put("z"));
+        assertTrue(pointer != index.put("y"));
+        assertEquals("y", index.get(index.put("y")));
+        index.close();
+    }
+
     @Test
     public void testCreate()
     {
@@ -110,6 +130,8 @@ public class NameIndexTest
         // make sure bytePointer is correctly set after loadExisting
         long newPointer = index.put("testing");
         assertEquals(newPointer + ">" + pointer, pointer + "test".getBytes().length + 1, newPointer);
+        // the dictionary is rebuilt from the stored names
+        assertEquals(pointer, index.put("test"));
         index.close();
 
         Helper.removeDir(new File(location));
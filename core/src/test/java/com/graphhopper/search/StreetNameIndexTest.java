@@ -0,0 +1,137 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.search;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPlace;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreetNameIndexTest
+{
+    private final String location = "./target/tmp/street-name-index";
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+        graph = new GraphBuilder(new EncodingManager("CAR")).create();
+        NodeAccess na = graph.getNodeAccess();
+        for (int i = 0; i < 6; i++)
+        {
+            na.setNode(i, 50 + i * 0.01, 10);
+        }
+        graph.edge(0, 1, 100, true).setName("Main Street");
+        graph.edge(1, 2, 100, true).setName("Mainzer Straße");
+        graph.edge(2, 3, 100, true).setName("Main Street");
+        graph.edge(3, 4, 100, true).setName("Bahnhofstraße");
+        graph.edge(4, 5, 100, true).setName("main  street");
+        graph.edge(0, 5, 100, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSearch()
+    {
+        StreetNameIndex index = new StreetNameIndex(graph, new RAMDirectory()).prepareIndex();
+        assertEquals(4, index.getNameCount());
+
+        List<StreetNameIndex.Match> matches = index.search("main street", 10, false);
+        assertEquals(2, matches.size());
+        assertTrue(matches.get(0).isExact());
+        assertTrue(matches.get(1).isExact());
+        assertEquals(3, index.getEdges(matches.get(0)).length + index.getEdges(matches.get(1)).length);
+
+        matches = index.search("Mai", 10, false);
+        assertEquals(3, matches.size());
+        assertEquals("Mainzer Straße", matches.get(2).getName());
+        assertFalse(matches.get(2).isExact());
+        assertEquals(1, index.search("Mai", 1, false).size());
+
+        assertTrue(index.search("Bahnhofstrasse", 10, false).isEmpty());
+        matches = index.search("Bahnhofstrase", 10, true);
+        assertEquals(1, matches.size());
+        assertEquals("Bahnhofstraße", matches.get(0).getName());
+        assertEquals(1, matches.get(0).getDistance());
+
+        assertTrue(index.search("xyz", 10, true).isEmpty());
+        assertTrue(index.search("  ", 10, true).isEmpty());
+    }
+
+    @Test
+    public void testNames2Places()
+    {
+        StreetNameIndex index = new StreetNameIndex(graph, new RAMDirectory()).prepareIndex();
+        List<GHPlace> places = index.names2places(new GHPlace().setName("bahnhofstr"), new GHPlace().setName("unknown"));
+        assertEquals(1, places.size());
+        assertEquals("Bahnhofstraße", places.get(0).getName());
+        assertEquals(50.04, places.get(0).lat, 1e-6);
+    }
+
+    @Test
+    public void testFlushAndLoad()
+    {
+        StreetNameIndex index = new StreetNameIndex(graph, new RAMDirectory(location, true)).prepareIndex();
+        index.close();
+
+        index = new StreetNameIndex(graph, new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(4, index.getNameCount());
+        assertEquals("Mainzer Straße", index.search("mainzer", 1, false).get(0).getName());
+        index.close();
+    }
+
+    @Test
+    public void testCompareBytes()
+    {
+        byte[] a = StreetNameIndex.toBytes("strasse");
+        byte[] b = StreetNameIndex.toBytes("straße");
+        byte[] c = StreetNameIndex.toBytes("stra");
+        assertTrue(StreetNameIndex.compareBytes(a, a.length, b, b.length) < 0);
+        assertTrue(StreetNameIndex.compareBytes(b, b.length, a, a.length) > 0);
+        assertTrue(StreetNameIndex.compareBytes(c, c.length, a, a.length) < 0);
+        assertEquals(0, StreetNameIndex.compareBytes(a, a.length, a, a.length));
+    }
+
+    @Test
+    public void testCalcDistance()
+    {
+        assertEquals(0, StreetNameIndex.calcDistance("abc", "abc", 2));
+        assertEquals(1, StreetNameIndex.calcDistance("abc", "abd", 2));
+        assertEquals(2, StreetNameIndex.calcDistance("abc", "a", 2));
+        assertEquals(3, StreetNameIndex.calcDistance("abcdef", "a", 2));
+        assertEquals(3, StreetNameIndex.calcDistance("abcd", "dcba", 2));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class GraphContainerTest
+{
+    private final String location = "./target/tmp/container";
+    private final File containerFile = new File("./target/tmp/container.ghc");
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+        containerFile.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+        containerFile.delete();
+    }
+
+    @Test
+    public void testPackAndMap() throws Exception
+    {
+        Directory dir = new RAMDirectory(location, true);
+        DataAccess da1 = dir.find("one").create(1000);
+        da1.setInt(0, 123);
+        da1.setInt(996, 456);
+        da1.setHeader(4, 7);
+        da1.flush();
+        DataAccess da2 = new MMapDirectory(location).find("two").setSegmentSize(128).create(300);
+        da2.setInt(296, 789);
+        da2.flush();
+        da2.close();
+        new File(location, "readme.txt").createNewFile();
+
+        GraphContainer container = GraphContainer.pack(new File(location), containerFile);
+        container.verify();
+        assertEquals(2, container.getSections().size());
+        assertNull(container.getSection("readme.txt"));
+        for (GraphContainer.Section s : container.getSections())
+        {
+            assertEquals(0, s.getOffset() % GraphContainer.PAGE_SIZE);
+        }
+
+        ContainerDirectory cDir = new ContainerDirectory(containerFile);
+        DataAccess mapped = cDir.find("one");
+        assertTrue(mapped.loadExisting());
+        assertEquals(DAType.MMAP_RO, mapped.getType());
+        assertEquals(da1.getCapacity(), mapped.getCapacity());
+        assertEquals(123, mapped.getInt(0));
+        assertEquals(456, mapped.getInt(996));
+        assertEquals(7, mapped.getHeader(4));
+
+        mapped = cDir.find("two");
+        assertTrue(mapped.loadExisting());
+        assertEquals(128, mapped.getSegmentSize());
+        assertEquals(789, mapped.getInt(296));
+
+        // not in the container
+        assertFalse(cDir.find("three").loadExisting());
+        cDir.clear();
+    }
+
+    @Test
+    public void testVerifyDetectsCorruption() throws Exception
+    {
+        Directory dir = new RAMDirectory(location, true);
+        DataAccess da = dir.find("one").create(1000);
+        da.setInt(0, 123);
+        da.flush();
+
+        GraphContainer container = GraphContainer.pack(new File(location), containerFile);
+        RandomAccessFile raFile = new RandomAccessFile(containerFile, "rw");
+        raFile.seek(container.getSection("one").getOffset() + 200);
+        raFile.write(42);
+        raFile.close();
+        try
+        {
+            new GraphContainer(containerFile).verify();
+            fail();
+        } catch (IllegalStateException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("one"));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs all graph storage tests with geometry, name and additional field stored in 'edges_cold'.
+ */
+public class GraphHopperStorageWithColdEdgesTest extends GraphHopperStorageTest
+{
+    @Override
+    protected GraphHopperStorage newGHStorage( Directory dir, boolean enabled3D )
+    {
+        return super.newGHStorage(dir, enabled3D).setSeparateColdEdges(true);
+    }
+
+    @Test
+    public void testHotEdgeEntryIsSmaller()
+    {
+        graph = newGHStorage(new RAMDirectory(), false).create(defaultSize);
+        BaseGraph baseGraph = (BaseGraph) graph.getGraph(Graph.class);
+        GraphHopperStorage mixed = super.newGHStorage(new RAMDirectory(), false).create(defaultSize);
+        BaseGraph mixedBaseGraph = (BaseGraph) mixed.getGraph(Graph.class);
+
+        assertTrue(baseGraph.isSeparateColdEdges());
+        assertFalse(mixedBaseGraph.isSeparateColdEdges());
+        assertEquals(mixedBaseGraph.edgeEntryBytes, baseGraph.edgeEntryBytes + baseGraph.coldEdgeEntryBytes);
+        mixed.close();
+    }
+
+    @Test
+    public void testLoadUsesStoredLayout()
+    {
+        graph = newGHStorage(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10);
+        na.setNode(1, 11, 20);
+        EdgeIteratorState edge = graph.edge(0, 1, 100, true).setName("named street");
+        edge.setWayGeometry(Helper.createPointList(10.5, 15));
+        graph.flush();
+        graph.close();
+
+        // configured without cold edges but the stored graph has them
+        graph = super.newGHStorage(new RAMDirectory(defaultGraphLoc, true), false);
+        assertTrue(graph.loadExisting());
+        assertTrue(graph.isSeparateColdEdges());
+        EdgeIteratorState loaded = graph.getEdgeIteratorState(edge.getEdge(), 1);
+        assertEquals("named street", loaded.getName());
+        assertEquals(Helper.createPointList(10.5, 15), loaded.fetchWayGeometry(0));
+        assertEquals(100, loaded.getDistance(), 1e-4);
+    }
+}
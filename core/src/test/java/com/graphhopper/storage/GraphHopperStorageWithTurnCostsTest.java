@@ -134,4 +134,45 @@ public class GraphHopperStorageWithTurnCostsTest extends GraphHopperStorageTest
         // A new segment should be added, which will support 128 / 16 = 8 more entries.
         assertEquals(112, turnCostStorage.getCapacity() / 16);
     }
+
+    @Test
+    public void testLookupSameAsList()
+    {
+        graph = newGHStorage(new RAMDirectory(), false).create(defaultSize);
+        Random r = new Random(1);
+        int nodes = 50;
+        for (int i = 0; i < 200; i++)
+        {
+            graph.edge(r.nextInt(nodes), r.nextInt(nodes), 10, true);
+        }
+
+        for (int i = 0; i < 300; i++)
+        {
+            turnCostStorage.addTurnInfo(r.nextInt(200), r.nextInt(nodes), r.nextInt(200), 1 + r.nextInt(100));
+        }
+        // duplicates have to return the first entry
+        turnCostStorage.addTurnInfo(7, 3, 8, 11);
+        turnCostStorage.addTurnInfo(7, 3, 8, 12);
+        // u-turns at different nodes
+        turnCostStorage.addTurnInfo(9, 4, 9, 21);
+        turnCostStorage.addTurnInfo(9, 5, 9, 22);
+
+        for (int from = 0; from < 200; from++)
+        {
+            for (int via = 0; via < nodes; via++)
+            {
+                for (int to = 0; to < 200; to += 7)
+                {
+                    assertEquals(turnCostStorage.nextCostFlags(from, via, to), turnCostStorage.getTurnCostFlags(from, via, to));
+                }
+            }
+        }
+        assertEquals(turnCostStorage.nextCostFlags(7, 3, 8), turnCostStorage.getTurnCostFlags(7, 3, 8));
+        assertEquals(22, turnCostStorage.getTurnCostFlags(9, 5, 9));
+
+        // adding invalidates the table
+        turnCostStorage.addTurnInfo(1, 2, 199, 99);
+        assertEquals(99, turnCostStorage.getTurnCostFlags(1, 2, 199));
+        assertEquals(0, turnCostStorage.getTurnCostFlags(1, nodes + 10, 199));
+    }
 }
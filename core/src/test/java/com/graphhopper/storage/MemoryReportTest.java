@@ -0,0 +1,67 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MemoryReportTest
+{
+    @Test
+    public void testGraphReport()
+    {
+        EncodingManager em = new EncodingManager("CAR");
+        GraphHopperStorage g = new GraphBuilder(em).setExpectedSize((byte) 1).create();
+        g.edge(0, 1, 10, true).setName("main street").
+                setWayGeometry(Helper.createPointList(1, 1, 2, 2));
+        g.edge(1, 2, 10, true);
+
+        MemoryReport report = g.getMemoryReport();
+        MemoryReport.Entry nodes = report.getEntry("nodes");
+        assertEquals(DAType.RAM_INT, nodes.getType());
+        assertTrue(nodes.getUsedBytes() > 0);
+        assertTrue(nodes.getUsedBytes() <= nodes.getCapacity());
+        assertTrue(nodes.getSegments() > 0);
+
+        MemoryReport.Entry edges = report.getEntry("edges");
+        assertTrue(edges.getUsedBytes() > 0);
+        assertEquals(0, edges.getUsedBytes() % 2);
+        // the first 4 integers are reserved
+        assertTrue(report.getEntry("geometry").getUsedBytes() > 4 * 4);
+        assertTrue(report.getEntry("names").getUsedBytes() > 0);
+        // not reported from the graph
+        assertEquals(-1, report.getEntry("properties").getUsedBytes());
+
+        assertEquals(report.getCapacity(), report.getCapacity(true));
+        assertEquals(0, report.getCapacity(false));
+        assertTrue(report.getUsedBytes() <= report.getCapacity());
+
+        List<MemoryReport.Entry> list = report.getEntries();
+        for (int i = 1; i < list.size(); i++)
+        {
+            assertTrue(list.get(i - 1).getCapacity() >= list.get(i).getCapacity());
+        }
+        assertTrue(report.toString(), report.toString().contains("edges: "));
+        g.close();
+    }
+}
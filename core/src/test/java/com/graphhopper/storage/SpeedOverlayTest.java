@@ -0,0 +1,101 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class SpeedOverlayTest
+{
+    private final String location = "./target/tmp/speed_overlay";
+    private final FlagEncoder encoder = new EncodingManager("CAR").getEncoder("CAR");
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @Test
+    public void testSetAndGet()
+    {
+        SpeedOverlay overlay = new SpeedOverlay(new RAMDirectory(), encoder).create(10);
+        assertTrue(Double.isNaN(overlay.getSpeed(3, true)));
+        assertTrue(Double.isNaN(overlay.getSpeed(3, false)));
+
+        overlay.setSpeed(3, 45.5, 0);
+        assertEquals(45.5, overlay.getSpeed(3, true), 1e-6);
+        assertEquals(0, overlay.getSpeed(3, false), 1e-6);
+        assertTrue(Double.isNaN(overlay.getSpeed(2, true)));
+
+        // speeds are limited to the maximum speed of the encoder
+        overlay.setSpeed(4, 1000, Double.NaN);
+        assertEquals(encoder.getMaxSpeed(), overlay.getSpeed(4, true), 1e-6);
+        assertTrue(Double.isNaN(overlay.getSpeed(4, false)));
+
+        overlay.removeSpeed(3);
+        assertTrue(Double.isNaN(overlay.getSpeed(3, true)));
+        assertTrue(Double.isNaN(overlay.getSpeed(3, false)));
+
+        overlay.clear();
+        assertTrue(Double.isNaN(overlay.getSpeed(4, true)));
+    }
+
+    @Test
+    public void testOutOfBounds()
+    {
+        SpeedOverlay overlay = new SpeedOverlay(new RAMDirectory(), encoder).create(10);
+        try
+        {
+            overlay.setSpeed(10, 20, 20);
+            fail();
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testFlushAndLoad()
+    {
+        SpeedOverlay overlay = new SpeedOverlay(new RAMDirectory(location, true), encoder).create(10);
+        overlay.setSpeed(7, 30, 60);
+        overlay.flush();
+        overlay.close();
+
+        overlay = new SpeedOverlay(new RAMDirectory(location, true), encoder);
+        assertTrue(overlay.loadExisting());
+        assertEquals(10, overlay.getEdgeCount());
+        assertEquals(30, overlay.getSpeed(7, true), 1e-6);
+        assertEquals(60, overlay.getSpeed(7, false), 1e-6);
+        overlay.close();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LocationIndexRTreeTest extends AbstractLocationIndexTester
+{
+    @Override
+    public LocationIndex createIndex( Graph g, int resolution )
+    {
+        return new LocationIndexRTree(g, new RAMDirectory(location, true)).prepareIndex();
+    }
+
+    @Override
+    public boolean hasEdgeSupport()
+    {
+        return true;
+    }
+
+    GraphHopperStorage createRandomGraph( EncodingManager em, long seed )
+    {
+        GraphHopperStorage graph = createGHStorage(new RAMDirectory(location, true), em, false);
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(seed);
+        int nodes = 500;
+        for (int i = 0; i < nodes; i++)
+        {
+            na.setNode(i, 49 + rand.nextDouble(), 10 + rand.nextDouble());
+        }
+        for (int i = 0; i < 2 * nodes; i++)
+        {
+            int from = rand.nextInt(nodes);
+            int to = rand.nextInt(nodes);
+            if (from == to)
+                continue;
+
+            if (i % 3 == 0)
+                graph.edge(from, to, 1, true).setWayGeometry(Helper.createPointList(
+                        49 + rand.nextDouble(), 10 + rand.nextDouble()));
+            else
+                graph.edge(from, to, 1, true);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testSameAsLocationIndexTree()
+    {
+        EncodingManager em = new EncodingManager("CAR");
+        GraphHopperStorage graph = createRandomGraph(em, 1);
+        LocationIndexTree tree = new LocationIndexTree(graph, new RAMDirectory());
+        tree.setResolution(500);
+        tree.setMaxRegionSearch(100);
+        tree.prepareIndex();
+        idx = createIndex(graph, -1);
+        Random rand = new Random(2);
+        for (int i = 0; i < 200; i++)
+        {
+            double lat = 48.9 + rand.nextDouble() * 1.2;
+            double lon = 9.9 + rand.nextDouble() * 1.2;
+            QueryResult expected = tree.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            QueryResult res = idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            assertTrue(res.isValid());
+            assertEquals(expected.getQueryDistance(), res.getQueryDistance(), 1e-2);
+            assertEquals(expected.getSnappedPoint().lat, res.getSnappedPoint().lat, 1e-6);
+            assertEquals(expected.getSnappedPoint().lon, res.getSnappedPoint().lon, 1e-6);
+        }
+        tree.close();
+    }
+
+    @Test
+    public void testLoadExisting()
+    {
+        EncodingManager em = new EncodingManager("CAR");
+        GraphHopperStorage graph = createRandomGraph(em, 3);
+        LocationIndex index = createIndex(graph, -1);
+        index.flush();
+        QueryResult expected = index.findClosest(49.5, 10.5, EdgeFilter.ALL_EDGES);
+        index.close();
+
+        idx = new LocationIndexRTree(graph, new RAMDirectory(location, true));
+        assertTrue(idx.loadExisting());
+        QueryResult res = idx.findClosest(49.5, 10.5, EdgeFilter.ALL_EDGES);
+        assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+        assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+    }
+
+    @Test
+    public void testEmptyGraph()
+    {
+        idx = createIndex(createGHStorage(new EncodingManager("CAR")), -1);
+        assertFalse(idx.findClosest(49.5, 10.5, EdgeFilter.ALL_EDGES).isValid());
+        assertEquals(-1, idx.findID(49.5, 10.5));
+    }
+
+    @Test
+    public void testHilbertValue()
+    {
+        int max = (1 << 15) - 1;
+        assertEquals(0, LocationIndexRTree.calcHilbertValue(0, 0));
+        assertTrue(LocationIndexRTree.calcHilbertValue(0, max) < LocationIndexRTree.calcHilbertValue(max, max));
+        assertTrue(LocationIndexRTree.calcHilbertValue(max, max) < LocationIndexRTree.calcHilbertValue(max, 0));
+
+        // neighbouring cells are visited one after the other
+        long sum = LocationIndexRTree.calcHilbertValue(0, 1) + LocationIndexRTree.calcHilbertValue(1, 1)
+                + LocationIndexRTree.calcHilbertValue(1, 0);
+        assertEquals(1 + 2 + 3, sum);
+    }
+}
@@ -27,6 +27,9 @@ import com.graphhopper.util.shapes.GHPoint;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -495,4 +498,130 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester
         assertTrue(qr.isValid());
         assertEquals(2, qr.getClosestNode());
     }
+
+    @Test
+    public void testFindClosestBatch()
+    {
+        Graph graph = createTestGraph(encodingManager);
+        LocationIndexTree index = createIndex(graph, 50000);
+        Random rand = new Random(1);
+        int size = 2500;
+        double[] lats = new double[size];
+        double[] lons = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            lats[i] = -1.2 + rand.nextDouble() * 2;
+            lons[i] = -1.2 + rand.nextDouble() * 3;
+        }
+
+        ExecutorService service = Executors.newFixedThreadPool(2);
+        for (int parallelism : new int[]
+        {
+            1, 3
+        })
+        {
+            QueryResult[] results = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES, service, parallelism);
+            assertEquals(size, results.length);
+            for (int i = 0; i < size; i++)
+            {
+                QueryResult expected = index.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES);
+                assertEquals(expected.getClosestNode(), results[i].getClosestNode());
+                assertEquals(expected.getQueryDistance(), results[i].getQueryDistance(), 1e-6);
+                assertEquals(lats[i], results[i].getQueryPoint().lat, 1e-6);
+            }
+        }
+
+        service.shutdown();
+        assertEquals(size, index.findClosest(lats, lons, EdgeFilter.ALL_EDGES, null, 3).length);
+
+        int[] order = index.createSpatialOrder(lats, lons);
+        for (int i = 1; i < size; i++)
+        {
+            assertTrue(index.keyAlgo.encode(lats[order[i - 1]], lons[order[i - 1]])
+                    <= index.keyAlgo.encode(lats[order[i]], lons[order[i]]));
+        }
+    }
+
+    @Test
+    public void testFindKNearestAndWithinRadius()
+    {
+        Graph graph = createTestGraph(encodingManager);
+        LocationIndexTree index = createIndex(graph, 50000);
+        SnapCandidates all = new SnapCandidates(2);
+        SnapCandidates candidates = new SnapCandidates();
+        Random rand = new Random(1);
+        for (int i = 0; i < 100; i++)
+        {
+            double lat = -1.2 + rand.nextDouble() * 2;
+            double lon = -1.2 + rand.nextDouble() * 3;
+            index.findWithinRadius(lat, lon, 1e6, EdgeFilter.ALL_EDGES, all);
+            assertEquals(graph.getAllEdges().getMaxId(), all.getSize());
+
+            QueryResult closest = index.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+            QueryResult first = index.createQueryResult(all, 0);
+            assertEquals(closest.getQueryDistance(), first.getQueryDistance(), 1e-3);
+            assertEquals(closest.getSnappedPoint().lat, all.getSnappedLat(0), 1e-6);
+            assertEquals(closest.getSnappedPoint().lon, all.getSnappedLon(0), 1e-6);
+            assertEquals(closest.getSnappedPoint(), first.getSnappedPoint());
+
+            index.findKNearest(lat, lon, 3, 1e6, EdgeFilter.ALL_EDGES, candidates);
+            assertEquals(3, candidates.getSize());
+            for (int j = 0; j < 3; j++)
+            {
+                assertEquals(all.getDistance(j), candidates.getDistance(j), 1e-6);
+            }
+
+            double radius = all.getDistance(3);
+            index.findWithinRadius(lat, lon, radius, EdgeFilter.ALL_EDGES, candidates);
+            assertTrue(candidates.getSize() >= 4);
+            for (int j = 0; j < candidates.getSize(); j++)
+            {
+                assertTrue(candidates.getDistance(j) <= radius);
+                assertEquals(all.getEdge(j), candidates.getEdge(j));
+            }
+        }
+
+        index.findWithinRadius(-0.4, 0.9, 100, EdgeFilter.ALL_EDGES, candidates);
+        // all edges of the tower node 3
+        assertEquals(3, candidates.getSize());
+        assertEquals(3, candidates.getClosestNode(0));
+        assertEquals(QueryResult.Position.TOWER, candidates.getPosition(0));
+        assertEquals(0, candidates.getDistance(2), 0.1);
+    }
+
+    @Test
+    public void testPrepareParallel()
+    {
+        Graph graph = createGHStorage(new RAMDirectory(), encodingManager, false);
+        NodeAccess na = graph.getNodeAccess();
+        Random rand = new Random(12);
+        int nodes = 2000;
+        for (int i = 0; i < nodes; i++)
+        {
+            na.setNode(i, 49 + rand.nextDouble(), 10 + rand.nextDouble());
+        }
+        for (int i = 0; i < 3 * nodes; i++)
+        {
+            int from = rand.nextInt(nodes);
+            int to = rand.nextInt(nodes);
+            if (from != to)
+                graph.edge(from, to, 1, true);
+        }
+
+        LocationIndexTree single = createIndexNoPrepare(graph, 500);
+        single.prepareIndex();
+        LocationIndexTree parallel = createIndexNoPrepare(graph, 500).setPrepareThreads(3);
+        parallel.prepareIndex();
+
+        assertEquals(single.getCapacity(), parallel.getCapacity());
+        for (long pointer = 0; pointer < single.getCapacity(); pointer += 4)
+        {
+            assertEquals(single.dataAccess.getInt(pointer), parallel.dataAccess.getInt(pointer));
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            double lat = 49 + rand.nextDouble(), lon = 10 + rand.nextDouble();
+            assertEquals(single.findID(lat, lon), parallel.findID(lat, lon));
+        }
+    }
 }
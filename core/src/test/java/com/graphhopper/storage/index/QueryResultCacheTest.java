@@ -0,0 +1,82 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphBuilder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryResultCacheTest
+{
+    @Test
+    public void testFindClosest()
+    {
+        EncodingManager em = new EncodingManager("CAR");
+        FlagEncoder encoder = em.getEncoder("CAR");
+        GraphHopperStorage graph = new GraphBuilder(em).create();
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 50, 10);
+        na.setNode(1, 50, 10.01);
+        na.setNode(2, 50.01, 10.01);
+        graph.edge(0, 1, 700, true).setWayGeometry(Helper.createPointList(50.001, 10.005));
+        graph.edge(1, 2, 1100, true);
+        LocationIndexTree index = new LocationIndexTree(graph, new RAMDirectory());
+        index.prepareIndex();
+        QueryResultCache cache = new QueryResultCache(index, graph).setResolution(10).setSize(16);
+        EdgeFilter filter = new DefaultEdgeFilter(encoder);
+
+        QueryResult expected = index.findClosest(49.9995, 10.003, filter);
+        QueryResult res = cache.findClosest(49.9995, 10.003, filter, encoder);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        res = cache.findClosest(49.9995, 10.003, filter, encoder);
+        assertEquals(1, cache.getHits());
+        assertEquals(expected.getClosestNode(), res.getClosestNode());
+        assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+        assertEquals(expected.getClosestEdge().getAdjNode(), res.getClosestEdge().getAdjNode());
+        assertEquals(expected.getWayIndex(), res.getWayIndex());
+        assertEquals(expected.getSnappedPosition(), res.getSnappedPosition());
+        assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+        assertEquals(expected.getQueryDistance(), res.getQueryDistance(), 1e-3);
+
+        // same cell but the snapped point is calculated for the exact query point
+        expected = index.findClosest(49.99951, 10.00301, filter);
+        res = cache.findClosest(49.99951, 10.00301, filter, encoder);
+        assertEquals(2, cache.getHits());
+        assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+        assertEquals(expected.getQueryDistance(), res.getQueryDistance(), 1e-3);
+
+        // other filter
+        cache.findClosest(49.9995, 10.003, EdgeFilter.ALL_EDGES, "all");
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        cache.clear();
+        cache.findClosest(49.9995, 10.003, filter, encoder);
+        assertEquals(3, cache.getMisses());
+    }
+}
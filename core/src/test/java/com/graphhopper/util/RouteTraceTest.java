@@ -0,0 +1,54 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteTraceTest
+{
+    @Test
+    public void testAdd()
+    {
+        RouteTrace trace = new RouteTrace();
+        trace.addNanos(RouteTrace.SNAP, 1500000).addNanos(RouteTrace.SNAP, 500000);
+        assertEquals(2000000, trace.getNanos(RouteTrace.SNAP));
+        assertEquals(0, trace.getNanos(RouteTrace.ALGO));
+
+        long start = System.nanoTime();
+        long end = trace.addSince(RouteTrace.ALGO, start);
+        assertEquals(end - start, trace.getNanos(RouteTrace.ALGO));
+
+        trace.addCount(RouteTrace.VISITED_NODES, 10).addCount(RouteTrace.VISITED_NODES, 5);
+        assertEquals(15, trace.getCount(RouteTrace.VISITED_NODES));
+    }
+
+    @Test
+    public void testToString()
+    {
+        RouteTrace trace = new RouteTrace().setAlgorithm("dijkstrabi").setWeighting("fastest");
+        trace.addNanos(RouteTrace.SNAP, 2000000);
+        trace.addCount(RouteTrace.PATH_EDGES, 7);
+        String str = trace.toString();
+        assertTrue(str, str.startsWith("dijkstrabi, fastest, snap:0.002s, query_graph:0.0s"));
+        assertTrue(str, str.contains(", path_edges:7"));
+        assertEquals("instructions", RouteTrace.getPhaseName(RouteTrace.INSTRUCTIONS));
+        assertEquals("visited_nodes", RouteTrace.getCounterName(RouteTrace.VISITED_NODES));
+    }
+}
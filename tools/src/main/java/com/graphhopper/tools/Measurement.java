@@ -27,6 +27,7 @@ import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexRTree;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
@@ -129,7 +130,15 @@ public class Measurement
             maxNode = g.getNodes();
             GHBitSet allowedEdges = printGraphDetails(g, vehicleStr);
             printMiscUnitPerfTests(false, g, encoder, count * 100, allowedEdges);
-            printLocationIndexQuery(g, hopper.getLocationIndex(), count);
+            printLocationIndexQuery(g, hopper.getLocationIndex(), count, "location2id");
+
+            // same queries for the R-tree
+            StopWatch indexSW = new StopWatch().start();
+            LocationIndex rtree = new LocationIndexRTree(g, new RAMDirectory()).prepareIndex();
+            put("location2id_rtree.prepareTime", indexSW.stop().getTime());
+            put("location2id_rtree.sizeInMB", rtree.getCapacity() / Helper.MB);
+            printLocationIndexQuery(g, rtree, count, "location2id_rtree");
+            rtree.close();
 
             // Route via dijkstrabi. Normal routing takes a lot of time => smaller query number than CH
             // => values are not really comparable to routingCH as e.g. the mean distance etc is different            
@@ -197,7 +206,7 @@ public class Measurement
         return allowedEdges;
     }
 
-    private void printLocationIndexQuery( Graph g, final LocationIndex idx, int count )
+    private void printLocationIndexQuery( Graph g, final LocationIndex idx, int count, String prefix )
     {
         count *= 2;
         final BBox bbox = g.getBounds();
@@ -219,7 +228,7 @@ public class Measurement
             }
         }.setIterations(count).start();
 
-        print("location2id", miniPerf);
+        print(prefix, miniPerf);
     }
 
     private void printMiscUnitPerfTests( boolean isCH, final Graph graph, final FlagEncoder encoder,
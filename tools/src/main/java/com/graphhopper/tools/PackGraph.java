@@ -0,0 +1,48 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.tools;
+
+import com.graphhopper.storage.GraphContainer;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+
+import java.io.File;
+
+/**
+ * Packs a graph folder into a single container file which can be loaded without unpacking, e.g.
+ * graph.location=europe-gh container=europe.ghc
+ */
+public class PackGraph
+{
+    public static void main( String[] strs ) throws Exception
+    {
+        CmdArgs args = CmdArgs.read(strs);
+        String location = args.get("graph.location", "");
+        if (Helper.isEmpty(location))
+            throw new IllegalArgumentException("graph.location has to be specified");
+
+        String defaultContainer = (location.endsWith("-gh") ? location.substring(0, location.length() - 3) : location) + ".ghc";
+        File target = new File(args.get("container", defaultContainer));
+        StopWatch sw = new StopWatch().start();
+        GraphContainer container = GraphContainer.pack(new File(location), target);
+        container.verify();
+        System.out.println("packed " + container + " with " + target.length() / Helper.MB + "MB in "
+                + sw.stop().getSeconds() + "s");
+    }
+}
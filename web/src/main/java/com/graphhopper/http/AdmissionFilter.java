@@ -0,0 +1,353 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of concurrently processed requests to avoid that all requests slow down under
+ * overload until they time out. Requests to expensive endpoints like /route and cheap endpoints
+ * like /nearest or /info have separate budgets. If no slot gets free within the maximum wait time
+ * or too many requests are already waiting the request is rejected with 503 and a Retry-After
+ * header. Optionally the number of concurrent requests per IP is limited too, then 429 is
+ * returned.
+ * <p>
+ * A batch request like /route/batch uses the cheap budget, its servlet acquires the expensive
+ * budget for every route of the batch.
+ */
+public class AdmissionFilter implements Filter
+{
+    static final int SC_TOO_MANY_REQUESTS = 429;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final Budget expensive;
+    private final Budget cheap;
+    private final Map<String, Integer> perIP = new HashMap<String, Integer>();
+    private final AtomicLong rejectedIP = new AtomicLong();
+    private String[] expensivePaths = new String[]
+    {
+        "/route", "/match"
+    };
+    private String[] batchPaths = new String[]
+    {
+        "/route/batch"
+    };
+    private int maxPerIP = 0;
+    private IPFilter exemptIPs;
+    private int retryAfter = 1;
+
+    public AdmissionFilter( Budget expensive, Budget cheap )
+    {
+        this.expensive = expensive;
+        this.cheap = cheap;
+    }
+
+    /**
+     * Comma separated list of path prefixes which use the expensive budget. All other paths use
+     * the cheap budget.
+     */
+    public AdmissionFilter setExpensivePaths( String paths )
+    {
+        this.expensivePaths = splitPaths(paths);
+        return this;
+    }
+
+    private static String[] splitPaths( String paths )
+    {
+        String[] result = paths.split(",");
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = result[i].trim();
+        }
+        return result;
+    }
+
+    /**
+     * Comma separated list of path prefixes whose servlets acquire the expensive budget for every
+     * unit of work. These paths use the cheap budget.
+     */
+    public AdmissionFilter setBatchPaths( String paths )
+    {
+        this.batchPaths = splitPaths(paths);
+        return this;
+    }
+
+    /**
+     * Limits the number of concurrent requests from the same IP. The exempt IPs use the same
+     * patterns as the IPFilter.
+     * <p>
+     * @param maxPerIP 0 disables the limit
+     */
+    public AdmissionFilter setMaxPerIP( int maxPerIP, String exemptIPs )
+    {
+        this.maxPerIP = maxPerIP;
+        this.exemptIPs = exemptIPs.trim().isEmpty() ? null : new IPFilter(exemptIPs, "");
+        return this;
+    }
+
+    /**
+     * The number of seconds a rejected client should wait before trying again.
+     */
+    public AdmissionFilter setRetryAfter( int retryAfter )
+    {
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    public Budget getExpensive()
+    {
+        return expensive;
+    }
+
+    public Budget getCheap()
+    {
+        return cheap;
+    }
+
+    public long getRejectedIP()
+    {
+        return rejectedIP.get();
+    }
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain ) throws IOException, ServletException
+    {
+        HttpServletRequest httpReq = (HttpServletRequest) request;
+        HttpServletResponse httpRes = (HttpServletResponse) response;
+        String ip = request.getRemoteAddr();
+        if (!acquireIP(ip))
+        {
+            rejectedIP.incrementAndGet();
+            logger.warn("Too many concurrent requests from IP " + ip);
+            reject(httpRes, SC_TOO_MANY_REQUESTS, "Too many concurrent requests from your IP");
+            return;
+        }
+
+        try
+        {
+            Budget budget = isExpensive(getPath(httpReq)) ? expensive : cheap;
+            boolean acquired;
+            try
+            {
+                acquired = budget.acquire();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+
+            if (!acquired)
+            {
+                reject(httpRes, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server is overloaded, try again later");
+                return;
+            }
+
+            try
+            {
+                chain.doFilter(request, response);
+            } finally
+            {
+                budget.release();
+            }
+        } finally
+        {
+            releaseIP(ip);
+        }
+    }
+
+    private void reject( HttpServletResponse res, int code, String message ) throws IOException
+    {
+        // no sendError as the GHErrorHandler would turn it into an internal server error
+        JSONObject json = new JSONObject();
+        json.put("message", message);
+        res.setStatus(code);
+        res.setHeader("Retry-After", "" + retryAfter);
+        res.setContentType("application/json");
+        res.setCharacterEncoding("UTF-8");
+        res.getWriter().append(json.toString(2));
+    }
+
+    private static String getPath( HttpServletRequest req )
+    {
+        String uri = req.getRequestURI();
+        String contextPath = req.getContextPath();
+        if (contextPath != null && uri.startsWith(contextPath))
+            return uri.substring(contextPath.length());
+
+        return uri;
+    }
+
+    boolean isExpensive( String path )
+    {
+        if (startsWith(path, batchPaths))
+            return false;
+
+        return startsWith(path, expensivePaths);
+    }
+
+    private static boolean startsWith( String path, String[] prefixes )
+    {
+        for (String prefix : prefixes)
+        {
+            if (!prefix.isEmpty() && path.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return false if the IP has already the maximum number of concurrent requests
+     */
+    boolean acquireIP( String ip )
+    {
+        if (maxPerIP <= 0 || exemptIPs != null && exemptIPs.accept(ip))
+            return true;
+
+        synchronized (perIP)
+        {
+            Integer count = perIP.get(ip);
+            int newCount = count == null ? 1 : count + 1;
+            if (newCount > maxPerIP)
+                return false;
+
+            perIP.put(ip, newCount);
+            return true;
+        }
+    }
+
+    void releaseIP( String ip )
+    {
+        if (maxPerIP <= 0 || exemptIPs != null && exemptIPs.accept(ip))
+            return;
+
+        synchronized (perIP)
+        {
+            Integer count = perIP.get(ip);
+            if (count == null)
+                return;
+
+            if (count <= 1)
+                perIP.remove(ip);
+            else
+                perIP.put(ip, count - 1);
+        }
+    }
+
+    @Override
+    public void init( FilterConfig filterConfig ) throws ServletException
+    {
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+
+    /**
+     * A fixed number of slots for concurrent requests plus a bounded number of waiting requests.
+     */
+    public static class Budget
+    {
+        private final Semaphore slots;
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final long maxWait;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        /**
+         * @param maxWait the maximum time in milliseconds a request waits for a free slot
+         */
+        public Budget( int maxConcurrent, int maxQueued, long maxWait )
+        {
+            if (maxConcurrent <= 0)
+                throw new IllegalArgumentException("maxConcurrent has to be positive but was " + maxConcurrent);
+
+            this.slots = new Semaphore(maxConcurrent, true);
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.maxWait = maxWait;
+        }
+
+        /**
+         * @return true if a slot was acquired, which then has to be released
+         */
+        public boolean acquire() throws InterruptedException
+        {
+            // unlike tryAcquire() this honors the fairness, so a freed slot goes to the queued requests first
+            if (slots.tryAcquire(0, TimeUnit.MILLISECONDS))
+                return true;
+
+            if (queued.incrementAndGet() > maxQueued)
+            {
+                queued.decrementAndGet();
+                rejected.incrementAndGet();
+                return false;
+            }
+
+            try
+            {
+                if (slots.tryAcquire(maxWait, TimeUnit.MILLISECONDS))
+                    return true;
+
+                rejected.incrementAndGet();
+                return false;
+            } finally
+            {
+                queued.decrementAndGet();
+            }
+        }
+
+        public void release()
+        {
+            slots.release();
+        }
+
+        public int getMaxConcurrent()
+        {
+            return maxConcurrent;
+        }
+
+        public int getActive()
+        {
+            return maxConcurrent - slots.availablePermits();
+        }
+
+        public int getQueued()
+        {
+            return queued.get();
+        }
+
+        public long getRejected()
+        {
+            return rejected.get();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary alternative to the JSON responses of /route and /nearest, selected via
+ * type=binary or the Accept header. Every message starts with the magic bytes "GH", the format
+ * version, the message type and the length of the following payload in bytes. Numbers are written
+ * as variable length integers, coordinates with 6 digits precision and delta encoded.
+ */
+public class BinaryFormat
+{
+    public static final String CONTENT_TYPE = "application/x-graphhopper-binary";
+    public static final int VERSION = 1;
+    public static final int TYPE_ERROR = 0;
+    public static final int TYPE_ROUTE = 1;
+    public static final int TYPE_NEAREST = 2;
+    public static final int FLAG_POINTS = 1;
+    public static final int FLAG_INSTRUCTIONS = 2;
+    public static final int FLAG_ELEVATION = 4;
+    private static final int MAGIC = 'G' << 8 | 'H';
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ThreadLocal<Output> OUTPUTS = new ThreadLocal<Output>()
+    {
+        @Override
+        protected Output initialValue()
+        {
+            return new Output();
+        }
+    };
+
+    /**
+     * @return true if the client requested the binary format
+     */
+    public static boolean isRequested( String type, String accept )
+    {
+        return "binary".equals(type) || accept != null && accept.contains(CONTENT_TYPE);
+    }
+
+    /**
+     * @return the empty payload buffer of the current thread
+     */
+    static Output getOutput()
+    {
+        return OUTPUTS.get().reset();
+    }
+
+    /**
+     * Reads the header and returns the type of the message. The payload can then be read from the
+     * returned stream.
+     */
+    public static int readHeader( DataInputStream in ) throws IOException
+    {
+        int magic = in.readUnsignedShort();
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a GraphHopper binary response, magic was " + Integer.toHexString(magic));
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IllegalStateException("Unsupported binary format version " + version + ", expected " + VERSION);
+
+        int type = in.readUnsignedByte();
+        // the length is only necessary to skip or buffer a message
+        in.readInt();
+        return type;
+    }
+
+    /**
+     * Reads the errors of a message of TYPE_ERROR as pairs of exception class and message.
+     */
+    public static List<String[]> readErrors( DataInputStream in ) throws IOException
+    {
+        int count = (int) readVarLong(in);
+        List<String[]> errors = new ArrayList<String[]>(count);
+        for (int i = 0; i < count; i++)
+        {
+            errors.add(new String[]
+            {
+                readString(in), readString(in)
+            });
+        }
+        return errors;
+    }
+
+    /**
+     * Reads the points of a message of TYPE_NEAREST. Points which could not be snapped are null.
+     */
+    public static List<GHPoint3D> readNearest( DataInputStream in ) throws IOException
+    {
+        int flags = in.readUnsignedByte();
+        boolean elevation = (flags & FLAG_ELEVATION) != 0;
+        int count = (int) readVarLong(in);
+        List<GHPoint3D> points = new ArrayList<GHPoint3D>(count);
+        PointList tmp = new PointList(1, elevation);
+        int[] prev = new int[3];
+        for (int i = 0; i < count; i++)
+        {
+            if (in.readUnsignedByte() == 0)
+            {
+                points.add(null);
+                continue;
+            }
+            tmp.clear();
+            readPoint(in, tmp, elevation, prev);
+            points.add(tmp.toGHPoint(0));
+        }
+        return points;
+    }
+
+    /**
+     * Reads the specified number of delta encoded points.
+     */
+    static PointList readPoints( DataInputStream in, int count, boolean elevation ) throws IOException
+    {
+        PointList points = new PointList(count, elevation);
+        int[] prev = new int[3];
+        for (int i = 0; i < count; i++)
+        {
+            readPoint(in, points, elevation, prev);
+        }
+        return points;
+    }
+
+    private static void readPoint( DataInputStream in, PointList points, boolean elevation, int[] prev ) throws IOException
+    {
+        prev[0] += readZigZag(in);
+        prev[1] += readZigZag(in);
+        if (elevation)
+        {
+            prev[2] += readZigZag(in);
+            points.add(prev[0] / 1e6, prev[1] / 1e6, prev[2] / 100d);
+        } else
+        {
+            points.add(prev[0] / 1e6, prev[1] / 1e6);
+        }
+    }
+
+    public static long readVarLong( InputStream in ) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.read();
+            if (b < 0)
+                throw new EOFException();
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalStateException("Malformed variable length integer");
+    }
+
+    public static long readZigZag( InputStream in ) throws IOException
+    {
+        long value = readVarLong(in);
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    public static String readString( DataInputStream in ) throws IOException
+    {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * A growable buffer for the payload which is reused per thread as the length has to be known
+     * before the payload is written.
+     */
+    static class Output
+    {
+        private static final int INITIAL_SIZE = 4096;
+        private byte[] bytes = new byte[INITIAL_SIZE];
+        private int size;
+        private final int[] prev = new int[3];
+
+        Output reset()
+        {
+            // do not keep the buffer of a huge response forever
+            if (bytes.length > 1 << 20)
+                bytes = new byte[INITIAL_SIZE];
+            size = 0;
+            return this;
+        }
+
+        private void ensureCapacity( int additional )
+        {
+            if (size + additional > bytes.length)
+            {
+                byte[] tmp = new byte[Math.max(bytes.length * 2, size + additional)];
+                System.arraycopy(bytes, 0, tmp, 0, size);
+                bytes = tmp;
+            }
+        }
+
+        Output writeByte( int b )
+        {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+            return this;
+        }
+
+        Output writeDouble( double value )
+        {
+            long bits = Double.doubleToLongBits(value);
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8)
+            {
+                bytes[size++] = (byte) (bits >>> shift);
+            }
+            return this;
+        }
+
+        Output writeVarLong( long value )
+        {
+            if (value < 0)
+                throw new IllegalArgumentException("Negative values have to be zigzag encoded: " + value);
+
+            ensureCapacity(10);
+            while (value >= 0x80)
+            {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        Output writeZigZag( long value )
+        {
+            return writeVarLong(value << 1 ^ value >> 63);
+        }
+
+        Output writeString( String str )
+        {
+            byte[] tmp = (str == null ? "" : str).getBytes(UTF_8);
+            writeVarLong(tmp.length);
+            ensureCapacity(tmp.length);
+            System.arraycopy(tmp, 0, bytes, size, tmp.length);
+            size += tmp.length;
+            return this;
+        }
+
+        /**
+         * Starts a new sequence of delta encoded points.
+         */
+        Output resetPoints()
+        {
+            prev[0] = prev[1] = prev[2] = 0;
+            return this;
+        }
+
+        Output writePoint( double lat, double lon, double ele, boolean elevation )
+        {
+            int tmp = (int) Math.round(lat * 1e6);
+            writeZigZag(tmp - prev[0]);
+            prev[0] = tmp;
+            tmp = (int) Math.round(lon * 1e6);
+            writeZigZag(tmp - prev[1]);
+            prev[1] = tmp;
+            if (elevation)
+            {
+                tmp = (int) Math.round(ele * 100);
+                writeZigZag(tmp - prev[2]);
+                prev[2] = tmp;
+            }
+            return this;
+        }
+
+        Output writePoints( PointList points, boolean elevation )
+        {
+            resetPoints();
+            for (int i = 0; i < points.getSize(); i++)
+            {
+                writePoint(points.getLatitude(i), points.getLongitude(i),
+                        elevation ? points.getElevation(i) : 0, elevation);
+            }
+            return this;
+        }
+
+        /**
+         * Writes the header and the payload into the specified stream.
+         */
+        void writeTo( OutputStream out, int type ) throws IOException
+        {
+            byte[] header = new byte[]
+            {
+                (byte) (MAGIC >>> 8), (byte) MAGIC, (byte) VERSION, (byte) type,
+                (byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size
+            };
+            out.write(header);
+            out.write(bytes, 0, size);
+            out.flush();
+        }
+    }
+}
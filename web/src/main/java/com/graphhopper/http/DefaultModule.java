@@ -18,6 +18,7 @@
 package com.graphhopper.http;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.name.Names;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.util.CmdArgs;
@@ -33,6 +34,7 @@ public class DefaultModule extends AbstractModule
     private final Logger logger = LoggerFactory.getLogger(getClass());
     protected final CmdArgs args;
     private GraphHopper graphHopper;
+    private GraphHopperSwitch graphHopperSwitch;
 
     public DefaultModule( CmdArgs args )
     {
@@ -41,10 +43,19 @@ public class DefaultModule extends AbstractModule
 
     public GraphHopper getGraphHopper()
     {
-        if (graphHopper == null)
+        if (graphHopperSwitch == null)
             throw new IllegalStateException("createGraphHopper not called");
 
-        return graphHopper;
+        return graphHopperSwitch.get();
+    }
+
+    /**
+     * @return a configured GraphHopper instance which is not yet loaded. Override this to
+     * customize the instance, it is used for the initial graph and for every reload.
+     */
+    protected GraphHopper createGraphHopperInstance( CmdArgs args )
+    {
+        return new GraphHopper().forServer().init(args);
     }
 
     /**
@@ -52,7 +63,7 @@ public class DefaultModule extends AbstractModule
      */
     protected GraphHopper createGraphHopper( CmdArgs args )
     {
-        GraphHopper tmp = new GraphHopper().forServer().init(args);
+        GraphHopper tmp = createGraphHopperInstance(args);
         tmp.importOrLoad();
         logger.info("loaded graph at:" + tmp.getGraphHopperLocation()
                 + ", source:" + tmp.getOSMFile()
@@ -61,13 +72,41 @@ public class DefaultModule extends AbstractModule
         return tmp;
     }
 
+    /**
+     * @return the holder of the GraphHopper instance which makes reloading a graph possible
+     */
+    protected GraphHopperSwitch createGraphHopperSwitch( GraphHopper hopper, CmdArgs args )
+    {
+        return new GraphHopperSwitch(hopper, args).
+                setFactory(new GraphHopperSwitch.Factory()
+                {
+                    @Override
+                    public GraphHopper create( CmdArgs args )
+                    {
+                        return createGraphHopperInstance(args);
+                    }
+                }).
+                setDrainTimeout(args.getLong("web.reload.drainTimeout", 60000)).
+                setWarmUpQueries(args.getInt("web.reload.warmUpQueries", 100));
+    }
+
     @Override
     protected void configure()
     {
         try
         {
             graphHopper = createGraphHopper(args);
-            bind(GraphHopper.class).toInstance(graphHopper);
+            graphHopperSwitch = createGraphHopperSwitch(graphHopper, args);
+            bind(GraphHopperSwitch.class).toInstance(graphHopperSwitch);
+            // the instance changes after a reload
+            bind(GraphHopper.class).toProvider(new Provider<GraphHopper>()
+            {
+                @Override
+                public GraphHopper get()
+                {
+                    return graphHopperSwitch.get();
+                }
+            });
             bind(TranslationMap.class).toInstance(graphHopper.getTranslationMap());
 
             long timeout = args.getLong("web.timeout", 3000);
@@ -77,6 +116,41 @@ public class DefaultModule extends AbstractModule
                 logger.info("jsonp disabled");
 
             bind(Boolean.class).annotatedWith(Names.named("jsonpAllowed")).toInstance(jsonpAllowed);
+            long maxPostSize = args.getLong("web.maxPostSize", 10L * 1024 * 1024);
+            bind(Long.class).annotatedWith(Names.named("maxPostSize")).toInstance(maxPostSize);
+
+            boolean infoMemory = args.getBool("web.info.memory", false);
+            bind(Boolean.class).annotatedWith(Names.named("infoMemory")).toInstance(infoMemory);
+
+            int nearestBatchThreads = args.getInt("web.nearest.batchThreads", 1);
+            bind(Integer.class).annotatedWith(Names.named("nearestBatchThreads")).toInstance(nearestBatchThreads);
+
+            int matchWindowSize = args.getInt("web.match.windowSize", 100);
+            bind(Integer.class).annotatedWith(Names.named("matchWindowSize")).toInstance(matchWindowSize);
+            int matchMaxVisitedNodes = args.getInt("web.match.maxVisitedNodes", 5000);
+            bind(Integer.class).annotatedWith(Names.named("matchMaxVisitedNodes")).toInstance(matchMaxVisitedNodes);
+
+            // 0 means the limits of the GraphHopper instance are used
+            int routeMaxVisitedNodes = args.getInt("web.route.maxVisitedNodes", 0);
+            bind(Integer.class).annotatedWith(Names.named("routeMaxVisitedNodes")).toInstance(routeMaxVisitedNodes);
+            long routeTimeout = args.getLong("web.route.timeout", 0);
+            bind(Long.class).annotatedWith(Names.named("routeTimeout")).toInstance(routeTimeout);
+            int routeBatchThreads = args.getInt("web.route.batchThreads", Runtime.getRuntime().availableProcessors());
+            bind(Integer.class).annotatedWith(Names.named("routeBatchThreads")).toInstance(routeBatchThreads);
+            int routeBatchMaxRequests = args.getInt("web.route.batchMaxRequests", 1000);
+            bind(Integer.class).annotatedWith(Names.named("routeBatchMaxRequests")).toInstance(routeBatchMaxRequests);
+
+            long routeCacheBytes = args.getLong("web.routeCache.maxBytes", 0);
+            bind(RouteCache.class).toInstance(new RouteCache(graphHopperSwitch, routeCacheBytes,
+                    args.getInt("web.routeCache.precision", 5)));
+
+            MetricsRegistry metricsRegistry = new MetricsRegistry();
+            bind(MetricsRegistry.class).toInstance(metricsRegistry);
+            RouteMetrics routeMetrics = new RouteMetrics(metricsRegistry);
+            bind(RouteMetrics.class).toInstance(routeMetrics);
+
+            bind(RequestCoalescer.class).toInstance(new RequestCoalescer(args.getBool("web.coalesceRequests", true)).
+                    setRouteMetrics(routeMetrics));
 
             bind(RouteSerializer.class).toInstance(new SimpleRouteSerializer(graphHopper.getGraphHopperStorage().getBounds()));
         } catch (Exception ex)
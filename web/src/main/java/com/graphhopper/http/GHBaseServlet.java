@@ -27,13 +27,20 @@ import javax.inject.Named;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
 
 /**
  * @author Peter Karich
@@ -44,6 +51,9 @@ public class GHBaseServlet extends HttpServlet
     @Inject
     @Named("jsonpAllowed")
     private boolean jsonpAllowed;
+    @Inject
+    @Named("maxPostSize")
+    private long maxPostSize;
 
     protected void writeJson( HttpServletRequest req, HttpServletResponse res, JSONObject json ) throws JSONException, IOException
     {
@@ -81,6 +91,48 @@ public class GHBaseServlet extends HttpServlet
         }
     }
 
+    /**
+     * Returns the body of a POST request limited to web.maxPostSize, so that a large body is
+     * rejected while reading and not after it is completely in memory.
+     * <p>
+     * @throws RequestTooLargeException if the body exceeds the limit, either already according
+     * to the Content-Length or while reading
+     */
+    protected Reader createBodyReader( HttpServletRequest req ) throws IOException
+    {
+        if (req.getContentLength() > maxPostSize)
+            throw new RequestTooLargeException(maxPostSize);
+
+        return new LimitedReader(req.getReader(), maxPostSize);
+    }
+
+    /**
+     * Creates a fixed pool of daemon threads shared by all requests of a servlet.
+     */
+    protected static ExecutorService createThreadPool( final String name, int threads )
+    {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Rejects a request whose body was not read completely, so the connection cannot be reused.
+     */
+    protected void writeTooLargeError( HttpServletResponse res, RequestTooLargeException ex )
+    {
+        res.setHeader("Connection", "close");
+        writeError(res, SC_REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+    }
+
     protected void writeError( HttpServletResponse res, int code, String message )
     {
         JSONObject json = new JSONObject();
@@ -182,4 +234,67 @@ public class GHBaseServlet extends HttpServlet
             logger.error("Cannot write message:" + str, ex);
         }
     }
+
+    /**
+     * Thrown if a posted body exceeds web.maxPostSize.
+     */
+    public static class RequestTooLargeException extends IllegalArgumentException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public RequestTooLargeException( long maxPostSize )
+        {
+            super("Request body too large, maximum is " + maxPostSize + " bytes");
+        }
+    }
+
+    /**
+     * Counts the read characters, which are at most the bytes of the body.
+     */
+    static class LimitedReader extends FilterReader
+    {
+        private final long maxPostSize;
+        private long remaining;
+
+        LimitedReader( Reader in, long maxPostSize )
+        {
+            super(in);
+            this.maxPostSize = maxPostSize;
+            this.remaining = maxPostSize;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int c = super.read();
+            if (c >= 0 && --remaining < 0)
+                throw new RequestTooLargeException(maxPostSize);
+
+            return c;
+        }
+
+        @Override
+        public int read( char[] buffer, int offset, int length ) throws IOException
+        {
+            int count = super.read(buffer, offset, length);
+            if (count > 0)
+            {
+                remaining -= count;
+                if (remaining < 0)
+                    throw new RequestTooLargeException(maxPostSize);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException
+        {
+            long count = super.skip(n);
+            remaining -= count;
+            if (remaining < 0)
+                throw new RequestTooLargeException(maxPostSize);
+
+            return count;
+        }
+    }
 }
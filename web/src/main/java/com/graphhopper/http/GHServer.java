@@ -37,6 +37,7 @@ import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,15 +68,26 @@ public class GHServer
 
     public void start( Injector injector ) throws Exception
     {
+        // include the settings of the config file like the DefaultModule does
+        CmdArgs config = CmdArgs.readFromConfigAndMerge(args, "config", "graphhopper.config");
         ResourceHandler resHandler = new ResourceHandler();
         resHandler.setDirectoriesListed(false);
         resHandler.setWelcomeFiles(new String[]
         {
             "index.html"
         });
-        resHandler.setResourceBase(args.get("jetty.resourcebase", "./src/main/webapp"));
+        resHandler.setResourceBase(config.get("jetty.resourcebase", "./src/main/webapp"));
 
         server = new Server();
+        // bound the worker threads and the jobs waiting for them, otherwise every request slows down under overload
+        int maxThreads = config.getInt("jetty.maxThreads", 0);
+        if (maxThreads > 0)
+        {
+            QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads);
+            threadPool.setMaxQueued(config.getInt("jetty.maxQueued", -1));
+            server.setThreadPool(threadPool);
+        }
+
         // getSessionHandler and getSecurityHandler should always return null
         ServletContextHandler servHandler = new ServletContextHandler(ServletContextHandler.NO_SECURITY | ServletContextHandler.NO_SESSIONS);
         servHandler.setErrorHandler(new GHErrorHandler());
@@ -87,14 +99,29 @@ public class GHServer
         servHandler.addFilter(guiceFilter, "/*", EnumSet.allOf(DispatcherType.class));
 
         SelectChannelConnector connector0 = new SelectChannelConnector();
-        int httpPort = args.getInt("jetty.port", 8989);
-        String host = args.get("jetty.host", "");
+        int httpPort = config.getInt("jetty.port", 8989);
+        String host = config.get("jetty.host", "");
         connector0.setPort(httpPort);
         if (!host.isEmpty())
             connector0.setHost(host);
 
+        int acceptQueueSize = config.getInt("jetty.acceptQueueSize", 0);
+        if (acceptQueueSize > 0)
+            connector0.setAcceptQueueSize(acceptQueueSize);
+
         server.addConnector(connector0);
 
+        long warmUpTime = config.getLong("web.warmUp.time", 0);
+        if (warmUpTime > 0)
+        {
+            // before the connector is opened to avoid slow requests
+            new WarmUp(injector.getInstance(GraphHopperSwitch.class).get()).
+                    setQueryLog(config.get("web.warmUp.queryLog", "")).
+                    setMaxQueries(config.getInt("web.warmUp.maxQueries", 10000)).
+                    setMaxTime(warmUpTime).
+                    run();
+        }
+
         HandlerList handlers = new HandlerList();
         handlers.setHandlers(new Handler[]
         {
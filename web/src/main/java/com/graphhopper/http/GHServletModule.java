@@ -34,7 +34,8 @@ public class GHServletModule extends ServletModule
 
     public GHServletModule( CmdArgs args )
     {
-        this.args = args;
+        // the servlets and filters are configured from the config file like the DefaultModule
+        this.args = CmdArgs.readFromConfigAndMerge(args, "config", "graphhopper.config");
         params.put("mimeTypes", "text/html,"
                 + "text/plain,"
                 + "text/xml,"
@@ -57,16 +58,71 @@ public class GHServletModule extends ServletModule
         filter("*").through(IPFilter.class);
         bind(IPFilter.class).toInstance(new IPFilter(args.get("jetty.whiteips", ""), args.get("jetty.blackips", "")));
 
+        if (args.getBool("web.admission.enabled", false))
+        {
+            filter("*").through(AdmissionFilter.class);
+            bind(AdmissionFilter.class).toInstance(createAdmissionFilter());
+        }
+
         serve("/i18n*").with(I18NServlet.class);
         bind(I18NServlet.class).in(Singleton.class);
 
         serve("/info*").with(InfoServlet.class);
         bind(InfoServlet.class).in(Singleton.class);
 
+        serve("/metrics*").with(MetricsServlet.class);
+        bind(MetricsServlet.class).in(Singleton.class);
+
+        // before /route* as the first matching servlet is used
+        serve("/route/batch*").with(RouteBatchServlet.class);
+        bind(RouteBatchServlet.class).in(Singleton.class);
+
         serve("/route*").with(GraphHopperServlet.class);
         bind(GraphHopperServlet.class).in(Singleton.class);
 
         serve("/nearest*").with(NearestServlet.class);
         bind(NearestServlet.class).in(Singleton.class);
+
+        serve("/reverse*").with(ReverseGeocodingServlet.class);
+        bind(ReverseGeocodingServlet.class).in(Singleton.class);
+
+        serve("/match*").with(MatchServlet.class);
+        bind(MatchServlet.class).in(Singleton.class);
+
+        if (args.getBool("web.reloadAllowed", false))
+        {
+            serve("/reload*").with(ReloadServlet.class);
+            bind(ReloadServlet.class).in(Singleton.class);
+        }
+
+        if (args.getBool("index.streetNames", false))
+        {
+            serve("/geocode*").with(GeocodingServlet.class);
+            bind(GeocodingServlet.class).in(Singleton.class);
+        }
+
+        if (args.getBool("routing.speedOverlay", false))
+        {
+            serve("/traffic*").with(TrafficServlet.class);
+            bind(TrafficServlet.class).in(Singleton.class);
+        }
+    }
+
+    protected AdmissionFilter createAdmissionFilter()
+    {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        AdmissionFilter.Budget expensive = new AdmissionFilter.Budget(
+                args.getInt("web.admission.expensive.maxConcurrent", cpus),
+                args.getInt("web.admission.expensive.maxQueued", 4 * cpus),
+                args.getLong("web.admission.expensive.maxWait", 1000));
+        AdmissionFilter.Budget cheap = new AdmissionFilter.Budget(
+                args.getInt("web.admission.cheap.maxConcurrent", 4 * cpus),
+                args.getInt("web.admission.cheap.maxQueued", 16 * cpus),
+                args.getLong("web.admission.cheap.maxWait", 500));
+        return new AdmissionFilter(expensive, cheap).
+                setExpensivePaths(args.get("web.admission.expensivePaths", "/route,/match")).
+                setBatchPaths(args.get("web.admission.batchPaths", "/route/batch")).
+                setMaxPerIP(args.getInt("web.admission.maxPerIP", 0), args.get("web.admission.exemptIPs", "")).
+                setRetryAfter(args.getInt("web.admission.retryAfter", 1));
     }
 }
@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.search.StreetNameIndex;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPlace;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Finds streets by name via the embedded street name index, e.g. /geocode?q=main%20str&limit=5.
+ * Only available if index.streetNames=true.
+ */
+public class GeocodingServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        String query = getParam(req, "q", "");
+        if (Helper.isEmpty(query))
+        {
+            writeError(res, SC_BAD_REQUEST, "No query q specified");
+            return;
+        }
+
+        int limit = (int) Math.min(100, getLongParam(req, "limit", 5));
+        boolean fuzzy = getBooleanParam(req, "fuzzy", true);
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            StopWatch sw = new StopWatch().start();
+            StreetNameIndex index = hopper.getStreetNameIndex();
+            List<StreetNameIndex.Match> matches = index.search(query, limit, fuzzy);
+            JSONArray hits = new JSONArray();
+            for (StreetNameIndex.Match match : matches)
+            {
+                GHPlace place = index.getPlace(match);
+                JSONObject hit = new JSONObject();
+                hit.put("name", match.getName());
+                hit.put("lat", place.lat);
+                hit.put("lng", place.lon);
+                hit.put("exact", match.isExact());
+                hit.put("typos", match.getDistance());
+                hit.put("edges", index.getEdges(match).length);
+                hits.put(hit);
+            }
+
+            JSONObject json = new JSONObject();
+            json.put("hits", hits);
+            json.put("took", sw.stop().getSeconds());
+            writeJson(req, res, json);
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -44,6 +45,7 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 /**
  * Servlet to use GraphHopper in a remote client application like mobile or browser. Note: If type
@@ -56,12 +58,36 @@ import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 public class GraphHopperServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperSwitch hopperSwitch;
     @Inject
     private RouteSerializer routeSerializer;
+    @Inject
+    private RouteCache routeCache;
+    @Inject
+    private RequestCoalescer coalescer;
+    @Inject
+    private RouteMetrics routeMetrics;
+    @Inject
+    @Named("routeMaxVisitedNodes")
+    private int maxVisitedNodes;
+    @Inject
+    @Named("routeTimeout")
+    private long timeout;
 
     @Override
     public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            doGet(hopper, httpReq, httpRes);
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+    }
+
+    protected void doGet( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
     {
         List<GHPoint> requestPoints = getPoints(httpReq, "point");
         GHResponse ghRsp = new GHResponse();
@@ -133,7 +159,31 @@ public class GraphHopperServlet extends GHBaseServlet
                     put("instructions", enableInstructions).
                     put("wayPointMaxDistance", minPathPrecision);
 
-            ghRsp = hopper.route(request);
+            // clients can lower but not raise the limits
+            limitHint(request, "max_visited_nodes", maxVisitedNodes > 0 ? maxVisitedNodes : hopper.getMaxVisitedNodes());
+            limitHint(request, "timeout", timeout > 0 ? timeout : hopper.getRoutingTimeout());
+
+            String cacheKey = null;
+            GHResponse cachedRsp = null;
+            if (routeCache.isEnabled())
+            {
+                cacheKey = routeCache.createKey(request);
+                cachedRsp = routeCache.get(hopper, cacheKey);
+            }
+
+            if (cachedRsp != null)
+            {
+                ghRsp = cachedRsp;
+            } else
+            {
+                if (coalescer.isEnabled())
+                    ghRsp = coalescer.route(hopper, RouteCache.createKey(request, RouteCache.FULL_PRECISION), request);
+                else
+                    ghRsp = routeMetrics.route(hopper, request);
+
+                if (cacheKey != null)
+                    routeCache.put(hopper, cacheKey, ghRsp);
+            }
         }
 
         float took = sw.stop().getSeconds();
@@ -145,10 +195,13 @@ public class GraphHopperServlet extends GHBaseServlet
         if (ghRsp.hasErrors())
             logger.error(logStr + ", errors:" + ghRsp.getErrors());
         else
+            // the trace is only turned into text if requested
             logger.info(logStr + ", distance: " + ghRsp.getDistance()
                     + ", time:" + Math.round(ghRsp.getTime() / 60000f)
-                    + "min, points:" + ghRsp.getPoints().getSize() + ", debug - " + ghRsp.getDebugInfo());
+                    + "min, points:" + ghRsp.getPoints().getSize()
+                    + (getBooleanParam(httpReq, "debug", false) ? ", debug - " + ghRsp.getDebugInfo() : ""));
 
+        StopWatch serializeSW = new StopWatch().start();
         if (writeGPX)
         {
             String xml = createGPXString(httpReq, httpRes, ghRsp);
@@ -160,21 +213,52 @@ public class GraphHopperServlet extends GHBaseServlet
             {
                 writeResponse(httpRes, xml);
             }
+        } else if (BinaryFormat.isRequested(getParam(httpReq, "type", "json"), httpReq.getHeader("Accept")))
+        {
+            httpRes.setContentType(BinaryFormat.CONTENT_TYPE);
+            httpRes.setStatus(ghRsp.hasErrors() ? SC_BAD_REQUEST : SC_OK);
+            routeSerializer.writeBinary(ghRsp, calcPoints, enableElevation, enableInstructions,
+                    httpRes.getOutputStream());
+        } else if (isStreamable(httpReq))
+        {
+            httpRes.setContentType("application/json");
+            httpRes.setCharacterEncoding("UTF-8");
+            httpRes.setStatus(ghRsp.hasErrors() ? SC_BAD_REQUEST : SC_OK);
+            routeSerializer.writeJSON(ghRsp, Math.round(took * 1000), calcPoints, pointsEncoded,
+                    enableElevation, enableInstructions, httpRes.getOutputStream());
         } else
         {
             Map<String, Object> map = routeSerializer.toJSON(ghRsp, calcPoints, pointsEncoded,
                     enableElevation, enableInstructions);
+            // the nested maps are converted to JSONObjects and can be extended without a raw cast
+            JSONObject json = new JSONObject(map);
 
             // deprecated - remove in 0.5
-            Object infoMap = map.get("info");
-            if (infoMap != null)
-                ((Map) infoMap).put("took", Math.round(took * 1000));
+            JSONObject infoJson = json.optJSONObject("info");
+            if (infoJson != null)
+            {
+                infoJson.put("took", Math.round(took * 1000));
+                if (getBooleanParam(httpReq, "debug", false))
+                    infoJson.put("debug", ghRsp.getDebugInfo());
+            }
 
             if (ghRsp.hasErrors())
-                writeJsonError(httpRes, SC_BAD_REQUEST, new JSONObject(map));
+                writeJsonError(httpRes, SC_BAD_REQUEST, json);
             else
-                writeJson(httpReq, httpRes, new JSONObject(map));
+                writeJson(httpReq, httpRes, json);
         }
+        serializeSW.stop();
+        routeMetrics.recordRequest(vehicleStr, ghRsp, serializeSW.getNanos(), sw.getNanos() + serializeSW.getNanos());
+    }
+
+    /**
+     * Plain JSON is written directly into the response, only jsonp and pretty printing need the
+     * JSONObject.
+     */
+    private boolean isStreamable( HttpServletRequest httpReq )
+    {
+        return "json".equals(getParam(httpReq, "type", "json"))
+                && !getBooleanParam(httpReq, "debug", false) && !getBooleanParam(httpReq, "pretty", false);
     }
 
     protected String createGPXString( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
@@ -252,6 +336,21 @@ public class GraphHopperServlet extends GHBaseServlet
         return infoPoints;
     }
 
+    /**
+     * Ensures that the value of the specified hint is positive and not higher than the limit.
+     * <p>
+     * @param limit 0 or negative means unlimited
+     */
+    static void limitHint( GHRequest request, String key, long limit )
+    {
+        if (limit <= 0)
+            return;
+
+        long value = request.getHints().getLong(key, limit);
+        if (value <= 0 || value > limit)
+            request.getHints().put(key, limit);
+    }
+
     protected void initHints( GHRequest request, Map<String, String[]> parameterMap )
     {
         WeightingMap m = request.getHints();
@@ -0,0 +1,336 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the GraphHopper instance used from the servlets and makes it possible to switch to a new
+ * graph folder while serving requests. Every request has to acquire the current instance and
+ * release it afterwards. On a reload the new instance is loaded and warmed up in the background,
+ * then atomically switched and the old instance is closed after all in-flight requests released
+ * it.
+ */
+public class GraphHopperSwitch
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final AtomicReference<Entry> current;
+    private final AtomicReference<Entry> draining = new AtomicReference<Entry>();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+    private final CmdArgs args;
+    private Factory factory = new Factory()
+    {
+        @Override
+        public GraphHopper create( CmdArgs args )
+        {
+            return new GraphHopper().forServer().init(args);
+        }
+    };
+    private long drainTimeout = 60000;
+    private int warmUpQueries = 100;
+
+    public GraphHopperSwitch( GraphHopper hopper, CmdArgs args )
+    {
+        this.current = new AtomicReference<Entry>(new Entry(hopper));
+        this.args = args;
+    }
+
+    /**
+     * Specifies how the instances of a reload are created, so that they are configured like the
+     * initial one.
+     */
+    public GraphHopperSwitch setFactory( Factory factory )
+    {
+        this.factory = factory;
+        return this;
+    }
+
+    /**
+     * Specifies how long (in milliseconds) to wait for in-flight requests of the old instance
+     * before it is closed anyway.
+     */
+    public GraphHopperSwitch setDrainTimeout( long drainTimeout )
+    {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    /**
+     * Number of random routes calculated on the new instance before it is switched.
+     */
+    public GraphHopperSwitch setWarmUpQueries( int warmUpQueries )
+    {
+        this.warmUpQueries = warmUpQueries;
+        return this;
+    }
+
+    /**
+     * @return the current instance without acquiring it. Do not use it for routing as it could be
+     * closed while in use.
+     */
+    public GraphHopper get()
+    {
+        return current.get().hopper;
+    }
+
+    /**
+     * Returns the current instance and guarantees that it is not closed until release is called.
+     */
+    public GraphHopper acquire()
+    {
+        while (true)
+        {
+            Entry entry = current.get();
+            entry.inFlight.incrementAndGet();
+            // a switch could have happened in between, then the old entry is probably draining
+            if (entry == current.get())
+                return entry.hopper;
+
+            entry.release();
+        }
+    }
+
+    public void release( GraphHopper hopper )
+    {
+        Entry entry = current.get();
+        if (entry.hopper == hopper)
+        {
+            entry.release();
+            return;
+        }
+
+        // if not draining anymore the old instance was closed after the drain timeout
+        Entry old = draining.get();
+        if (old != null && old.hopper == hopper)
+            old.release();
+    }
+
+    public boolean isReloading()
+    {
+        return reloading.get();
+    }
+
+    /**
+     * Estimates the additional memory in bytes necessary to hold the new graph next to the current
+     * one, assuming a similar size. For memory mapped graphs this is not heap memory.
+     */
+    public long getRequiredMemory()
+    {
+        GraphHopper hopper = get();
+        return hopper.getGraphHopperStorage().getCapacity() + hopper.getLocationIndex().getCapacity();
+    }
+
+    /**
+     * @return the heap memory in bytes which can still be allocated
+     */
+    public static long getAvailableMemory()
+    {
+        Runtime rt = Runtime.getRuntime();
+        return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+    }
+
+    /**
+     * Loads the graph from the specified folder in a background thread and switches to it.
+     * <p>
+     * @throws IllegalStateException if a reload is already running or not enough memory is
+     * available for an in-memory graph
+     */
+    public Thread reloadInBackground( final String graphLocation )
+    {
+        if (!reloading.compareAndSet(false, true))
+            throw new IllegalStateException("Reload already in progress");
+
+        try
+        {
+            checkMemory();
+        } catch (RuntimeException ex)
+        {
+            reloading.set(false);
+            throw ex;
+        }
+
+        Thread thread = new Thread("graph-reload")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    doReload(graphLocation);
+                } catch (Exception ex)
+                {
+                    logger.error("Cannot reload graph from " + graphLocation, ex);
+                } finally
+                {
+                    reloading.set(false);
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Loads the graph from the specified folder, warms it up and switches to it. Blocks until the
+     * old instance is closed.
+     */
+    public void reload( String graphLocation )
+    {
+        if (!reloading.compareAndSet(false, true))
+            throw new IllegalStateException("Reload already in progress");
+
+        try
+        {
+            checkMemory();
+            doReload(graphLocation);
+        } finally
+        {
+            reloading.set(false);
+        }
+    }
+
+    private void checkMemory()
+    {
+        long required = getRequiredMemory();
+        long available = getAvailableMemory();
+        boolean inMemory = get().getGraphHopperStorage().getDirectory().getDefaultType().isInMemory();
+        logger.info("reload requires ~" + required / Helper.MB + "MB" + (inMemory ? "" : " (memory mapped)")
+                + ", available heap: " + available / Helper.MB + "MB");
+        if (inMemory && required > available)
+            throw new IllegalStateException("Not enough memory to reload graph. Required ~" + required / Helper.MB
+                    + "MB but only " + available / Helper.MB + "MB available");
+    }
+
+    private void doReload( String graphLocation )
+    {
+        StopWatch sw = new StopWatch().start();
+        GraphHopper newHopper = createGraphHopper(graphLocation);
+        float loadTime = sw.stop().getSeconds();
+
+        sw = new StopWatch().start();
+        warmUp(newHopper);
+        float warmUpTime = sw.stop().getSeconds();
+
+        swap(newHopper);
+        logger.info("switched to graph at " + newHopper.getGraphHopperLocation() + ", load:" + loadTime
+                + "s, warm up:" + warmUpTime + "s, " + Helper.getMemInfo());
+    }
+
+    /**
+     * @return a new and fully loaded instance, which is not yet used for serving
+     */
+    protected GraphHopper createGraphHopper( String graphLocation )
+    {
+        CmdArgs tmpArgs = new CmdArgs(args.toMap());
+        tmpArgs.put("graph.location", graphLocation);
+        GraphHopper tmp = factory.create(tmpArgs);
+        if (!tmp.load(graphLocation))
+        {
+            tmp.close();
+            throw new IllegalStateException("Cannot load graph from " + graphLocation);
+        }
+        return tmp;
+    }
+
+    /**
+     * Calculates some random routes within the graph bounds to load the data into memory.
+     */
+    protected void warmUp( GraphHopper hopper )
+    {
+        new WarmUp(hopper).setMaxQueries(warmUpQueries).setWindowSize(Math.max(1, warmUpQueries / 10)).run();
+    }
+
+    /**
+     * Atomically makes the specified instance the current one. Then waits until all requests on
+     * the old instance are finished and closes it.
+     */
+    void swap( GraphHopper newHopper )
+    {
+        Entry old = current.get();
+        draining.set(old);
+        current.set(new Entry(newHopper));
+        old.awaitDrained(drainTimeout);
+        draining.set(null);
+        old.hopper.close();
+        logger.info("closed graph at " + old.hopper.getGraphHopperLocation());
+    }
+
+    private static class Entry
+    {
+        final GraphHopper hopper;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Entry( GraphHopper hopper )
+        {
+            this.hopper = hopper;
+        }
+
+        void release()
+        {
+            if (inFlight.decrementAndGet() == 0)
+            {
+                synchronized (this)
+                {
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void awaitDrained( long timeout )
+        {
+            long end = System.currentTimeMillis() + timeout;
+            while (inFlight.get() > 0)
+            {
+                long wait = end - System.currentTimeMillis();
+                if (wait <= 0)
+                {
+                    LoggerFactory.getLogger(GraphHopperSwitch.class).warn("Closing old graph with "
+                            + inFlight.get() + " requests still in-flight");
+                    return;
+                }
+
+                try
+                {
+                    wait(wait);
+                } catch (InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a configured GraphHopper instance which is not yet loaded.
+     */
+    public interface Factory
+    {
+        GraphHopper create( CmdArgs args );
+    }
+}
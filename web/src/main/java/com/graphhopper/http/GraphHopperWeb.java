@@ -20,9 +20,17 @@ package com.graphhopper.http;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
+import com.graphhopper.routing.RoutingBudgetExceededException;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -44,6 +52,7 @@ public class GraphHopperWeb implements GraphHopperAPI
     private boolean instructions = true;
     private boolean calcPoints = true;
     private boolean elevation = false;
+    private boolean binary = false;
 
     public GraphHopperWeb()
     {
@@ -88,6 +97,15 @@ public class GraphHopperWeb implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Requests the compact BinaryFormat instead of JSON, which is faster to parse.
+     */
+    public GraphHopperWeb setBinary( boolean binary )
+    {
+        this.binary = binary;
+        return this;
+    }
+
     @Override
     public GHResponse route( GHRequest request )
     {
@@ -113,7 +131,7 @@ public class GraphHopperWeb implements GraphHopperAPI
             String url = routeServiceUrl
                     + "?"
                     + places
-                    + "&type=json"
+                    + "&type=" + (binary ? "binary" : "json")
                     + "&instructions=" + tmpInstructions
                     + "&points_encoded=true"
                     + "&calc_points=" + tmpCalcPoints
@@ -127,6 +145,24 @@ public class GraphHopperWeb implements GraphHopperAPI
             if (!tmpKey.isEmpty())
                 url += "&key=" + tmpKey;
 
+            if (binary)
+            {
+                HttpURLConnection conn = downloader.createConnection(url);
+                InputStream is = downloader.fetch(conn, true);
+                try
+                {
+                    String contentType = conn.getContentType();
+                    if (contentType != null && contentType.startsWith(BinaryFormat.CONTENT_TYPE))
+                        return readBinary(is);
+
+                    // e.g. invalid parameters or rejected requests are not answered by the route serializer
+                    return readErrors(conn.getResponseCode(), Helper.isToString(is));
+                } finally
+                {
+                    is.close();
+                }
+            }
+
             String str = downloader.downloadAsString(url, true);
             JSONObject json = new JSONObject(str);
 
@@ -146,6 +182,102 @@ public class GraphHopperWeb implements GraphHopperAPI
         }
     }
 
+    /**
+     * Calculates the specified routes with one call of the batch endpoint. If a route fails only
+     * its response contains the errors.
+     * <p>
+     * @return the responses in the order of the requests
+     */
+    public List<GHResponse> routeBatch( List<GHRequest> requests )
+    {
+        StopWatch sw = new StopWatch().start();
+        try
+        {
+            JSONArray requestsJson = new JSONArray();
+            for (GHRequest request : requests)
+            {
+                requestsJson.put(createBatchEntry(request));
+            }
+
+            String url = routeServiceUrl + "/batch?type=json&points_encoded=true";
+            if (!key.isEmpty())
+                url += "&key=" + key;
+
+            HttpURLConnection conn = downloader.createConnection(url);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+            OutputStream out = conn.getOutputStream();
+            try
+            {
+                out.write(new JSONObject().put("requests", requestsJson).toString().getBytes(Helper.UTF_CS));
+            } finally
+            {
+                out.close();
+            }
+
+            JSONObject json = new JSONObject(Helper.isToString(downloader.fetch(conn, true)));
+            if (!json.has("results"))
+            {
+                List<Throwable> errors = new ArrayList<Throwable>();
+                readErrors(errors, json);
+                throw new IllegalStateException(errors.isEmpty() ? "Invalid batch response" : errors.get(0).getMessage());
+            }
+
+            JSONArray results = json.getJSONArray("results");
+            if (results.length() != requests.size())
+                throw new IllegalStateException("Expected " + requests.size() + " results but got " + results.length());
+
+            List<GHResponse> responses = new ArrayList<GHResponse>(requests.size());
+            for (int i = 0; i < results.length(); i++)
+            {
+                JSONObject entryJson = requestsJson.getJSONObject(i);
+                JSONObject result = results.getJSONObject(i);
+                GHResponse res = new GHResponse();
+                readErrors(res.getErrors(), result);
+                if (!res.hasErrors())
+                    readPath(res, result.getJSONArray("paths").getJSONObject(0), entryJson.getBoolean("calc_points"),
+                            entryJson.getBoolean("instructions"), entryJson.getBoolean("elevation"));
+
+                responses.add(res);
+            }
+            logger.debug("batch of " + requests.size() + " routes took " + sw.stop().getSeconds() + "s");
+            return responses;
+        } catch (Exception ex)
+        {
+            throw new RuntimeException("Problem while fetching batch of " + requests.size() + " paths: " + ex.getMessage(), ex);
+        }
+    }
+
+    private JSONObject createBatchEntry( GHRequest request )
+    {
+        boolean tmpInstructions = request.getHints().getBool("instructions", instructions);
+        boolean tmpCalcPoints = request.getHints().getBool("calcPoints", calcPoints);
+        if (tmpInstructions && !tmpCalcPoints)
+            throw new IllegalStateException("Cannot calculate instructions without points (only points without instructions). "
+                    + "Use calcPoints=false and instructions=false to disable point and instruction calculation");
+
+        JSONArray points = new JSONArray();
+        for (GHPoint p : request.getPoints())
+        {
+            points.put(new JSONArray().put(p.lon).put(p.lat));
+        }
+
+        JSONObject entry = new JSONObject().
+                put("points", points).
+                put("instructions", tmpInstructions).
+                put("calc_points", tmpCalcPoints).
+                put("elevation", request.getHints().getBool("elevation", elevation)).
+                put("locale", request.getLocale().toString());
+        if (!request.getVehicle().isEmpty())
+            entry.put("vehicle", request.getVehicle());
+        if (!request.getAlgorithm().isEmpty())
+            entry.put("algorithm", request.getAlgorithm());
+        if (!request.getWeighting().isEmpty())
+            entry.put("weighting", request.getWeighting());
+        return entry;
+    }
+
     public static void readPath( GHResponse res, JSONObject firstPath,
                                  boolean tmpCalcPoints,
                                  boolean tmpInstructions,
@@ -164,7 +296,7 @@ public class GraphHopperWeb implements GraphHopperAPI
                 JSONArray instrArr = firstPath.getJSONArray("instructions");
 
                 InstructionList il = new InstructionList(null);
-                int viaCount = 1;
+                int viaCount = 0;
                 for (int instrIndex = 0; instrIndex < instrArr.length(); instrIndex++)
                 {
                     JSONObject jsonObj = instrArr.getJSONObject(instrIndex);
@@ -187,27 +319,112 @@ public class GraphHopperWeb implements GraphHopperAPI
                         ia = new InstructionAnnotation(jsonObj.getInt("annotation_importance"), jsonObj.getString("annotation_text"));
                     }
 
-                    Instruction instr;
-                    if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
-                    {
-                        instr = new RoundaboutInstruction(sign, text, ia, instPL);
-                    } else if (sign == Instruction.REACHED_VIA)
-                    {
-                        ViaInstruction tmpInstr = new ViaInstruction(text, ia, instPL);
-                        tmpInstr.setViaCount(viaCount);
+                    if (sign == Instruction.REACHED_VIA)
                         viaCount++;
-                        instr = tmpInstr;
-                    } else if (sign == Instruction.FINISH)
-                    {
-                        instr = new FinishInstruction(instPL, 0);
-                    } else
+
+                    Instruction instr = createInstruction(sign, text, ia, instPL, viaCount);
+                    instr.setDistance(instDist).setTime(instTime);
+                    il.add(instr);
+                }
+                res.setInstructions(il);
+            }
+        }
+        res.setDistance(distance).setTime(time);
+    }
+
+    private static Instruction createInstruction( int sign, String text, InstructionAnnotation ia,
+                                                  PointList instPL, int viaCount )
+    {
+        Instruction instr;
+        if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
+        {
+            instr = new RoundaboutInstruction(sign, text, ia, instPL);
+        } else if (sign == Instruction.REACHED_VIA)
+        {
+            ViaInstruction tmpInstr = new ViaInstruction(text, ia, instPL);
+            tmpInstr.setViaCount(viaCount);
+            instr = tmpInstr;
+        } else if (sign == Instruction.FINISH)
+        {
+            instr = new FinishInstruction(instPL, 0);
+        } else
+        {
+            instr = new Instruction(sign, text, ia, instPL);
+        }
+
+        // The translation is done from the routing service so just use the provided string
+        // instead of creating a combination with sign and name etc
+        instr.setUseRawName();
+        return instr;
+    }
+
+    /**
+     * Reads a response in the BinaryFormat including its errors.
+     */
+    public static GHResponse readBinary( InputStream is ) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        GHResponse res = new GHResponse();
+        int type = BinaryFormat.readHeader(in);
+        if (type == BinaryFormat.TYPE_ERROR)
+        {
+            for (String[] error : BinaryFormat.readErrors(in))
+            {
+                res.addError(createError(error[0], error[1]));
+            }
+        } else if (type == BinaryFormat.TYPE_ROUTE)
+        {
+            readPath(res, in);
+        } else
+        {
+            throw new IllegalStateException("Unexpected binary message type " + type);
+        }
+        return res;
+    }
+
+    /**
+     * Reads the path of a route message in the BinaryFormat after its header.
+     */
+    public static void readPath( GHResponse res, DataInputStream in ) throws IOException
+    {
+        int flags = in.readUnsignedByte();
+        boolean elevation = (flags & BinaryFormat.FLAG_ELEVATION) != 0;
+        double distance = in.readDouble();
+        long time = BinaryFormat.readVarLong(in);
+        if ((flags & BinaryFormat.FLAG_POINTS) != 0)
+        {
+            PointList pointList = BinaryFormat.readPoints(in, (int) BinaryFormat.readVarLong(in), elevation);
+            res.setPoints(pointList);
+
+            if ((flags & BinaryFormat.FLAG_INSTRUCTIONS) != 0)
+            {
+                int count = (int) BinaryFormat.readVarLong(in);
+                InstructionList il = new InstructionList(count, null);
+                int viaCount = 0;
+                for (int instrIndex = 0; instrIndex < count; instrIndex++)
+                {
+                    int sign = (int) BinaryFormat.readZigZag(in);
+                    String text = BinaryFormat.readString(in);
+                    int from = (int) BinaryFormat.readVarLong(in);
+                    int to = from + (int) BinaryFormat.readVarLong(in);
+                    double instDist = in.readDouble();
+                    long instTime = BinaryFormat.readVarLong(in);
+                    InstructionAnnotation ia = InstructionAnnotation.EMPTY;
+                    if (in.readUnsignedByte() != 0)
+                        ia = new InstructionAnnotation((int) BinaryFormat.readZigZag(in), BinaryFormat.readString(in));
+
+                    PointList instPL = new PointList(to - from + 1, elevation);
+                    for (int j = from; j <= to; j++)
                     {
-                        instr = new Instruction(sign, text, ia, instPL);
+                        instPL.add(pointList, j);
                     }
 
-                    // The translation is done from the routing service so just use the provided string
-                    // instead of creating a combination with sign and name etc
-                    instr.setUseRawName();
+                    if (sign == Instruction.REACHED_VIA)
+                        viaCount++;
+
+                    Instruction instr = createInstruction(sign, text, ia, instPL, viaCount);
+                    if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
+                        ((RoundaboutInstruction) instr).setExitNumber((int) BinaryFormat.readVarLong(in));
 
                     instr.setDistance(instDist).setTime(instTime);
                     il.add(instr);
@@ -218,6 +435,20 @@ public class GraphHopperWeb implements GraphHopperAPI
         res.setDistance(distance).setTime(time);
     }
 
+    /**
+     * Reads the errors of a response which is not in the expected format, e.g. JSON or empty.
+     */
+    static GHResponse readErrors( int status, String body )
+    {
+        GHResponse res = new GHResponse();
+        if (body.trim().startsWith("{"))
+            readErrors(res.getErrors(), new JSONObject(body));
+
+        if (!res.hasErrors())
+            res.addError(new RuntimeException("Unexpected response with status " + status));
+        return res;
+    }
+
     public static void readErrors( List<Throwable> errors, JSONObject json )
     {
         JSONArray errorJson;
@@ -253,22 +484,28 @@ public class GraphHopperWeb implements GraphHopperAPI
                 exClass = error.getString("details");
 
             String exMessage = error.getString("message");
-
-            if (exClass.equals(UnsupportedOperationException.class.getName()))
-                errors.add(new UnsupportedOperationException(exMessage));
-            else if (exClass.equals(IllegalStateException.class.getName()))
-                errors.add(new IllegalStateException(exMessage));
-            else if (exClass.equals(RuntimeException.class.getName()))
-                errors.add(new RuntimeException(exMessage));
-            else if (exClass.equals(IllegalArgumentException.class.getName()))
-                errors.add(new IllegalArgumentException(exMessage));
-            else if (exClass.isEmpty())
-                errors.add(new RuntimeException(exMessage));
-            else
-                errors.add(new RuntimeException(exClass + " " + exMessage));
+            errors.add(createError(exClass, exMessage));
         }
 
         if (json.has("message") && errors.isEmpty())
             errors.add(new RuntimeException(json.getString("message")));
     }
+
+    private static Throwable createError( String exClass, String exMessage )
+    {
+        if (exClass.equals(RoutingBudgetExceededException.class.getName()))
+            return new RoutingBudgetExceededException(exMessage);
+        else if (exClass.equals(UnsupportedOperationException.class.getName()))
+            return new UnsupportedOperationException(exMessage);
+        else if (exClass.equals(IllegalStateException.class.getName()))
+            return new IllegalStateException(exMessage);
+        else if (exClass.equals(RuntimeException.class.getName()))
+            return new RuntimeException(exMessage);
+        else if (exClass.equals(IllegalArgumentException.class.getName()))
+            return new IllegalArgumentException(exMessage);
+        else if (exClass.isEmpty())
+            return new RuntimeException(exMessage);
+        else
+            return new RuntimeException(exClass + " " + exMessage);
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram for positive values like latencies in nanoseconds or visited nodes. Like
+ * an HDR histogram it uses buckets of exponentially growing size each split into linear sub
+ * buckets, so the relative error of the reported percentiles stays below ~6% for all magnitudes
+ * while recording is just an array increment.
+ */
+public class Histogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+    static final int BUCKETS = (65 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record( long value )
+    {
+        if (value < 0)
+            value = 0;
+
+        counts.incrementAndGet(getIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long tmpMax = max.get();
+        while (value > tmpMax && !max.compareAndSet(tmpMax, value))
+        {
+            tmpMax = max.get();
+        }
+    }
+
+    static int getIndex( long value )
+    {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the highest value which is recorded into the bucket of the specified index
+     */
+    static long getUpperBound( int index )
+    {
+        int shift = index < SUB_BUCKETS ? 0 : index / HALF_SUB_BUCKETS - 1;
+        long subBucket = index - shift * HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getSum()
+    {
+        return sum.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the value which is higher or equal than the specified fraction of recorded values or
+     * 0 if nothing was recorded
+     */
+    public long getValueAtQuantile( double quantile )
+    {
+        // the total is counted from the buckets as concurrent updates could be in between
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            total += counts.get(i);
+        }
+        if (total == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            cumulative += counts.get(i);
+            if (cumulative >= rank)
+                return Math.min(getUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+}
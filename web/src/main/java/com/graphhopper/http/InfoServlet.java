@@ -18,7 +18,9 @@
 package com.graphhopper.http;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.MemoryReport;
 import com.graphhopper.storage.StorableProperties;
+import com.graphhopper.storage.index.QueryResultCache;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.BBox;
@@ -27,6 +29,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -40,10 +43,29 @@ import org.json.JSONObject;
 public class InfoServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperSwitch hopperSwitch;
+    @Inject
+    private RouteCache routeCache;
+    @Inject
+    private RequestCoalescer coalescer;
+    @Inject
+    @Named("infoMemory")
+    private boolean memoryInfo;
 
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            writeJson(req, res, createInfo(hopper));
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+    }
+
+    protected JSONObject createInfo( GraphHopper hopper )
     {
         BBox bb = hopper.getGraphHopperStorage().getBounds();
         List<Double> list = new ArrayList<Double>(4);
@@ -75,6 +97,69 @@ public class InfoServlet extends GHBaseServlet
         if (!Helper.isEmpty(props.get("prepare.date")))
             json.put("prepare_date", props.get("prepare.date"));
 
-        writeJson(req, res, json);
+        // the storage layout and JVM memory are only for operators, /info is public
+        if (memoryInfo)
+            json.put("memory", createMemoryInfo(hopper.getMemoryReport()));
+
+        QueryResultCache snapCache = hopper.getSnapCache();
+        if (snapCache != null)
+        {
+            JSONObject cacheJson = new JSONObject();
+            cacheJson.put("size", snapCache.getSize());
+            cacheJson.put("hits", snapCache.getHits());
+            cacheJson.put("misses", snapCache.getMisses());
+            json.put("snap_cache", cacheJson);
+        }
+
+        if (routeCache.isEnabled())
+        {
+            JSONObject cacheJson = new JSONObject();
+            cacheJson.put("size", routeCache.getSize());
+            cacheJson.put("bytes", routeCache.getBytes());
+            cacheJson.put("max_bytes", routeCache.getMaxBytes());
+            cacheJson.put("hits", routeCache.getHits());
+            cacheJson.put("misses", routeCache.getMisses());
+            cacheJson.put("hit_ratio", routeCache.getHitRatio());
+            cacheJson.put("evictions", routeCache.getEvictions());
+            json.put("route_cache", cacheJson);
+        }
+
+        if (coalescer.isEnabled())
+        {
+            JSONObject coalescingJson = new JSONObject();
+            coalescingJson.put("collapsed", coalescer.getCollapsed());
+            coalescingJson.put("in_flight", coalescer.getInFlight());
+            json.put("coalescing", coalescingJson);
+        }
+        return json;
+    }
+
+    protected JSONObject createMemoryInfo( MemoryReport report )
+    {
+        JSONObject json = new JSONObject();
+        json.put("capacity", report.getCapacity());
+        json.put("capacity_heap", report.getCapacity(true));
+        json.put("used", report.getUsedBytes());
+        List<JSONObject> list = new ArrayList<JSONObject>();
+        for (MemoryReport.Entry e : report.getEntries())
+        {
+            JSONObject entryJson = new JSONObject();
+            entryJson.put("name", e.getName());
+            entryJson.put("type", e.getType().toString());
+            entryJson.put("capacity", e.getCapacity());
+            if (e.getUsedBytes() >= 0)
+                entryJson.put("used", e.getUsedBytes());
+            entryJson.put("segments", e.getSegments());
+            list.add(entryJson);
+        }
+        json.put("data", list);
+
+        Runtime rt = Runtime.getRuntime();
+        JSONObject jvm = new JSONObject();
+        jvm.put("max", rt.maxMemory());
+        jvm.put("total", rt.totalMemory());
+        jvm.put("used", rt.totalMemory() - rt.freeMemory());
+        json.put("jvm", jvm);
+        return json;
     }
 }
@@ -0,0 +1,361 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes JSON as UTF-8 directly into an OutputStream without building the document in memory.
+ * Numbers and strings are formatted like org.json does. One instance with its buffers is kept per
+ * thread, get it via JsonStreamWriter.get and call finish after the document is written.
+ */
+class JsonStreamWriter
+{
+    private static final int MAX_DEPTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<JsonStreamWriter> WRITERS = new ThreadLocal<JsonStreamWriter>()
+    {
+        @Override
+        protected JsonStreamWriter initialValue()
+        {
+            return new JsonStreamWriter(8192);
+        }
+    };
+    private final byte[] buffer;
+    private final boolean[] hasElement = new boolean[MAX_DEPTH];
+    private final StringBuilder tmpString = new StringBuilder();
+    private OutputStream out;
+    private int pos;
+    private int depth;
+    private boolean afterName;
+
+    JsonStreamWriter( int bufferSize )
+    {
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     * @return the writer of the current thread prepared to write into the specified stream
+     */
+    static JsonStreamWriter get( OutputStream out )
+    {
+        return WRITERS.get().reset(out);
+    }
+
+    JsonStreamWriter reset( OutputStream out )
+    {
+        this.out = out;
+        pos = 0;
+        depth = 0;
+        afterName = false;
+        return this;
+    }
+
+    /**
+     * A reusable builder e.g. for an encoded polyline. It is cleared on every call.
+     */
+    StringBuilder getTmpString()
+    {
+        tmpString.setLength(0);
+        return tmpString;
+    }
+
+    JsonStreamWriter startObject() throws IOException
+    {
+        beforeValue();
+        writeRaw('{');
+        push();
+        return this;
+    }
+
+    JsonStreamWriter endObject() throws IOException
+    {
+        depth--;
+        writeRaw('}');
+        return this;
+    }
+
+    JsonStreamWriter startArray() throws IOException
+    {
+        beforeValue();
+        writeRaw('[');
+        push();
+        return this;
+    }
+
+    JsonStreamWriter endArray() throws IOException
+    {
+        depth--;
+        writeRaw(']');
+        return this;
+    }
+
+    JsonStreamWriter name( String name ) throws IOException
+    {
+        beforeValue();
+        writeQuoted(name);
+        writeRaw(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonStreamWriter value( CharSequence str ) throws IOException
+    {
+        beforeValue();
+        if (str == null)
+            writeRaw("null");
+        else
+            writeQuoted(str);
+        return this;
+    }
+
+    JsonStreamWriter value( boolean bool ) throws IOException
+    {
+        beforeValue();
+        writeRaw(bool ? "true" : "false");
+        return this;
+    }
+
+    JsonStreamWriter value( long number ) throws IOException
+    {
+        beforeValue();
+        writeRaw(Long.toString(number));
+        return this;
+    }
+
+    JsonStreamWriter value( double number ) throws IOException
+    {
+        if (Double.isNaN(number) || Double.isInfinite(number))
+            throw new IllegalArgumentException("JSON does not allow non-finite numbers: " + number);
+
+        beforeValue();
+        String str = Double.toString(number);
+        int end = str.length();
+        // like org.json remove trailing zeros and the dot if not in scientific notation
+        if (str.indexOf('.') > 0 && str.indexOf('E') < 0)
+        {
+            while (str.charAt(end - 1) == '0')
+            {
+                end--;
+            }
+            if (str.charAt(end - 1) == '.')
+                end--;
+        }
+        for (int i = 0; i < end; i++)
+        {
+            writeRaw(str.charAt(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes numbers, booleans, strings, maps and collections. Other objects are written as their
+     * string representation.
+     */
+    JsonStreamWriter value( Object obj ) throws IOException
+    {
+        if (obj == null || obj instanceof CharSequence)
+            return value((CharSequence) obj);
+        if (obj instanceof Double || obj instanceof Float)
+            return value(((Number) obj).doubleValue());
+        if (obj instanceof Number)
+            return value(((Number) obj).longValue());
+        if (obj instanceof Boolean)
+            return value(((Boolean) obj).booleanValue());
+
+        if (obj instanceof Map)
+        {
+            startObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) obj).entrySet())
+            {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+
+        if (obj instanceof Collection)
+        {
+            startArray();
+            for (Object element : (Collection<?>) obj)
+            {
+                value(element);
+            }
+            return endArray();
+        }
+
+        if (obj instanceof Object[])
+        {
+            startArray();
+            for (Object element : (Object[]) obj)
+            {
+                value(element);
+            }
+            return endArray();
+        }
+        return value(obj.toString());
+    }
+
+    /**
+     * Writes the remaining buffer into the stream and releases it.
+     */
+    void finish() throws IOException
+    {
+        try
+        {
+            out.write(buffer, 0, pos);
+            out.flush();
+        } finally
+        {
+            reset(null);
+        }
+    }
+
+    private void push()
+    {
+        if (++depth >= MAX_DEPTH)
+            throw new IllegalStateException("JSON nested too deep, maximum depth is " + MAX_DEPTH);
+        hasElement[depth] = false;
+    }
+
+    private void beforeValue() throws IOException
+    {
+        if (afterName)
+        {
+            afterName = false;
+            return;
+        }
+
+        if (depth > 0)
+        {
+            if (hasElement[depth])
+                writeRaw(',');
+            else
+                hasElement[depth] = true;
+        }
+    }
+
+    private void writeQuoted( CharSequence str ) throws IOException
+    {
+        writeRaw('"');
+        char prev = 0;
+        int len = str.length();
+        for (int i = 0; i < len; i++)
+        {
+            char c = str.charAt(i);
+            switch (c)
+            {
+                case '\\':
+                case '"':
+                    writeRaw('\\');
+                    writeRaw(c);
+                    break;
+                case '/':
+                    if (prev == '<')
+                        writeRaw('\\');
+                    writeRaw(c);
+                    break;
+                case '\b':
+                    writeRaw("\\b");
+                    break;
+                case '\t':
+                    writeRaw("\\t");
+                    break;
+                case '\n':
+                    writeRaw("\\n");
+                    break;
+                case '\f':
+                    writeRaw("\\f");
+                    break;
+                case '\r':
+                    writeRaw("\\r");
+                    break;
+                default:
+                    if (c < ' ' || c >= 0x80 && c < 0xA0 || c >= 0x2000 && c < 0x2100)
+                    {
+                        writeRaw("\\u");
+                        writeRaw(HEX[c >> 12 & 0xF]);
+                        writeRaw(HEX[c >> 8 & 0xF]);
+                        writeRaw(HEX[c >> 4 & 0xF]);
+                        writeRaw(HEX[c & 0xF]);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1)))
+                    {
+                        writeCodePoint(Character.toCodePoint(c, str.charAt(++i)));
+                    } else
+                    {
+                        writeCodePoint(Character.isSurrogate(c) ? '?' : c);
+                    }
+            }
+            prev = c;
+        }
+        writeRaw('"');
+    }
+
+    private void writeRaw( String str ) throws IOException
+    {
+        for (int i = 0; i < str.length(); i++)
+        {
+            writeRaw(str.charAt(i));
+        }
+    }
+
+    /**
+     * Writes an ASCII character.
+     */
+    private void writeRaw( char c ) throws IOException
+    {
+        if (pos == buffer.length)
+            flushBuffer();
+        buffer[pos++] = (byte) c;
+    }
+
+    private void writeCodePoint( int cp ) throws IOException
+    {
+        if (pos + 4 > buffer.length)
+            flushBuffer();
+
+        if (cp < 0x80)
+        {
+            buffer[pos++] = (byte) cp;
+        } else if (cp < 0x800)
+        {
+            buffer[pos++] = (byte) (0xC0 | cp >> 6);
+            buffer[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else if (cp < 0x10000)
+        {
+            buffer[pos++] = (byte) (0xE0 | cp >> 12);
+            buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else
+        {
+            buffer[pos++] = (byte) (0xF0 | cp >> 18);
+            buffer[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buffer[pos++] = (byte) (0x80 | cp & 0x3F);
+        }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        out.write(buffer, 0, pos);
+        pos = 0;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.matching.MapMatching;
+import com.graphhopper.matching.MatchResult;
+import com.graphhopper.matching.MatchedPoint;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Matches GPS traces to the road network, e.g. POST /match?vehicle=car with one "lat,lon" per line
+ * as body. Several traces can be matched in one request if they are separated by an empty line.
+ * The results are returned in the same order as the traces.
+ */
+public class MatchServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+    @Inject
+    @Named("matchWindowSize")
+    private int windowSize;
+    @Inject
+    @Named("matchMaxVisitedNodes")
+    private int maxVisitedNodes;
+    private int maxPoints = 100000;
+
+    @Override
+    public void doPost( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // read the body before any parameter to avoid form parsing
+        List<List<GHPoint>> traces = new ArrayList<List<GHPoint>>();
+        List<GHPoint> trace = new ArrayList<GHPoint>();
+        int lineNumber = 0;
+        int points = 0;
+        try
+        {
+            BufferedReader reader = new BufferedReader(createBodyReader(httpReq));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty())
+                {
+                    if (!trace.isEmpty())
+                    {
+                        traces.add(trace);
+                        trace = new ArrayList<GHPoint>();
+                    }
+                    continue;
+                }
+
+                GHPoint point = GHPoint.parse(line);
+                if (point == null || !point.isValid())
+                {
+                    writeError(httpRes, SC_BAD_REQUEST, "Invalid point in line " + lineNumber + ": " + line);
+                    return;
+                }
+
+                if (++points > maxPoints)
+                {
+                    writeError(httpRes, SC_BAD_REQUEST, "Too many points, maximum is " + maxPoints);
+                    return;
+                }
+                trace.add(point);
+            }
+        } catch (RequestTooLargeException ex)
+        {
+            writeTooLargeError(httpRes, ex);
+            return;
+        }
+
+        if (!trace.isEmpty())
+            traces.add(trace);
+
+        if (traces.isEmpty())
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "No point specified");
+            return;
+        }
+
+        String vehicle = getParam(httpReq, "vehicle", "car");
+        double gpsAccuracy = getDoubleParam(httpReq, "gps_accuracy", 10);
+        if (gpsAccuracy <= 0)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "gps_accuracy has to be positive");
+            return;
+        }
+
+        StopWatch sw = new StopWatch().start();
+        JSONArray results = new JSONArray();
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            if (!hopper.getEncodingManager().supports(vehicle))
+            {
+                writeError(httpRes, SC_BAD_REQUEST, "Vehicle not supported: " + vehicle);
+                return;
+            }
+
+            MapMatching mapMatching = new MapMatching(hopper.getGraphHopperStorage(), hopper.getLocationIndex(),
+                    hopper.getEncodingManager().getEncoder(vehicle)).
+                    setWindowSize(windowSize).
+                    setMaxVisitedNodes(maxVisitedNodes).
+                    setMeasurementSigma(gpsAccuracy).
+                    setSearchRadius(Math.max(50, 5 * gpsAccuracy));
+            for (List<GHPoint> tmp : traces)
+            {
+                results.put(createJson(mapMatching.match(tmp)));
+            }
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("traces", results);
+        json.put("took", sw.stop().getSeconds());
+        writeJson(httpReq, httpRes, json);
+    }
+
+    private JSONObject createJson( MatchResult result )
+    {
+        JSONObject json = new JSONObject();
+        json.put("distance", result.getDistance());
+        json.put("breaks", result.getBreaks());
+        JSONArray edges = new JSONArray();
+        for (int i = 0; i < result.getEdges().size(); i++)
+        {
+            edges.put(result.getEdges().get(i));
+        }
+        json.put("edges", edges);
+
+        JSONObject geometry = new JSONObject();
+        geometry.put("type", "LineString");
+        PointList pointList = result.getPoints();
+        JSONArray coordinates = new JSONArray();
+        for (int i = 0; i < pointList.getSize(); i++)
+        {
+            coordinates.put(createCoordinate(pointList.getLatitude(i), pointList.getLongitude(i)));
+        }
+        geometry.put("coordinates", coordinates);
+        json.put("geometry", geometry);
+
+        JSONArray points = new JSONArray();
+        for (MatchedPoint mp : result.getMatchedPoints())
+        {
+            JSONObject point = new JSONObject();
+            if (mp.isMatched())
+            {
+                point.put("coordinates", createCoordinate(mp.getSnappedPoint().lat, mp.getSnappedPoint().lon));
+                point.put("edge", mp.getEdge());
+                point.put("distance", mp.getDistance());
+            } else
+            {
+                point.put("error", "Point cannot be matched");
+            }
+            points.put(point);
+        }
+        json.put("points", points);
+        return json;
+    }
+
+    private static JSONArray createCoordinate( double lat, double lon )
+    {
+        JSONArray coord = new JSONArray();
+        coord.put(lon);
+        coord.put(lat);
+        return coord;
+    }
+}
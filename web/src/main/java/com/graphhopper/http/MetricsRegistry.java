@@ -0,0 +1,184 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds histograms and counters identified by a name and labels and writes them in the text
+ * exposition format of Prometheus. Histograms are written as summaries with the quantiles 0.5,
+ * 0.9, 0.99 and 0.999 since the start of the server.
+ */
+public class MetricsRegistry
+{
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final double[] QUANTILES = new double[]
+    {
+        0.5, 0.9, 0.99, 0.999
+    };
+    // sorted to write all metrics of the same name together
+    private final ConcurrentSkipListMap<String, Metric> metrics = new ConcurrentSkipListMap<String, Metric>();
+    private final ConcurrentMap<String, String> helps = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Sets the description written for all metrics with the specified name.
+     */
+    public MetricsRegistry setHelp( String name, String help )
+    {
+        helps.put(name, help);
+        return this;
+    }
+
+    /**
+     * @param scale the factor to convert the recorded values into the written unit, e.g. 1e-9 for
+     * nanoseconds written as seconds
+     * @param labels the label names and values in turn
+     */
+    public Histogram getHistogram( String name, double scale, String... labels )
+    {
+        return (Histogram) getMetric(name, labels, true, scale);
+    }
+
+    /**
+     * @param labels the label names and values in turn
+     */
+    public AtomicLong getCounter( String name, String... labels )
+    {
+        return (AtomicLong) getMetric(name, labels, false, 1);
+    }
+
+    private Object getMetric( String name, String[] labels, boolean histogram, double scale )
+    {
+        String labelStr = createLabels(labels);
+        String key = name + "{" + labelStr + "}";
+        Metric metric = metrics.get(key);
+        if (metric == null)
+        {
+            Object value = histogram ? new Histogram() : new AtomicLong();
+            metric = new Metric(name, labelStr, value, scale);
+            Metric existing = metrics.putIfAbsent(key, metric);
+            if (existing != null)
+                metric = existing;
+        }
+
+        if (histogram != metric.value instanceof Histogram)
+            throw new IllegalArgumentException("Metric " + name + " was registered with a different type");
+
+        return metric.value;
+    }
+
+    static String createLabels( String... labels )
+    {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels have to be pairs of name and value but were " + labels.length);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2)
+        {
+            if (i > 0)
+                sb.append(',');
+
+            sb.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int j = 0; j < value.length(); j++)
+            {
+                char c = value.charAt(j);
+                if (c == '\\' || c == '"')
+                    sb.append('\\').append(c);
+                else if (c == '\n')
+                    sb.append("\\n");
+                else
+                    sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    public void write( Appendable out ) throws IOException
+    {
+        String lastName = null;
+        for (Metric metric : metrics.values())
+        {
+            boolean histogram = metric.value instanceof Histogram;
+            if (!metric.name.equals(lastName))
+            {
+                writeHeader(out, metric.name, histogram ? "summary" : "counter");
+                lastName = metric.name;
+            }
+
+            if (histogram)
+            {
+                Histogram h = (Histogram) metric.value;
+                String prefix = metric.labels.isEmpty() ? "" : metric.labels + ",";
+                for (double q : QUANTILES)
+                {
+                    writeSample(out, metric.name, prefix + "quantile=\"" + q + "\"", h.getValueAtQuantile(q) * metric.scale);
+                }
+                writeSample(out, metric.name + "_sum", metric.labels, h.getSum() * metric.scale);
+                writeSample(out, metric.name + "_count", metric.labels, h.getCount());
+            } else
+            {
+                writeSample(out, metric.name, metric.labels, ((AtomicLong) metric.value).get());
+            }
+        }
+    }
+
+    void writeHeader( Appendable out, String name, String type ) throws IOException
+    {
+        String help = helps.get(name);
+        if (help != null)
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static void writeSample( Appendable out, String name, String labels, double value ) throws IOException
+    {
+        out.append(name);
+        if (!labels.isEmpty())
+            out.append('{').append(labels).append('}');
+
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            out.append(Long.toString((long) value));
+        else
+            out.append(Double.toString(value));
+        out.append('\n');
+    }
+
+    static class Metric
+    {
+        final String name;
+        final String labels;
+        final Object value;
+        final double scale;
+
+        Metric( String name, String labels, Object value, double scale )
+        {
+            this.name = name;
+            this.labels = labels;
+            this.value = value;
+            this.scale = scale;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.google.inject.Inject;
+
+import java.io.IOException;
+import java.io.Writer;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the latency histograms and counters in the text exposition format of Prometheus, e.g.
+ * to be scraped for dashboards of the percentiles.
+ */
+public class MetricsServlet extends GHBaseServlet
+{
+    @Inject
+    private MetricsRegistry registry;
+    @Inject
+    private RequestCoalescer coalescer;
+    @Inject
+    private RouteCache routeCache;
+    @Inject(optional = true)
+    private AdmissionFilter admissionFilter;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        res.setContentType(MetricsRegistry.CONTENT_TYPE);
+        res.setCharacterEncoding("UTF-8");
+        res.setStatus(HttpServletResponse.SC_OK);
+        Writer writer = res.getWriter();
+        StringBuilder sb = new StringBuilder();
+        registry.write(sb);
+        writeComponents(sb);
+        writer.write(sb.toString());
+    }
+
+    void writeComponents( Appendable out ) throws IOException
+    {
+        if (coalescer.isEnabled())
+        {
+            write(out, "graphhopper_route_coalesced_total", "counter", coalescer.getCollapsed());
+            write(out, "graphhopper_route_in_flight", "gauge", coalescer.getInFlight());
+        }
+
+        if (routeCache.isEnabled())
+        {
+            write(out, "graphhopper_route_cache_hits_total", "counter", routeCache.getHits());
+            write(out, "graphhopper_route_cache_misses_total", "counter", routeCache.getMisses());
+            write(out, "graphhopper_route_cache_evictions_total", "counter", routeCache.getEvictions());
+            write(out, "graphhopper_route_cache_bytes", "gauge", routeCache.getBytes());
+        }
+
+        if (admissionFilter != null)
+        {
+            writeBudget(out, "expensive", admissionFilter.getExpensive());
+            writeBudget(out, "cheap", admissionFilter.getCheap());
+            write(out, "graphhopper_admission_rejected_ip_total", "counter", admissionFilter.getRejectedIP());
+        }
+    }
+
+    private void writeBudget( Appendable out, String name, AdmissionFilter.Budget budget ) throws IOException
+    {
+        write(out, "graphhopper_admission_" + name + "_active", "gauge", budget.getActive());
+        write(out, "graphhopper_admission_" + name + "_queued", "gauge", budget.getQueued());
+        write(out, "graphhopper_admission_" + name + "_rejected_total", "counter", budget.getRejected());
+    }
+
+    private void write( Appendable out, String name, String type, double value ) throws IOException
+    {
+        registry.writeHeader(out, name, type);
+        MetricsRegistry.writeSample(out, name, "", value);
+    }
+}
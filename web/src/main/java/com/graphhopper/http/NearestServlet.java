@@ -20,29 +20,61 @@ package com.graphhopper.http;
 import com.graphhopper.GraphHopper;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.DistanceCalc;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.GHPoint;
 import com.graphhopper.util.shapes.GHPoint3D;
+import gnu.trove.list.array.TDoubleArrayList;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 
 /**
+ * Snaps a point to the closest road, e.g. /nearest?point=52.5,13.4. Many points can be posted as
+ * body with one "lat,lon" per line, which are then snapped in one batch. With type=binary the
+ * snapped points are returned in the compact BinaryFormat.
+ * <p>
  * @author svantulden
  */
 public class NearestServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperSwitch hopperSwitch;
+    @Inject
+    @Named("nearestBatchThreads")
+    private int batchThreads;
+    private int maxPoints = 100000;
+    private ExecutorService service;
     private final DistanceCalc calc = Helper.DIST_EARTH;
 
+    @Override
+    public void init() throws ServletException
+    {
+        // shared by all batches so that concurrent requests do not multiply the threads
+        if (batchThreads > 1)
+            service = createThreadPool("nearest-batch", batchThreads);
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (service != null)
+            service.shutdownNow();
+    }
+
     @Override
     public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
     {
@@ -53,34 +85,166 @@ public class NearestServlet extends GHBaseServlet
         if (pointStr != null && !pointStr.equalsIgnoreCase(""))
         {
             GHPoint place = GHPoint.parse(pointStr);
-            LocationIndex index = hopper.getLocationIndex();
-            QueryResult qr = index.findClosest(place.lat, place.lon, EdgeFilter.ALL_EDGES);
+            GraphHopper hopper = hopperSwitch.acquire();
+            try
+            {
+                LocationIndex index = hopper.getLocationIndex();
+                QueryResult qr = index.findClosest(place.lat, place.lon, EdgeFilter.ALL_EDGES);
+                if (isBinary(httpReq))
+                {
+                    writeBinary(httpRes, new QueryResult[]
+                    {
+                        qr
+                    }, hopper.hasElevation() && enabledElevation);
+                    return;
+                }
+                result = createJson(place, qr, hopper.hasElevation() && enabledElevation);
+            } finally
+            {
+                hopperSwitch.release(hopper);
+            }
+        } else
+        {
+            result.put("error", "No lat/lon specified!");
+        }
 
-            if (!qr.isValid())
+        writeJson(httpReq, httpRes, result);
+    }
+
+    @Override
+    public void doPost( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // read the body before any parameter to avoid form parsing
+        TDoubleArrayList lats = new TDoubleArrayList();
+        TDoubleArrayList lons = new TDoubleArrayList();
+        try
+        {
+            BufferedReader reader = new BufferedReader(createBodyReader(httpReq));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                GHPoint point = GHPoint.parse(line);
+                if (point == null || !point.isValid())
+                {
+                    writeError(httpRes, SC_BAD_REQUEST, "Invalid point in line " + (lats.size() + 1) + ": " + line);
+                    return;
+                }
+
+                if (lats.size() >= maxPoints)
+                {
+                    writeError(httpRes, SC_BAD_REQUEST, "Too many points, maximum is " + maxPoints);
+                    return;
+                }
+                lats.add(point.lat);
+                lons.add(point.lon);
+            }
+        } catch (RequestTooLargeException ex)
+        {
+            writeTooLargeError(httpRes, ex);
+            return;
+        }
+
+        if (lats.isEmpty())
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "No point specified");
+            return;
+        }
+
+        boolean enabledElevation = getBooleanParam(httpReq, "elevation", false);
+        StopWatch sw = new StopWatch().start();
+        JSONArray points = new JSONArray();
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            LocationIndex index = hopper.getLocationIndex();
+            QueryResult[] results;
+            if (index instanceof LocationIndexTree)
             {
-                result.put("error", "Nearest point cannot be found!");
+                results = ((LocationIndexTree) index).findClosest(lats.toArray(), lons.toArray(),
+                        EdgeFilter.ALL_EDGES, service, batchThreads);
             } else
             {
-                GHPoint3D snappedPoint = qr.getSnappedPoint();
-                result.put("type", "Point");
+                results = new QueryResult[lats.size()];
+                for (int i = 0; i < results.length; i++)
+                {
+                    results[i] = index.findClosest(lats.get(i), lons.get(i), EdgeFilter.ALL_EDGES);
+                }
+            }
 
-                JSONArray coord = new JSONArray();
-                coord.put(snappedPoint.lon);
-                coord.put(snappedPoint.lat);
+            if (isBinary(httpReq))
+            {
+                writeBinary(httpRes, results, hopper.hasElevation() && enabledElevation);
+                return;
+            }
 
-                if (hopper.hasElevation() && enabledElevation)
-                    coord.put(snappedPoint.ele);
+            for (int i = 0; i < results.length; i++)
+            {
+                points.put(createJson(new GHPoint(lats.get(i), lons.get(i)), results[i],
+                        hopper.hasElevation() && enabledElevation));
+            }
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("points", points);
+        result.put("took", sw.stop().getSeconds());
+        writeJson(httpReq, httpRes, result);
+    }
 
-                result.put("coordinates", coord);
+    private boolean isBinary( HttpServletRequest httpReq )
+    {
+        return BinaryFormat.isRequested(getParam(httpReq, "type", "json"), httpReq.getHeader("Accept"));
+    }
 
-                // Distance from input to snapped point in meters
-                result.put("distance", calc.calcDist(place.lat, place.lon, snappedPoint.lat, snappedPoint.lon));
+    private void writeBinary( HttpServletResponse httpRes, QueryResult[] results, boolean withElevation ) throws IOException
+    {
+        BinaryFormat.Output output = BinaryFormat.getOutput();
+        output.writeByte(withElevation ? BinaryFormat.FLAG_ELEVATION : 0).writeVarLong(results.length).resetPoints();
+        for (QueryResult qr : results)
+        {
+            if (!qr.isValid())
+            {
+                output.writeByte(0);
+                continue;
             }
+            GHPoint3D snappedPoint = qr.getSnappedPoint();
+            output.writeByte(1).writePoint(snappedPoint.lat, snappedPoint.lon, snappedPoint.ele, withElevation);
+        }
+        httpRes.setContentType(BinaryFormat.CONTENT_TYPE);
+        httpRes.setStatus(HttpServletResponse.SC_OK);
+        output.writeTo(httpRes.getOutputStream(), BinaryFormat.TYPE_NEAREST);
+    }
+
+    private JSONObject createJson( GHPoint place, QueryResult qr, boolean withElevation )
+    {
+        JSONObject result = new JSONObject();
+        if (!qr.isValid())
+        {
+            result.put("error", "Nearest point cannot be found!");
         } else
         {
-            result.put("error", "No lat/lon specified!");
-        }
+            GHPoint3D snappedPoint = qr.getSnappedPoint();
+            result.put("type", "Point");
 
-        writeJson(httpReq, httpRes, result);
+            JSONArray coord = new JSONArray();
+            coord.put(snappedPoint.lon);
+            coord.put(snappedPoint.lat);
+
+            if (withElevation)
+                coord.put(snappedPoint.ele);
+
+            result.put("coordinates", coord);
+
+            // Distance from input to snapped point in meters
+            result.put("distance", calc.calcDist(place.lat, place.lon, snappedPoint.lat, snappedPoint.lon));
+            result.put("name", qr.getClosestEdge().getName());
+        }
+        return result;
     }
 }
@@ -0,0 +1,90 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.Helper;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static javax.servlet.http.HttpServletResponse.*;
+
+/**
+ * Switches to the graph in the specified folder without restarting the server, e.g. via
+ * <code>curl -X POST "http://localhost:8989/reload?graph_location=/data/europe-new-gh"</code>.
+ * Only available if web.reloadAllowed=true. The graph is loaded in the background, poll
+ * /reload to see if it is still in progress.
+ */
+public class ReloadServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        writeJson(req, res, createStatus());
+    }
+
+    @Override
+    public void doPost( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        String location = getParam(req, "graph_location", "");
+        if (Helper.isEmpty(location))
+        {
+            writeError(res, SC_BAD_REQUEST, "No graph_location specified");
+            return;
+        }
+
+        if (hopperSwitch.isReloading())
+        {
+            writeError(res, SC_CONFLICT, "Reload already in progress");
+            return;
+        }
+
+        try
+        {
+            hopperSwitch.reloadInBackground(location);
+        } catch (IllegalStateException ex)
+        {
+            JSONObject json = createStatus();
+            json.put("message", ex.getMessage());
+            writeJsonError(res, SC_SERVICE_UNAVAILABLE, json);
+            return;
+        }
+
+        logger.info("reload of " + location + " started from " + req.getRemoteAddr());
+        JSONObject json = createStatus();
+        json.put("message", "Reload of " + location + " started");
+        writeJson(req, res, json);
+    }
+
+    JSONObject createStatus()
+    {
+        JSONObject json = new JSONObject();
+        json.put("reloading", hopperSwitch.isReloading());
+        json.put("graph_location", hopperSwitch.get().getGraphHopperLocation());
+        json.put("required_memory_mb", hopperSwitch.getRequiredMemory() / Helper.MB);
+        json.put("available_memory_mb", GraphHopperSwitch.getAvailableMemory() / Helper.MB);
+        return json;
+    }
+}
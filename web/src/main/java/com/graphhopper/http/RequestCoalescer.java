@@ -0,0 +1,145 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical route requests wait for one calculation and share its response
+ * instead of calculating the same route several times, e.g. for a burst of requests after an
+ * upstream cache expired.
+ */
+public class RequestCoalescer
+{
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final boolean enabled;
+    private RouteMetrics routeMetrics;
+
+    public RequestCoalescer( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records the metrics of the calculations, but not of the requests sharing a response.
+     */
+    public RequestCoalescer setRouteMetrics( RouteMetrics routeMetrics )
+    {
+        this.routeMetrics = routeMetrics;
+        return this;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Calculates the route or waits for the identical calculation already in progress.
+     *
+     * @param key the normalized request, see RouteCache.createKey
+     */
+    public GHResponse route( GraphHopper hopper, String key, GHRequest request )
+    {
+        if (!enabled)
+            return calcRoute(hopper, request);
+
+        Flight flight = new Flight(hopper);
+        Flight existing = flights.putIfAbsent(key, flight);
+        // after a reload requests for the new instance must not wait for the old one
+        if (existing != null && existing.hopper == hopper)
+        {
+            GHResponse rsp = existing.await();
+            if (rsp != null)
+            {
+                collapsed.incrementAndGet();
+                return rsp;
+            }
+        }
+
+        if (existing != null)
+            return calcRoute(hopper, request);
+
+        try
+        {
+            flight.response = calcRoute(hopper, request);
+            return flight.response;
+        } finally
+        {
+            flights.remove(key, flight);
+            flight.latch.countDown();
+        }
+    }
+
+    private GHResponse calcRoute( GraphHopper hopper, GHRequest request )
+    {
+        return routeMetrics == null ? hopper.route(request) : routeMetrics.route(hopper, request);
+    }
+
+    /**
+     * @return the number of requests which got the response of another request
+     */
+    public long getCollapsed()
+    {
+        return collapsed.get();
+    }
+
+    /**
+     * @return the number of distinct calculations currently in progress
+     */
+    public int getInFlight()
+    {
+        return flights.size();
+    }
+
+    private static class Flight
+    {
+        final GraphHopper hopper;
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile GHResponse response;
+
+        Flight( GraphHopper hopper )
+        {
+            this.hopper = hopper;
+        }
+
+        /**
+         * @return the response or null if the calculation failed or the thread was interrupted
+         */
+        GHResponse await()
+        {
+            try
+            {
+                latch.await();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return response;
+        }
+    }
+}
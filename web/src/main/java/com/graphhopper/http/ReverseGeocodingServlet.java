@@ -0,0 +1,140 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.search.LocationIndexReverseGeocoder;
+import com.graphhopper.util.shapes.GHPlace;
+import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Returns the name of the closest street for one or more points, e.g.
+ * /reverse?point=52.5,13.4&amp;point=52.6,13.3. Many points can be posted as body with one
+ * "lat,lon" per line. The names are returned in the same order as the points.
+ */
+public class ReverseGeocodingServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+    private int maxPoints = 10000;
+
+    @Override
+    public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        List<GHPoint> points = new ArrayList<GHPoint>();
+        for (String str : getParams(req, "point"))
+        {
+            points.add(GHPoint.parse(str));
+        }
+        writeNames(req, res, points);
+    }
+
+    @Override
+    public void doPost( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        List<GHPoint> points = new ArrayList<GHPoint>();
+        try
+        {
+            BufferedReader reader = new BufferedReader(createBodyReader(req));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                GHPoint point = GHPoint.parse(line);
+                if (point == null)
+                {
+                    writeError(res, SC_BAD_REQUEST, "Invalid point in line " + (points.size() + 1) + ": " + line);
+                    return;
+                }
+
+                if (points.size() >= maxPoints)
+                {
+                    writeError(res, SC_BAD_REQUEST, "Too many points, maximum is " + maxPoints);
+                    return;
+                }
+                points.add(point);
+            }
+        } catch (RequestTooLargeException ex)
+        {
+            writeTooLargeError(res, ex);
+            return;
+        }
+        writeNames(req, res, points);
+    }
+
+    private void writeNames( HttpServletRequest req, HttpServletResponse res, List<GHPoint> points ) throws IOException
+    {
+        if (points.isEmpty())
+        {
+            writeError(res, SC_BAD_REQUEST, "No point specified");
+            return;
+        }
+
+        if (points.size() > maxPoints)
+        {
+            writeError(res, SC_BAD_REQUEST, "Too many points " + points.size() + ", maximum is " + maxPoints);
+            return;
+        }
+
+        for (GHPoint point : points)
+        {
+            if (point == null || !point.isValid())
+            {
+                writeError(res, SC_BAD_REQUEST, "Invalid point specified");
+                return;
+            }
+        }
+
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            LocationIndexReverseGeocoder geocoder = hopper.getReverseGeocoder();
+            JSONArray places = new JSONArray();
+            for (GHPlace place : geocoder.points2names(points))
+            {
+                JSONObject json = new JSONObject();
+                json.put("name", place.getName());
+                json.put("lat", place.lat);
+                json.put("lng", place.lon);
+                places.put(json);
+            }
+            JSONObject json = new JSONObject();
+            json.put("places", places);
+            writeJson(req, res, json);
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+    }
+}
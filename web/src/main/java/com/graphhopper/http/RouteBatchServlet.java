@@ -0,0 +1,392 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+/**
+ * Calculates many independent routes posted in one call to /route/batch, e.g. with the body
+ * {"requests":[{"points":[[13.73,51.07],[13.38,52.51]],"vehicle":"bike"}, ...]}. The points are
+ * in GeoJSON order (longitude,latitude). The parameters vehicle, weighting, algorithm, locale,
+ * instructions, calc_points and elevation of the URL are the defaults of every entry, all other
+ * properties of an entry are used as hints like the parameters of /route.
+ * <p>
+ * The routes are calculated on a bounded pool shared by all batches and streamed back in the order
+ * of the requests as {"results":[...]}. Every result has the format of a /route response, so if
+ * one entry fails only its result contains the error message. With admission control every route
+ * acquires the expensive budget, so a batch competes fairly with single /route requests.
+ */
+public class RouteBatchServlet extends GHBaseServlet
+{
+    private static final byte[] START = "{\"results\":[".getBytes(Helper.UTF_CS);
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+    @Inject
+    private RouteSerializer routeSerializer;
+    @Inject
+    private RouteMetrics routeMetrics;
+    @Inject
+    @Named("routeMaxVisitedNodes")
+    private int maxVisitedNodes;
+    @Inject
+    @Named("routeTimeout")
+    private long timeout;
+    @Inject
+    @Named("routeBatchThreads")
+    private int threads;
+    @Inject
+    @Named("routeBatchMaxRequests")
+    private int maxRequests;
+    @com.google.inject.Inject(optional = true)
+    private AdmissionFilter admissionFilter;
+    private ExecutorService service;
+
+    @Override
+    public void init() throws ServletException
+    {
+        service = createThreadPool("route-batch", threads);
+    }
+
+    @Override
+    public void destroy()
+    {
+        service.shutdownNow();
+    }
+
+    @Override
+    public void doPost( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        // read the body before any parameter to avoid form parsing
+        JSONArray requests;
+        try
+        {
+            requests = new JSONObject(new JSONTokener(createBodyReader(httpReq))).getJSONArray("requests");
+        } catch (RequestTooLargeException ex)
+        {
+            writeTooLargeError(httpRes, ex);
+            return;
+        } catch (JSONException ex)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "Invalid batch request: " + ex.getMessage());
+            return;
+        }
+
+        if (requests.length() == 0)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "No request specified");
+            return;
+        }
+
+        if (requests.length() > maxRequests)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "Too many requests " + requests.length() + ", maximum is " + maxRequests);
+            return;
+        }
+
+        StopWatch sw = new StopWatch().start();
+        BatchDefaults defaults = new BatchDefaults(getParam(httpReq, "vehicle", "car"),
+                getParam(httpReq, "weighting", "fastest"), getParam(httpReq, "algorithm", ""),
+                getParam(httpReq, "locale", "en"), getBooleanParam(httpReq, "instructions", true),
+                getBooleanParam(httpReq, "calc_points", true), getBooleanParam(httpReq, "elevation", false));
+        boolean pointsEncoded = getBooleanParam(httpReq, "points_encoded", true);
+
+        httpRes.setContentType("application/json");
+        httpRes.setCharacterEncoding("UTF-8");
+        httpRes.setStatus(SC_OK);
+        BatchOutputStream out = new BatchOutputStream(httpRes.getOutputStream());
+        int failed = 0;
+        GraphHopper hopper = hopperSwitch.acquire();
+        // the results have to be written in order, so limit the routes calculated ahead of the slowest one
+        int window = 2 * threads;
+        List<Future<BatchEntry>> futures = new ArrayList<Future<BatchEntry>>(requests.length());
+        try
+        {
+            for (int i = 0; i < Math.min(window, requests.length()); i++)
+            {
+                futures.add(submit(hopper, requests, i, defaults));
+            }
+
+            out.write(START);
+            for (int i = 0; i < requests.length(); i++)
+            {
+                Future<BatchEntry> future = futures.get(i);
+                // hand out the finished results before waiting for the next one
+                if (!future.isDone())
+                    out.flushNow();
+
+                BatchEntry entry = getEntry(future);
+                // do not keep the finished responses until the batch ends
+                futures.set(i, null);
+                if (i + window < requests.length())
+                    futures.add(submit(hopper, requests, i + window, defaults));
+
+                if (i > 0)
+                    out.write(',');
+
+                long serializeStart = System.nanoTime();
+                routeSerializer.writeJSON(entry.response, entry.nanos / 1000000, entry.calcPoints, pointsEncoded,
+                        entry.elevation, entry.instructions, out);
+                long serializeNanos = System.nanoTime() - serializeStart;
+                routeMetrics.recordRequest(entry.vehicle, entry.response, serializeNanos, entry.nanos + serializeNanos);
+                if (entry.response.hasErrors())
+                    failed++;
+            }
+            out.write(("],\"info\":{\"took\":" + Math.round(sw.stop().getSeconds() * 1000) + "}}").
+                    getBytes(Helper.UTF_CS));
+            out.flushNow();
+        } finally
+        {
+            try
+            {
+                // e.g. if the client is gone, the running routes still use the instance
+                for (Future<BatchEntry> future : futures)
+                {
+                    if (future == null || future.cancel(false) || future.isDone())
+                        continue;
+
+                    try
+                    {
+                        future.get();
+                    } catch (InterruptedException ex)
+                    {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (ExecutionException ex)
+                    {
+                        logger.warn("Route of cancelled batch failed: " + ex.getCause());
+                    }
+                }
+            } finally
+            {
+                hopperSwitch.release(hopper);
+            }
+        }
+
+        logger.info(httpReq.getRemoteAddr() + " " + httpReq.getHeader("User-Agent") + " batch of "
+                + requests.length() + " routes, failed: " + failed + ", took: " + sw.getSeconds());
+    }
+
+    private Future<BatchEntry> submit( final GraphHopper hopper, final JSONArray requests, final int index,
+                                       final BatchDefaults defaults )
+    {
+        return service.submit(new Callable<BatchEntry>()
+        {
+            @Override
+            public BatchEntry call()
+            {
+                return calcEntry(hopper, requests, index, defaults);
+            }
+        });
+    }
+
+    private static BatchEntry getEntry( Future<BatchEntry> future )
+    {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for route", ex);
+        } catch (ExecutionException ex)
+        {
+            throw new IllegalStateException("Cannot calculate route", ex.getCause());
+        }
+    }
+
+    /**
+     * Creates and calculates the route of one entry. Errors are stored in the response so that
+     * the other entries are not affected.
+     */
+    BatchEntry calcEntry( GraphHopper hopper, JSONArray requests, int index, BatchDefaults defaults )
+    {
+        long start = System.nanoTime();
+        BatchEntry entry = new BatchEntry();
+        entry.vehicle = defaults.vehicle;
+        try
+        {
+            JSONObject json = requests.getJSONObject(index);
+            entry.vehicle = json.optString("vehicle", defaults.vehicle);
+            GHRequest request = createRequest(json, defaults);
+            WeightingMap hints = request.getHints();
+            entry.calcPoints = hints.getBool("calc_points", defaults.calcPoints);
+            entry.instructions = hints.getBool("instructions", defaults.instructions);
+            entry.elevation = hints.getBool("elevation", defaults.elevation);
+            if (!hopper.getEncodingManager().supports(entry.vehicle))
+                throw new IllegalArgumentException("Vehicle not supported: " + entry.vehicle);
+            if (entry.elevation && !hopper.hasElevation())
+                throw new IllegalArgumentException("Elevation not supported!");
+
+            request.setVehicle(hopper.getEncodingManager().getEncoder(entry.vehicle).toString());
+            hints.put("calcPoints", entry.calcPoints).
+                    put("instructions", entry.instructions).
+                    put("wayPointMaxDistance", hints.getDouble("way_point_max_distance", 1d));
+            GraphHopperServlet.limitHint(request, "max_visited_nodes",
+                    maxVisitedNodes > 0 ? maxVisitedNodes : hopper.getMaxVisitedNodes());
+            GraphHopperServlet.limitHint(request, "timeout", timeout > 0 ? timeout : hopper.getRoutingTimeout());
+            entry.response = route(hopper, request);
+        } catch (RuntimeException ex)
+        {
+            entry.response = new GHResponse();
+            entry.response.addError(ex);
+        }
+        entry.nanos = System.nanoTime() - start;
+        return entry;
+    }
+
+    /**
+     * Every route of a batch has to acquire the same budget as a single /route request, so the
+     * batch pool cannot exceed the concurrency limit of the admission control.
+     */
+    private GHResponse route( GraphHopper hopper, GHRequest request )
+    {
+        if (admissionFilter == null)
+            return routeMetrics.route(hopper, request);
+
+        AdmissionFilter.Budget budget = admissionFilter.getExpensive();
+        boolean acquired;
+        try
+        {
+            acquired = budget.acquire();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired)
+            throw new IllegalStateException("Server is overloaded, try again later");
+
+        try
+        {
+            return routeMetrics.route(hopper, request);
+        } finally
+        {
+            budget.release();
+        }
+    }
+
+    static GHRequest createRequest( JSONObject json, BatchDefaults defaults )
+    {
+        JSONArray points = json.optJSONArray("points");
+        if (points == null || points.length() < 2)
+            throw new IllegalArgumentException("At least two points have to be specified");
+
+        GHRequest request = new GHRequest();
+        for (int i = 0; i < points.length(); i++)
+        {
+            JSONArray point = points.getJSONArray(i);
+            GHPoint ghPoint = new GHPoint(point.getDouble(1), point.getDouble(0));
+            if (!ghPoint.isValid())
+                throw new IllegalArgumentException("Invalid point " + point);
+
+            request.addPoint(ghPoint);
+        }
+
+        request.setWeighting(json.optString("weighting", defaults.weighting)).
+                setAlgorithm(json.optString("algorithm", defaults.algorithm)).
+                setLocale(json.optString("locale", defaults.locale));
+        WeightingMap hints = request.getHints();
+        for (Object key : json.keySet())
+        {
+            if (!"points".equals(key))
+                hints.put((String) key, json.get((String) key));
+        }
+        return request;
+    }
+
+    static class BatchDefaults
+    {
+        final String vehicle;
+        final String weighting;
+        final String algorithm;
+        final String locale;
+        final boolean instructions;
+        final boolean calcPoints;
+        final boolean elevation;
+
+        BatchDefaults( String vehicle, String weighting, String algorithm, String locale,
+                       boolean instructions, boolean calcPoints, boolean elevation )
+        {
+            this.vehicle = vehicle;
+            this.weighting = weighting;
+            this.algorithm = algorithm;
+            this.locale = locale;
+            this.instructions = instructions;
+            this.calcPoints = calcPoints;
+            this.elevation = elevation;
+        }
+    }
+
+    static class BatchEntry
+    {
+        String vehicle;
+        GHResponse response;
+        boolean instructions;
+        boolean calcPoints;
+        boolean elevation;
+        long nanos;
+    }
+
+    /**
+     * Ignores the flush after every serialized route, the results are only flushed if the next one
+     * is not yet calculated or the batch is finished.
+     */
+    private static class BatchOutputStream extends BufferedOutputStream
+    {
+        BatchOutputStream( OutputStream out )
+        {
+            super(out, 16 * 1024);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        void flushNow() throws IOException
+        {
+            super.flush();
+        }
+    }
+}
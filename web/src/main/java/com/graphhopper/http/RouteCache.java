@@ -0,0 +1,248 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionList;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.*;
+
+/**
+ * Caches route responses of popular requests. The key contains the points rounded to the
+ * configured number of decimal places and all other parameters of the request except the ones
+ * which only influence the serialization. The cache is bounded by the estimated size of the
+ * responses in bytes and evicts the least recently used entries. Entries are only valid for the
+ * current GraphHopper instance and the cache is cleared after a reload.
+ */
+public class RouteCache
+{
+    public static final int FULL_PRECISION = -1;
+    private static final Set<String> IGNORED_PARAMS = new HashSet<String>(Arrays.asList(
+            "point", "heading", "type", "callback", "debug", "pretty", "points_encoded", "key"));
+    private final GraphHopperSwitch hopperSwitch;
+    private final long maxBytes;
+    private final int precision;
+    private final LinkedHashMap<String, Entry> map = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+    private GraphHopper owner;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes the maximum estimated size of all cached responses, 0 disables the cache
+     * @param precision the number of decimal places of the coordinates in the key
+     */
+    public RouteCache( GraphHopperSwitch hopperSwitch, long maxBytes, int precision )
+    {
+        this.hopperSwitch = hopperSwitch;
+        this.maxBytes = maxBytes;
+        this.precision = precision;
+    }
+
+    public boolean isEnabled()
+    {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return the normalized key of the specified request
+     */
+    public String createKey( GHRequest request )
+    {
+        return createKey(request, precision);
+    }
+
+    /**
+     * @param precision the number of decimal places of the coordinates or FULL_PRECISION to use
+     * them unrounded
+     * @return a key which is identical for requests leading to the same response
+     */
+    public static String createKey( GHRequest request, int precision )
+    {
+        double factor = Math.pow(10, precision);
+        StringBuilder sb = new StringBuilder();
+        List<GHPoint> points = request.getPoints();
+        for (int i = 0; i < points.size(); i++)
+        {
+            GHPoint point = points.get(i);
+            if (precision == FULL_PRECISION)
+                sb.append(point.lat).append(',').append(point.lon);
+            else
+                sb.append(Math.round(point.lat * factor)).append(',').append(Math.round(point.lon * factor));
+            if (request.hasFavoredHeading(i))
+                sb.append(',').append(request.getFavoredHeading(i));
+            sb.append(';');
+        }
+        sb.append(request.getVehicle()).append(';').
+                append(request.getWeighting()).append(';').
+                append(request.getAlgorithm()).append(';').
+                append(request.getLocale());
+
+        // sorted to make the key independent of the parameter order
+        Map<String, String> hints = new TreeMap<String, String>(request.getHints().toMap());
+        for (Map.Entry<String, String> e : hints.entrySet())
+        {
+            if (!IGNORED_PARAMS.contains(e.getKey()))
+                sb.append(';').append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the cached response or null if not cached or the specified instance is not the
+     * current one
+     */
+    public synchronized GHResponse get( GraphHopper hopper, String key )
+    {
+        if (!isEnabled() || !checkOwner(hopper))
+            return null;
+
+        Entry entry = map.get(key);
+        if (entry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    /**
+     * Caches the response calculated with the specified instance. Responses with errors and
+     * responses of an old instance are ignored.
+     */
+    public synchronized void put( GraphHopper hopper, String key, GHResponse response )
+    {
+        if (!isEnabled() || response.hasErrors() || !checkOwner(hopper))
+            return;
+
+        long entryBytes = estimateBytes(key, response);
+        // a single huge response would clear the whole cache
+        if (entryBytes > maxBytes / 4)
+            return;
+
+        Entry old = map.put(key, new Entry(response, entryBytes));
+        if (old != null)
+            bytes -= old.bytes;
+        bytes += entryBytes;
+
+        Iterator<Entry> iter = map.values().iterator();
+        while (bytes > maxBytes && iter.hasNext())
+        {
+            bytes -= iter.next().bytes;
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Clears the cache if the current instance changed.
+     *
+     * @return true if the specified instance is the current one
+     */
+    private boolean checkOwner( GraphHopper hopper )
+    {
+        GraphHopper current = hopperSwitch.get();
+        if (owner != current)
+        {
+            clear();
+            owner = current;
+        }
+        return hopper == current;
+    }
+
+    public synchronized void clear()
+    {
+        map.clear();
+        bytes = 0;
+    }
+
+    static long estimateBytes( String key, GHResponse response )
+    {
+        int pointBytes = response.getPoints().is3D() ? 24 : 16;
+        long tmp = 200 + 2 * key.length() + (long) pointBytes * response.getPoints().getSize();
+        if (!response.hasInstructions())
+            return tmp;
+
+        InstructionList instructions = response.getInstructions();
+        for (int i = 0; i < instructions.size(); i++)
+        {
+            Instruction instruction = instructions.get(i);
+            tmp += 100 + pointBytes * instruction.getPoints().getSize();
+            if (instruction.getName() != null)
+                tmp += 2 * instruction.getName().length();
+        }
+        return tmp;
+    }
+
+    public synchronized int getSize()
+    {
+        return map.size();
+    }
+
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * @return the ratio of hits to all lookups or 0 if there were none
+     */
+    public synchronized double getHitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static class Entry
+    {
+        final GHResponse response;
+        final long bytes;
+
+        Entry( GHResponse response, long bytes )
+        {
+            this.response = response;
+            this.bytes = bytes;
+        }
+    }
+}
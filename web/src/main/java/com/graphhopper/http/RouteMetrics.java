@@ -0,0 +1,115 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.RoutingBudgetExceededException;
+import com.graphhopper.util.RouteTrace;
+
+/**
+ * Records the latencies of the routing steps and the visited nodes of route requests, tagged by
+ * vehicle, weighting and algorithm.
+ */
+public class RouteMetrics
+{
+    static final String STAGE_SECONDS = "graphhopper_route_stage_seconds";
+    static final String VISITED_NODES = "graphhopper_route_visited_nodes";
+    static final String REQUESTS = "graphhopper_route_requests_total";
+    private static final double NANOS = 1e-9;
+    private final MetricsRegistry registry;
+
+    public RouteMetrics( MetricsRegistry registry )
+    {
+        this.registry = registry;
+        registry.setHelp(STAGE_SECONDS, "Latency of the steps of successful route requests.");
+        registry.setHelp(VISITED_NODES, "Nodes visited by the routing algorithm per route request.");
+        registry.setHelp(REQUESTS, "Route requests by status, aborted if the visited nodes or time limit was exceeded.");
+    }
+
+    public MetricsRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * Calculates the route and records the latencies of the routing steps.
+     */
+    public GHResponse route( GraphHopper hopper, GHRequest request )
+    {
+        GHResponse rsp = hopper.route(request);
+        if (rsp.hasErrors())
+            return rsp;
+
+        RouteTrace trace = rsp.getTrace();
+        String[] labels = createLabels(request.getVehicle(), trace);
+        for (int phase = 0; phase < RouteTrace.PHASES; phase++)
+        {
+            registry.getHistogram(STAGE_SECONDS, NANOS, withStage(RouteTrace.getPhaseName(phase), labels)).
+                    record(trace.getNanos(phase));
+        }
+        registry.getHistogram(VISITED_NODES, 1, labels).record(trace.getCount(RouteTrace.VISITED_NODES));
+        return rsp;
+    }
+
+    /**
+     * Records the outcome of a route request including cached and shared responses.
+     *
+     * @param serializeNanos the time to write the response
+     * @param totalNanos the time of the whole request
+     */
+    public void recordRequest( String vehicle, GHResponse rsp, long serializeNanos, long totalNanos )
+    {
+        if (rsp.hasErrors())
+        {
+            // no labels from the request to avoid arbitrary label values
+            boolean aborted = rsp.getErrors().get(0) instanceof RoutingBudgetExceededException;
+            registry.getCounter(REQUESTS, "status", aborted ? "aborted" : "error").incrementAndGet();
+            return;
+        }
+
+        registry.getCounter(REQUESTS, "status", "ok").incrementAndGet();
+        String[] labels = createLabels(vehicle, rsp.getTrace());
+        registry.getHistogram(STAGE_SECONDS, NANOS, withStage("serialize", labels)).record(serializeNanos);
+        registry.getHistogram(STAGE_SECONDS, NANOS, withStage("total", labels)).record(totalNanos);
+    }
+
+    /**
+     * Uses the effective weighting and algorithm from the trace as the requested values are not
+     * normalized.
+     */
+    private static String[] createLabels( String vehicle, RouteTrace trace )
+    {
+        return new String[]
+        {
+            "vehicle", vehicle.toLowerCase(),
+            "weighting", trace.getWeighting(),
+            "algorithm", trace.getAlgorithm().toLowerCase()
+        };
+    }
+
+    private static String[] withStage( String stage, String[] labels )
+    {
+        String[] res = new String[labels.length + 2];
+        res[0] = "stage";
+        res[1] = stage;
+        System.arraycopy(labels, 0, res, 2, labels.length);
+        return res;
+    }
+}
@@ -19,6 +19,9 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.PointList;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -35,6 +38,22 @@ public interface RouteSerializer
                                 boolean calcPoints, boolean pointsEncoded,
                                 boolean includeElevation, boolean enableInstructions );
 
+    /**
+     * This method writes the same JSON as toJSON directly into the specified stream without
+     * creating it in memory first. The took time in milliseconds is added to the info object.
+     */
+    void writeJSON( GHResponse response, long took,
+                    boolean calcPoints, boolean pointsEncoded,
+                    boolean includeElevation, boolean enableInstructions,
+                    OutputStream out ) throws IOException;
+
+    /**
+     * This method writes the specified response in the compact BinaryFormat into the stream.
+     */
+    void writeBinary( GHResponse response,
+                      boolean calcPoints, boolean includeElevation, boolean enableInstructions,
+                      OutputStream out ) throws IOException;
+
     /**
      * This method returns either a Map containing the GeoJSON of the specified points OR the string
      * encoded polyline of it.
@@ -19,9 +19,15 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
+import com.graphhopper.util.RoundaboutInstruction;
 import com.graphhopper.util.shapes.BBox;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
 
 /**
@@ -91,6 +97,190 @@ public class SimpleRouteSerializer implements RouteSerializer
         return json;
     }
 
+    @Override
+    public void writeJSON( GHResponse rsp, long took,
+                           boolean calcPoints, boolean pointsEncoded,
+                           boolean includeElevation, boolean enableInstructions,
+                           OutputStream out ) throws IOException
+    {
+        JsonStreamWriter writer = JsonStreamWriter.get(out);
+        writer.startObject();
+        if (rsp.hasErrors())
+        {
+            writer.name("message").value(rsp.getErrors().get(0).getMessage());
+            writer.name("hints").startArray();
+            for (Throwable t : rsp.getErrors())
+            {
+                writer.startObject().
+                        name("message").value(t.getMessage()).
+                        name("details").value(t.getClass().getName()).
+                        endObject();
+            }
+            writer.endArray();
+        } else
+        {
+            writer.name("info").startObject().
+                    name("copyrights").startArray().value("GraphHopper").value("OpenStreetMap contributors").endArray().
+                    name("took").value(took).
+                    endObject();
+            writer.name("hints").value(rsp.getHints().toMap());
+
+            writer.name("paths").startArray().startObject();
+            writer.name("distance").value(Helper.round(rsp.getDistance(), 3));
+            writer.name("weight").value(Helper.round6(rsp.getDistance()));
+            writer.name("time").value(rsp.getTime());
+            if (calcPoints)
+            {
+                writer.name("points_encoded").value(pointsEncoded);
+
+                PointList points = rsp.getPoints();
+                if (points.getSize() >= 2)
+                {
+                    BBox maxBounds2D = new BBox(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
+                    writer.name("bbox").value(rsp.calcRouteBBox(maxBounds2D).toGeoJson());
+                }
+
+                writer.name("points");
+                writePoints(writer, points, pointsEncoded, includeElevation);
+
+                if (enableInstructions)
+                {
+                    writer.name("instructions");
+                    writeInstructions(writer, rsp.getInstructions());
+                }
+            }
+            writer.endObject().endArray();
+        }
+        writer.endObject();
+        writer.finish();
+    }
+
+    @Override
+    public void writeBinary( GHResponse rsp,
+                             boolean calcPoints, boolean includeElevation, boolean enableInstructions,
+                             OutputStream out ) throws IOException
+    {
+        BinaryFormat.Output output = BinaryFormat.getOutput();
+        if (rsp.hasErrors())
+        {
+            output.writeVarLong(rsp.getErrors().size());
+            for (Throwable t : rsp.getErrors())
+            {
+                output.writeString(t.getClass().getName()).writeString(t.getMessage());
+            }
+            output.writeTo(out, BinaryFormat.TYPE_ERROR);
+            return;
+        }
+
+        boolean instructions = calcPoints && enableInstructions;
+        int flags = (calcPoints ? BinaryFormat.FLAG_POINTS : 0)
+                | (instructions ? BinaryFormat.FLAG_INSTRUCTIONS : 0)
+                | (includeElevation ? BinaryFormat.FLAG_ELEVATION : 0);
+        output.writeByte(flags).
+                writeDouble(Helper.round(rsp.getDistance(), 3)).
+                writeVarLong(rsp.getTime());
+        if (calcPoints)
+        {
+            PointList points = rsp.getPoints();
+            output.writeVarLong(points.getSize()).writePoints(points, includeElevation);
+        }
+
+        if (instructions)
+        {
+            InstructionList instructionList = rsp.getInstructions();
+            output.writeVarLong(instructionList.size());
+            int pointsIndex = 0;
+            for (int counter = 0; counter < instructionList.size(); counter++)
+            {
+                Instruction instruction = instructionList.get(counter);
+                int tmpIndex = pointsIndex + instruction.getPoints().size();
+                if (counter + 1 == instructionList.size())
+                    tmpIndex--;
+
+                output.writeZigZag(instruction.getSign()).
+                        writeString(instructionList.createText(instruction)).
+                        writeVarLong(pointsIndex).
+                        writeVarLong(tmpIndex - pointsIndex).
+                        writeDouble(Helper.round(instruction.getDistance(), 3)).
+                        writeVarLong(instruction.getTime());
+                pointsIndex = tmpIndex;
+
+                InstructionAnnotation ia = instruction.getAnnotation();
+                if (ia.isEmpty())
+                    output.writeByte(0);
+                else
+                    output.writeByte(1).writeZigZag(ia.getImportance()).writeString(ia.getMessage());
+
+                int sign = instruction.getSign();
+                if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
+                    output.writeVarLong(instruction instanceof RoundaboutInstruction
+                            ? ((RoundaboutInstruction) instruction).getExitNumber() : 0);
+            }
+        }
+        output.writeTo(out, BinaryFormat.TYPE_ROUTE);
+    }
+
+    private void writePoints( JsonStreamWriter writer, PointList points, boolean pointsEncoded,
+                              boolean includeElevation ) throws IOException
+    {
+        if (pointsEncoded)
+        {
+            writer.value(WebHelper.encodePolyline(points, includeElevation, writer.getTmpString()));
+            return;
+        }
+
+        writer.startObject().name("type").value("LineString").name("coordinates").startArray();
+        for (int i = 0; i < points.getSize(); i++)
+        {
+            writer.startArray().
+                    value(Helper.round6(points.getLongitude(i))).
+                    value(Helper.round6(points.getLatitude(i)));
+            if (includeElevation)
+                writer.value(Helper.round2(points.getElevation(i)));
+            writer.endArray();
+        }
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Writes the same as InstructionList.createJson
+     */
+    private void writeInstructions( JsonStreamWriter writer, InstructionList instructions ) throws IOException
+    {
+        writer.startArray();
+        int pointsIndex = 0;
+        for (int counter = 0; counter < instructions.size(); counter++)
+        {
+            Instruction instruction = instructions.get(counter);
+            writer.startObject();
+            writer.name("text").value(instructions.createText(instruction));
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+            {
+                writer.name("annotation_text").value(ia.getMessage());
+                writer.name("annotation_importance").value(ia.getImportance());
+            }
+
+            writer.name("time").value(instruction.getTime());
+            writer.name("distance").value(Helper.round(instruction.getDistance(), 3));
+            writer.name("sign").value(instruction.getSign());
+            for (Map.Entry<String, Object> entry : instruction.getExtraInfoJSON().entrySet())
+            {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+
+            int tmpIndex = pointsIndex + instruction.getPoints().size();
+            // the last instruction should not point to the next instruction
+            if (counter + 1 == instructions.size())
+                tmpIndex--;
+
+            writer.name("interval").startArray().value(pointsIndex).value(tmpIndex).endArray();
+            pointsIndex = tmpIndex;
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
     @Override
     public Object createPoints( PointList points, boolean pointsEncoded, boolean includeElevation )
     {
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.SpeedOverlay;
+import com.graphhopper.util.Helper;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Updates the speed overlay of a vehicle, e.g. via
+ * <code>curl -X POST -H "Content-Type: text/plain" --data-binary @speeds.csv
+ * "http://localhost:8989/traffic?vehicle=car"</code>. Every line of the body has the format
+ * <code>edgeId,forwardSpeed,backwardSpeed</code> where forward is the direction from the lower to
+ * the higher node id. An empty speed removes the override. With clear=true all existing overrides
+ * are removed before. Only available if routing.speedOverlay=true.
+ */
+public class TrafficServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperSwitch hopperSwitch;
+
+    @Override
+    public void doPost( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        // read the body before the parameters to avoid that it is interpreted as form data
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = req.getReader();
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                lines.add(line);
+        }
+
+        String vehicle = getParam(req, "vehicle", "car");
+        boolean clear = getBooleanParam(req, "clear", false);
+        GraphHopper hopper = hopperSwitch.acquire();
+        try
+        {
+            if (!hopper.getEncodingManager().supports(vehicle))
+            {
+                writeError(res, SC_BAD_REQUEST, "Vehicle not supported: " + vehicle);
+                return;
+            }
+
+            SpeedOverlay overlay = hopper.getSpeedOverlay(vehicle);
+            int[] edges = new int[lines.size()];
+            double[] forward = new double[lines.size()];
+            double[] backward = new double[lines.size()];
+            // parse everything before the first update so that an invalid request changes nothing
+            for (int i = 0; i < lines.size(); i++)
+            {
+                String[] values = lines.get(i).split(",", -1);
+                try
+                {
+                    if (values.length != 3)
+                        throw new IllegalArgumentException("expected 3 values");
+
+                    edges[i] = Integer.parseInt(values[0].trim());
+                    if (edges[i] < 0 || edges[i] >= overlay.getEdgeCount())
+                        throw new IllegalArgumentException("edge out of bounds");
+
+                    forward[i] = parseSpeed(values[1]);
+                    backward[i] = parseSpeed(values[2]);
+                } catch (IllegalArgumentException ex)
+                {
+                    writeError(res, SC_BAD_REQUEST, "Invalid line " + (i + 1) + " '" + lines.get(i) + "': "
+                            + ex.getMessage());
+                    return;
+                }
+            }
+
+            if (clear)
+                overlay.clear();
+
+            for (int i = 0; i < edges.length; i++)
+            {
+                overlay.setSpeed(edges[i], forward[i], backward[i]);
+            }
+
+            logger.info("updated " + edges.length + " speeds for " + vehicle + (clear ? " after clear" : "")
+                    + " from " + req.getRemoteAddr());
+            JSONObject json = new JSONObject();
+            json.put("vehicle", vehicle);
+            json.put("updated", edges.length);
+            json.put("cleared", clear);
+            writeJson(req, res, json);
+        } finally
+        {
+            hopperSwitch.release(hopper);
+        }
+    }
+
+    private static double parseSpeed( String str )
+    {
+        str = str.trim();
+        if (Helper.isEmpty(str))
+            return Double.NaN;
+
+        return Double.parseDouble(str);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Calculates routes before the server accepts requests so that the JIT compiler has optimized the
+ * routing code and the first users do not see the latencies of the interpreter. The routes are
+ * replayed from the query strings in a log of the GraphHopperServlet or created randomly within
+ * the graph bounds.
+ */
+public class WarmUp
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final GraphHopper hopper;
+    private String queryLog = "";
+    private long maxTime = 30000;
+    private int maxQueries = 10000;
+    private int windowSize = 100;
+    private int queries;
+    private int failedQueries;
+    private double firstMeanMillis;
+    private double lastMeanMillis;
+
+    public WarmUp( GraphHopper hopper )
+    {
+        this.hopper = hopper;
+    }
+
+    /**
+     * Specifies the log file (optionally gzipped) with the route requests to replay. If empty
+     * random routes are calculated.
+     */
+    public WarmUp setQueryLog( String queryLog )
+    {
+        this.queryLog = queryLog;
+        return this;
+    }
+
+    /**
+     * Stops the warm up after the specified milliseconds.
+     */
+    public WarmUp setMaxTime( long maxTime )
+    {
+        this.maxTime = maxTime;
+        return this;
+    }
+
+    public WarmUp setMaxQueries( int maxQueries )
+    {
+        this.maxQueries = maxQueries;
+        return this;
+    }
+
+    /**
+     * The number of queries of which the mean latency is compared at the start and the end.
+     */
+    public WarmUp setWindowSize( int windowSize )
+    {
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public int getQueries()
+    {
+        return queries;
+    }
+
+    /**
+     * @return the number of queries which threw an exception, e.g. because the logged weighting
+     * is not prepared for this graph
+     */
+    public int getFailedQueries()
+    {
+        return failedQueries;
+    }
+
+    /**
+     * @return the mean latency of the first queries
+     */
+    public double getFirstMeanMillis()
+    {
+        return firstMeanMillis;
+    }
+
+    /**
+     * @return the mean latency of the last queries
+     */
+    public double getLastMeanMillis()
+    {
+        return lastMeanMillis;
+    }
+
+    public void run()
+    {
+        long start = System.nanoTime();
+        long end = start + maxTime * 1000000L;
+        long[] window = new long[windowSize];
+        long windowSum = 0;
+        queries = 0;
+        failedQueries = 0;
+        BufferedReader reader = null;
+        try
+        {
+            if (!Helper.isEmpty(queryLog))
+                reader = createReader(queryLog);
+
+            Random rand = new Random(0);
+            BBox bounds = reader == null ? hopper.getGraphHopperStorage().getBounds() : null;
+            while (queries < maxQueries && System.nanoTime() < end)
+            {
+                GHRequest request;
+                if (reader == null)
+                {
+                    request = new GHRequest(randomLat(rand, bounds), randomLon(rand, bounds),
+                            randomLat(rand, bounds), randomLon(rand, bounds));
+                } else
+                {
+                    String line = reader.readLine();
+                    if (line == null)
+                        break;
+
+                    request = parseRequest(line);
+                    if (request == null)
+                        continue;
+                }
+
+                // a single long route must not exceed the time of the warm up
+                long queryStart = System.nanoTime();
+                long remainingMillis = Math.max(1, (end - queryStart) / 1000000L);
+                long timeout = request.getHints().getLong("timeout", 0);
+                request.getHints().put("timeout", timeout > 0 ? Math.min(timeout, remainingMillis) : remainingMillis);
+                try
+                {
+                    // errors like unreachable points are irrelevant here
+                    hopper.route(request);
+                } catch (RuntimeException ex)
+                {
+                    // e.g. a logged weighting without CH preparation, the warm up has to continue
+                    failedQueries++;
+                    continue;
+                }
+                long nanos = System.nanoTime() - queryStart;
+
+                int index = queries % windowSize;
+                windowSum += nanos - window[index];
+                window[index] = nanos;
+                queries++;
+                if (queries == windowSize)
+                    firstMeanMillis = windowSum / 1e6 / windowSize;
+            }
+        } catch (IOException ex)
+        {
+            logger.error("Cannot read query log " + queryLog, ex);
+        } finally
+        {
+            Helper.close(reader);
+        }
+
+        if (failedQueries > 0)
+            logger.warn("warm up skipped " + failedQueries + " routes which could not be calculated");
+
+        int lastCount = Math.min(queries, windowSize);
+        if (lastCount == 0)
+        {
+            logger.info("warm up did not calculate any route");
+            return;
+        }
+
+        lastMeanMillis = windowSum / 1e6 / lastCount;
+        if (queries < windowSize)
+            firstMeanMillis = lastMeanMillis;
+
+        float seconds = (System.nanoTime() - start) / 1e9f;
+        logger.info("warm up with " + queries + (reader == null ? " random" : " logged") + " routes took " + seconds
+                + "s, mean latency of the first " + lastCount + " routes: " + Helper.round2(firstMeanMillis)
+                + "ms, of the last " + lastCount + ": " + Helper.round2(lastMeanMillis) + "ms, converged by factor "
+                + Helper.round2(lastMeanMillis > 0 ? firstMeanMillis / lastMeanMillis : 1));
+    }
+
+    private static BufferedReader createReader( String file ) throws IOException
+    {
+        InputStream is = new FileInputStream(file);
+        if (file.endsWith(".gz"))
+            is = new GZIPInputStream(is);
+
+        return new BufferedReader(new InputStreamReader(is, Helper.UTF_CS));
+    }
+
+    /**
+     * Creates the route request from a log line of the GraphHopperServlet. Only the query string
+     * is used, so the line can have any prefix e.g. from a different logger name or layout.
+     * <p>
+     * @return null if the line does not contain a route request with at least two points
+     */
+    static GHRequest parseRequest( String logLine )
+    {
+        String queryString = null;
+        for (String token : logLine.split(" "))
+        {
+            if (token.startsWith("point=") || token.contains("&point="))
+            {
+                queryString = token;
+                break;
+            }
+        }
+        if (queryString == null)
+            return null;
+
+        GHRequest request = new GHRequest();
+        for (String param : queryString.split("&"))
+        {
+            int equalIndex = param.indexOf('=');
+            if (equalIndex <= 0)
+                continue;
+
+            String key = param.substring(0, equalIndex);
+            String value = decode(param.substring(equalIndex + 1));
+            if ("point".equals(key))
+            {
+                GHPoint point = GHPoint.parse(value);
+                if (point != null)
+                    request.addPoint(point);
+            } else if ("vehicle".equals(key))
+            {
+                request.setVehicle(value);
+            } else if ("weighting".equals(key))
+            {
+                request.setWeighting(value);
+            } else if ("algorithm".equals(key))
+            {
+                request.setAlgorithm(value);
+            } else
+            {
+                request.getHints().put(key, value);
+            }
+        }
+
+        if (request.getPoints().size() < 2)
+            return null;
+
+        return request;
+    }
+
+    private static String decode( String str )
+    {
+        try
+        {
+            return URLDecoder.decode(str, "UTF-8");
+        } catch (Exception ex)
+        {
+            return str;
+        }
+    }
+
+    private static double randomLat( Random rand, BBox bounds )
+    {
+        return bounds.minLat + rand.nextDouble() * (bounds.maxLat - bounds.minLat);
+    }
+
+    private static double randomLon( Random rand, BBox bounds )
+    {
+        return bounds.minLon + rand.nextDouble() * (bounds.maxLon - bounds.minLon);
+    }
+}
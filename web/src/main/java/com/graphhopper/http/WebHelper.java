@@ -108,7 +108,14 @@ public class WebHelper
 
     public static String encodePolyline( PointList poly, boolean includeElevation )
     {
-        StringBuilder sb = new StringBuilder();
+        return encodePolyline(poly, includeElevation, new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the encoded polyline to the specified builder, which makes it possible to reuse it.
+     */
+    public static StringBuilder encodePolyline( PointList poly, boolean includeElevation, StringBuilder sb )
+    {
         int size = poly.getSize();
         int prevLat = 0;
         int prevLon = 0;
@@ -128,7 +135,7 @@ public class WebHelper
                 prevEle = num;
             }
         }
-        return sb.toString();
+        return sb;
     }
 
     private static void encodeNumber( StringBuilder sb, int num )
@@ -0,0 +1,150 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class AdmissionFilterTest
+{
+    @Test
+    public void testBudget() throws Exception
+    {
+        AdmissionFilter.Budget budget = new AdmissionFilter.Budget(2, 0, 10);
+        assertTrue(budget.acquire());
+        assertTrue(budget.acquire());
+        assertEquals(2, budget.getActive());
+
+        // no queue
+        assertFalse(budget.acquire());
+        assertEquals(1, budget.getRejected());
+
+        budget.release();
+        assertTrue(budget.acquire());
+    }
+
+    @Test
+    public void testBudgetWaitsForFreeSlot() throws Exception
+    {
+        final AdmissionFilter.Budget budget = new AdmissionFilter.Budget(1, 1, 5000);
+        assertTrue(budget.acquire());
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                } catch (InterruptedException ex)
+                {
+                }
+                budget.release();
+            }
+        };
+        thread.start();
+        assertTrue(budget.acquire());
+        assertEquals(0, budget.getQueued());
+        assertEquals(0, budget.getRejected());
+        thread.join();
+    }
+
+    @Test
+    public void testBudgetServesQueuedRequestsFirst() throws Exception
+    {
+        final AdmissionFilter.Budget budget = new AdmissionFilter.Budget(1, 1, 5000);
+        assertTrue(budget.acquire());
+        final AtomicBoolean waiterAcquired = new AtomicBoolean();
+        Thread waiter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    waiterAcquired.set(budget.acquire());
+                } catch (InterruptedException ex)
+                {
+                }
+            }
+        };
+        waiter.start();
+        while (waiter.getState() != Thread.State.TIMED_WAITING)
+        {
+            Thread.sleep(1);
+        }
+
+        // a new request must not take the freed slot away from the queued one
+        budget.release();
+        assertFalse(budget.acquire());
+        waiter.join();
+        assertTrue(waiterAcquired.get());
+        assertEquals(1, budget.getRejected());
+    }
+
+    @Test
+    public void testBudgetWaitTimeout() throws Exception
+    {
+        AdmissionFilter.Budget budget = new AdmissionFilter.Budget(1, 5, 10);
+        assertTrue(budget.acquire());
+        assertFalse(budget.acquire());
+        assertEquals(1, budget.getRejected());
+        assertEquals(0, budget.getQueued());
+    }
+
+    @Test
+    public void testExpensivePaths()
+    {
+        AdmissionFilter filter = new AdmissionFilter(new AdmissionFilter.Budget(1, 0, 0), new AdmissionFilter.Budget(1, 0, 0));
+        assertTrue(filter.isExpensive("/route"));
+        assertTrue(filter.isExpensive("/match"));
+        assertFalse(filter.isExpensive("/nearest"));
+        assertFalse(filter.isExpensive("/info"));
+        // the routes of a batch acquire the expensive budget one by one
+        assertFalse(filter.isExpensive("/route/batch"));
+
+        filter.setExpensivePaths("/route, /nearest");
+        assertTrue(filter.isExpensive("/nearest"));
+        assertFalse(filter.isExpensive("/match"));
+    }
+
+    @Test
+    public void testMaxPerIP()
+    {
+        AdmissionFilter filter = new AdmissionFilter(new AdmissionFilter.Budget(1, 0, 0), new AdmissionFilter.Budget(1, 0, 0));
+        assertTrue(filter.acquireIP("1.2.3.4"));
+        assertTrue(filter.acquireIP("1.2.3.4"));
+
+        filter.setMaxPerIP(2, "127.0.0.*");
+        assertTrue(filter.acquireIP("1.2.3.4"));
+        assertTrue(filter.acquireIP("1.2.3.4"));
+        assertFalse(filter.acquireIP("1.2.3.4"));
+        assertTrue(filter.acquireIP("1.2.3.5"));
+
+        filter.releaseIP("1.2.3.4");
+        assertTrue(filter.acquireIP("1.2.3.4"));
+
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(filter.acquireIP("127.0.0.1"));
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 
 import static org.junit.Assert.assertEquals;
@@ -112,6 +113,12 @@ public class BaseServletTester
         return "http://" + host + ":" + port + "/nearest";
     }
 
+    protected String getTestMatchAPIUrl()
+    {
+        String host = "localhost";
+        return "http://" + host + ":" + port + "/match";
+    }
+
     protected String queryString( String query, int code ) throws Exception
     {
         String resQuery = "";
@@ -155,4 +162,22 @@ public class BaseServletTester
         Downloader downloader = new Downloader("web integration tester");
         return new JSONObject(downloader.downloadAsString(url, true));
     }
+
+    protected JSONObject nearestPost( String body ) throws Exception
+    {
+        return post(getTestNearestAPIUrl(), body);
+    }
+
+    protected JSONObject post( String url, String body ) throws Exception
+    {
+        Downloader downloader = new Downloader("web integration tester");
+        HttpURLConnection conn = downloader.createConnection(url);
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "text/plain; charset=UTF-8");
+        OutputStream out = conn.getOutputStream();
+        out.write(body.getBytes(Helper.UTF_CS));
+        out.close();
+        return new JSONObject(Helper.isToString(downloader.fetch(conn, true)));
+    }
 }
@@ -0,0 +1,58 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import static org.junit.Assert.*;
+
+public class GHServletModuleTest
+{
+    @Test
+    public void testReadConfigFile() throws Exception
+    {
+        File file = new File("./target/servlet-module-test.properties");
+        FileWriter writer = new FileWriter(file);
+        try
+        {
+            writer.write("web.admission.enabled=true\nrouting.speedOverlay=true\nweb.reloadAllowed=false\n");
+        } finally
+        {
+            writer.close();
+        }
+
+        try
+        {
+            GHServletModule module = new GHServletModule(new CmdArgs().
+                    put("config", file.getPath()).
+                    put("web.reloadAllowed", "true"));
+            assertTrue(module.args.getBool("web.admission.enabled", false));
+            assertTrue(module.args.getBool("routing.speedOverlay", false));
+            // arguments overwrite the config file
+            assertTrue(module.args.getBool("web.reloadAllowed", false));
+        } finally
+        {
+            Helper.removeDir(file);
+        }
+    }
+}
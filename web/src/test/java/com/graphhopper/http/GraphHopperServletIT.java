@@ -20,15 +20,28 @@ package com.graphhopper.http;
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopperAPI;
+import com.graphhopper.routing.RoutingBudgetExceededException;
 import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.RoundaboutInstruction;
 import com.graphhopper.util.shapes.GHPoint;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.WriterAppender;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -54,7 +67,10 @@ public class GraphHopperServletIT extends BaseServletTester
         CmdArgs args = new CmdArgs().
                 put("config", "../config-example.properties").
                 put("osmreader.osm", "../core/files/andorra.osm.pbf").
-                put("graph.location", dir);
+                put("graph.location", dir).
+                put("web.warmUp.time", "5000").
+                put("web.warmUp.maxQueries", "20").
+                put("web.maxPostSize", "100000");
         setUpJetty(args);
     }
 
@@ -70,6 +86,15 @@ public class GraphHopperServletIT extends BaseServletTester
         assertTrue("distance wasn't correct:" + distance, distance < 9500);
     }
 
+    @Test
+    public void testDebugInfo() throws Exception
+    {
+        JSONObject infoJson = query("point=42.554851,1.536198&point=42.510071,1.548128&debug=true", 200).
+                getJSONObject("info");
+        assertTrue(infoJson.has("took"));
+        assertTrue(infoJson.getString("debug"), infoJson.getString("debug").contains("algo"));
+    }
+
     @Test
     public void testQuerywithDirections() throws Exception
     {
@@ -115,6 +140,74 @@ public class GraphHopperServletIT extends BaseServletTester
         assertEquals("Elevation not supported!", json.getJSONArray("hints").getJSONObject(0).getString("message"));
     }
 
+    @Test
+    public void testMaxVisitedNodes() throws Exception
+    {
+        JSONObject json = query("point=42.554851,1.536198&point=42.510071,1.548128&max_visited_nodes=1", 400);
+        assertTrue(json.getString("message"), json.getString("message").contains("visited nodes"));
+        assertEquals(RoutingBudgetExceededException.class.getName(),
+                json.getJSONArray("hints").getJSONObject(0).getString("details"));
+
+        json = post(getTestRouteAPIUrl() + "/batch",
+                "{\"requests\": [{\"points\": [[1.536198, 42.554851], [1.548128, 42.510071]], \"max_visited_nodes\": 1}]}");
+        assertEquals(RoutingBudgetExceededException.class.getName(), json.getJSONArray("results").getJSONObject(0).
+                getJSONArray("hints").getJSONObject(0).getString("details"));
+    }
+
+    @Test
+    public void testWarmUpReadsServletLog() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        WriterAppender appender = new WriterAppender(new PatternLayout("%d [%t] %-5p %c - %m%n"), writer);
+        Logger servletLogger = Logger.getLogger(GHBaseServlet.class);
+        servletLogger.addAppender(appender);
+        try
+        {
+            query("point=42.554851,1.536198&point=42.510071,1.548128&vehicle=car", 200);
+        } finally
+        {
+            servletLogger.removeAppender(appender);
+        }
+
+        String line = null;
+        for (String str : writer.toString().split("\n"))
+        {
+            if (str.contains("point=42.554851"))
+                line = str;
+        }
+        assertNotNull(writer.toString(), line);
+        GHRequest request = WarmUp.parseRequest(line);
+        assertNotNull(line, request);
+        assertEquals(2, request.getPoints().size());
+        assertEquals(1.548128, request.getPoints().get(1).lon, 1e-6);
+        assertEquals("car", request.getVehicle());
+    }
+
+    @Test
+    public void testInfo() throws Exception
+    {
+        JSONObject json = new JSONObject(new Downloader("web integration tester").
+                downloadAsString(getTestRouteAPIUrl().replace("/route", "/info"), false));
+        assertEquals("car", json.getJSONArray("supported_vehicles").getString(0));
+        // no details of the server by default
+        assertFalse(json.has("graph_location"));
+        assertFalse(json.has("memory"));
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        query("point=42.554851,1.536198&point=42.510071,1.548128", 200);
+        String str = new Downloader("web integration tester").
+                downloadAsString(getTestRouteAPIUrl().replace("/route", "/metrics"), false);
+        assertTrue(str, str.contains("# TYPE graphhopper_route_stage_seconds summary"));
+        assertTrue(str, str.contains("graphhopper_route_stage_seconds_count{stage=\"algo\",vehicle=\"car\",weighting=\"fastest\",algorithm=\"dijkstrabich\"}"));
+        assertTrue(str, str.contains("graphhopper_route_stage_seconds_count{stage=\"serialize\",vehicle=\"car\""));
+        assertTrue(str, str.contains("graphhopper_route_visited_nodes{vehicle=\"car\""));
+        assertTrue(str, str.contains("graphhopper_route_requests_total{status=\"ok\"}"));
+        assertTrue(str, str.contains("graphhopper_route_coalesced_total 0"));
+    }
+
     @Test
     public void testGraphHopperWeb() throws Exception
     {
@@ -139,6 +232,51 @@ public class GraphHopperServletIT extends BaseServletTester
         assertEquals("At roundabout, take exit 2", instructions.get(3).get("text"));
     }
 
+    @Test
+    public void testGraphHopperWebBinary() throws Exception
+    {
+        GHRequest req = new GHRequest().
+                addPoint(new GHPoint(42.554851, 1.536198)).
+                addPoint(new GHPoint(42.531896, 1.553278)).
+                addPoint(new GHPoint(42.510071, 1.548128));
+        GraphHopperWeb hopper = new GraphHopperWeb();
+        assertTrue(hopper.load(getTestRouteAPIUrl()));
+        GHResponse jsonRsp = hopper.route(req);
+        GHResponse rsp = hopper.setBinary(true).route(req);
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().isEmpty());
+        assertEquals(jsonRsp.getDistance(), rsp.getDistance(), 1e-3);
+        assertEquals(jsonRsp.getTime(), rsp.getTime());
+        assertEquals(jsonRsp.getPoints().getSize(), rsp.getPoints().getSize());
+        assertEquals(jsonRsp.getPoints().getLatitude(10), rsp.getPoints().getLatitude(10), 1e-5);
+        assertEquals(jsonRsp.getInstructions().size(), rsp.getInstructions().size());
+        for (int i = 0; i < rsp.getInstructions().size(); i++)
+        {
+            Instruction expected = jsonRsp.getInstructions().get(i);
+            Instruction instruction = rsp.getInstructions().get(i);
+            assertEquals(expected.getName(), instruction.getName());
+            assertEquals(expected.getSign(), instruction.getSign());
+            assertEquals(expected.getDistance(), instruction.getDistance(), 1e-3);
+            assertEquals(expected.getPoints().size(), instruction.getPoints().size());
+        }
+        // the exit number is only available in the binary format
+        assertEquals(2, ((RoundaboutInstruction) rsp.getInstructions().get(3)).getExitNumber());
+
+        rsp = hopper.route(new GHRequest(0.0, 0.0, 0.0, 0.0));
+        assertFalse("Errors expected but not found.", rsp.getErrors().isEmpty());
+        assertTrue(rsp.getErrors().get(0) instanceof IllegalArgumentException);
+        // errors of the error handler are not in the binary format
+        hopper.setDownloader(new Downloader("web integration tester")
+        {
+            @Override
+            public HttpURLConnection createConnection( String urlStr ) throws IOException
+            {
+                return super.createConnection(urlStr + "&heading=abc");
+            }
+        });
+        rsp = hopper.route(req);
+        assertEquals("Unexpected response with status 500", rsp.getErrors().get(0).getMessage());
+    }
+
     @Test
     public void testGraphHopperWebRealExceptions()
     {
@@ -174,6 +312,92 @@ public class GraphHopperServletIT extends BaseServletTester
         // Exception
     }
 
+    @Test
+    public void testGraphHopperWebBatch() throws Exception
+    {
+        GraphHopperWeb hopper = new GraphHopperWeb();
+        assertTrue(hopper.load(getTestRouteAPIUrl()));
+        GHRequest viaReq = new GHRequest().
+                addPoint(new GHPoint(42.554851, 1.536198)).
+                addPoint(new GHPoint(42.531896, 1.553278)).
+                addPoint(new GHPoint(42.510071, 1.548128));
+        GHRequest noPointsReq = new GHRequest(42.554851, 1.536198, 42.510071, 1.548128);
+        noPointsReq.getHints().put("calcPoints", false).put("instructions", false);
+        List<GHResponse> rsps = hopper.routeBatch(Arrays.asList(
+                new GHRequest(42.554851, 1.536198, 42.510071, 1.548128),
+                new GHRequest(0.0, 0.0, 0.0, 0.0),
+                viaReq,
+                new GHRequest(42.554851, 1.536198, 42.510071, 1.548128).setVehicle("SPACE-SHUTTLE"),
+                noPointsReq));
+        assertEquals(5, rsps.size());
+
+        GHResponse single = hopper.route(new GHRequest(42.554851, 1.536198, 42.510071, 1.548128));
+        assertTrue(rsps.get(0).getErrors().toString(), rsps.get(0).getErrors().isEmpty());
+        assertEquals(single.getDistance(), rsps.get(0).getDistance(), 1e-3);
+        assertEquals(single.getPoints().getSize(), rsps.get(0).getPoints().getSize());
+
+        // failed entries do not affect the others
+        assertTrue(rsps.get(1).getErrors().get(0) instanceof IllegalArgumentException);
+        assertTrue(rsps.get(3).getErrors().get(0).getMessage(), rsps.get(3).getErrors().get(0).getMessage().
+                contains("Vehicle not supported"));
+
+        single = hopper.route(viaReq);
+        assertEquals(single.getDistance(), rsps.get(2).getDistance(), 1e-3);
+        assertEquals(single.getInstructions().size(), rsps.get(2).getInstructions().size());
+
+        assertTrue(rsps.get(4).getErrors().toString(), rsps.get(4).getErrors().isEmpty());
+        assertEquals(rsps.get(0).getDistance(), rsps.get(4).getDistance(), 1e-3);
+        assertEquals(0, rsps.get(4).getPoints().getSize());
+    }
+
+    @Test
+    public void testInvalidBatch() throws Exception
+    {
+        JSONObject json = post(getTestRouteAPIUrl() + "/batch", "{\"points\": []}");
+        assertTrue(json.getString("message"), json.getString("message").startsWith("Invalid batch request"));
+
+        json = post(getTestRouteAPIUrl() + "/batch", "{\"requests\": [{\"points\": [[1.536198, 42.554851]]}]}");
+        assertEquals(1, json.getJSONArray("results").length());
+        assertEquals("At least two points have to be specified",
+                json.getJSONArray("results").getJSONObject(0).getString("message"));
+
+        // an invalid entry fails on its own
+        json = post(getTestRouteAPIUrl() + "/batch", "{\"requests\": [1, {\"points\": [[1.536198, 42.554851], [1.548128, 42.510071]]}]}");
+        JSONArray results = json.getJSONArray("results");
+        assertEquals(2, results.length());
+        assertTrue(results.getJSONObject(0).has("message"));
+        assertTrue(results.getJSONObject(1).getJSONArray("paths").getJSONObject(0).getDouble("distance") > 9000);
+    }
+
+    @Test
+    public void testTooLargeBatch() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("{\"requests\": [");
+        for (int i = 0; i < 2000; i++)
+        {
+            if (i > 0)
+                sb.append(",");
+            sb.append("{\"points\": [[1.536198, 42.554851], [1.548128, 42.510071]]}");
+        }
+        String body = sb.append("]}").toString();
+        JSONObject json = post(getTestRouteAPIUrl() + "/batch", body);
+        assertEquals("Request body too large, maximum is 100000 bytes", json.getString("message"));
+
+        // without Content-Length the body is rejected while reading
+        Downloader downloader = new Downloader("web integration tester");
+        HttpURLConnection conn = downloader.createConnection(getTestRouteAPIUrl() + "/batch");
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setChunkedStreamingMode(4096);
+        conn.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        OutputStream out = conn.getOutputStream();
+        out.write(body.getBytes(Helper.UTF_CS));
+        out.close();
+        assertEquals(413, conn.getResponseCode());
+        json = new JSONObject(Helper.isToString(downloader.fetch(conn, true)));
+        assertEquals("Request body too large, maximum is 100000 bytes", json.getString("message"));
+    }
+
     @Test
     public void testGPX() throws Exception
     {
@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GraphHopperSwitchTest
+{
+    private static class ClosableHopper extends GraphHopper
+    {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+
+        @Override
+        public void close()
+        {
+            closed.set(true);
+        }
+    }
+
+    @Test
+    public void testSwapWaitsForInFlightRequests() throws Exception
+    {
+        ClosableHopper oldHopper = new ClosableHopper();
+        final ClosableHopper newHopper = new ClosableHopper();
+        final GraphHopperSwitch hopperSwitch = new GraphHopperSwitch(oldHopper, new CmdArgs());
+
+        GraphHopper acquired = hopperSwitch.acquire();
+        assertSame(oldHopper, acquired);
+
+        Thread swapThread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                hopperSwitch.swap(newHopper);
+            }
+        };
+        swapThread.start();
+
+        // new requests get the new instance while the old one is still in use
+        while (hopperSwitch.get() != newHopper)
+        {
+            Thread.sleep(1);
+        }
+        GraphHopper next = hopperSwitch.acquire();
+        assertSame(newHopper, next);
+        hopperSwitch.release(next);
+
+        Thread.sleep(50);
+        assertFalse(oldHopper.closed.get());
+
+        hopperSwitch.release(acquired);
+        swapThread.join(5000);
+        assertTrue(oldHopper.closed.get());
+        assertFalse(newHopper.closed.get());
+    }
+
+    @Test
+    public void testCloseAfterDrainTimeout() throws Exception
+    {
+        ClosableHopper oldHopper = new ClosableHopper();
+        GraphHopperSwitch hopperSwitch = new GraphHopperSwitch(oldHopper, new CmdArgs()).setDrainTimeout(10);
+        GraphHopper acquired = hopperSwitch.acquire();
+
+        hopperSwitch.swap(new ClosableHopper());
+        assertTrue(oldHopper.closed.get());
+        // releasing an already closed instance is ignored
+        hopperSwitch.release(acquired);
+    }
+
+    @Test
+    public void testReloadCreatesInstanceViaFactory()
+    {
+        final List<ClosableHopper> created = new ArrayList<ClosableHopper>();
+        GraphHopperSwitch hopperSwitch = new GraphHopperSwitch(new ClosableHopper(), new CmdArgs().put("custom", "x")).
+                setFactory(new GraphHopperSwitch.Factory()
+                {
+                    @Override
+                    public GraphHopper create( CmdArgs args )
+                    {
+                        assertEquals("x", args.get("custom", ""));
+                        assertEquals("./target/reload-missing-gh", args.get("graph.location", ""));
+                        ClosableHopper hopper = new ClosableHopper()
+                        {
+                            @Override
+                            public boolean load( String graphHopperFolder )
+                            {
+                                return false;
+                            }
+                        };
+                        created.add(hopper);
+                        return hopper;
+                    }
+                });
+
+        try
+        {
+            hopperSwitch.createGraphHopper("./target/reload-missing-gh");
+            fail("graph must not be loadable");
+        } catch (IllegalStateException ex)
+        {
+        }
+        assertEquals(1, created.size());
+        assertTrue(created.get(0).closed.get());
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHRequest;
 import com.graphhopper.GHResponse;
+import com.graphhopper.routing.RoutingBudgetExceededException;
 import com.graphhopper.util.Downloader;
 
 import java.io.IOException;
@@ -56,4 +57,18 @@ public class GraphHopperWebTest
         assertEquals("(0,Geradeaus auf A 100,1268.519329705091,65237)", res.getInstructions().get(0).toString());
         assertEquals(11, res.getInstructions().get(0).getPoints().size());
     }
+
+    @Test
+    public void testReadErrorsOfUnexpectedResponse()
+    {
+        GHResponse res = GraphHopperWeb.readErrors(503, "{\"message\": \"Server is overloaded, try again later\"}");
+        assertEquals("Server is overloaded, try again later", res.getErrors().get(0).getMessage());
+
+        res = GraphHopperWeb.readErrors(400, "{\"message\": \"aborted\", \"hints\": [{\"message\": \"aborted\", \"details\": \""
+                + RoutingBudgetExceededException.class.getName() + "\"}]}");
+        assertTrue(res.getErrors().get(0) instanceof RoutingBudgetExceededException);
+
+        res = GraphHopperWeb.readErrors(500, "");
+        assertEquals("Unexpected response with status 500", res.getErrors().get(0).getMessage());
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest
+{
+    @Test
+    public void testIndex()
+    {
+        for (long value = 0; value < 100000; value++)
+        {
+            int index = Histogram.getIndex(value);
+            assertTrue(value + " " + index, value <= Histogram.getUpperBound(index));
+            if (index > 0)
+                assertTrue(value + " " + index, value > Histogram.getUpperBound(index - 1));
+        }
+
+        assertEquals(Histogram.BUCKETS - 1, Histogram.getIndex(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, Histogram.getUpperBound(Histogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void testQuantiles()
+    {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getValueAtQuantile(0.5));
+
+        for (int i = 1; i <= 1000; i++)
+        {
+            histogram.record(i * 1000000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000000L, histogram.getMax());
+        assertEquals(500500000000L, histogram.getSum());
+        assertEquals(500e6, histogram.getValueAtQuantile(0.5), 500e6 * 0.07);
+        assertEquals(990e6, histogram.getValueAtQuantile(0.99), 990e6 * 0.07);
+        assertEquals(1000000000L, histogram.getValueAtQuantile(1));
+    }
+
+    @Test
+    public void testRelativeError()
+    {
+        Histogram histogram = new Histogram();
+        Random rand = new Random(0);
+        for (int i = 0; i < 100; i++)
+        {
+            long value = Math.abs(rand.nextLong()) >>> rand.nextInt(60);
+            int index = Histogram.getIndex(value);
+            long upper = Histogram.getUpperBound(index);
+            assertTrue(value + " " + upper, upper - value <= value * 0.07 + 1);
+            histogram.record(value);
+        }
+    }
+}
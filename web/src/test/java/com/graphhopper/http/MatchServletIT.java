@@ -0,0 +1,92 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class MatchServletIT extends BaseServletTester
+{
+    private static final String dir = "./target/andorra-gh/";
+
+    @AfterClass
+    public static void cleanUp()
+    {
+        Helper.removeDir(new File(dir));
+        shutdownJetty(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CmdArgs args = new CmdArgs().
+                put("config", "../config-example.properties").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf").
+                put("graph.location", dir).
+                put("web.maxPostSize", "100000");
+        setUpJetty(args);
+    }
+
+    @Test
+    public void testMatchRoute() throws Exception
+    {
+        // use the geometry of a route as trace
+        JSONObject route = query("point=42.554851,1.536198&point=42.510071,1.548128&points_encoded=false", 200).
+                getJSONArray("paths").getJSONObject(0);
+        JSONArray coordinates = route.getJSONObject("points").getJSONArray("coordinates");
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < coordinates.length(); i++)
+        {
+            JSONArray coord = coordinates.getJSONArray(i);
+            trace.append(coord.getDouble(1)).append(',').append(coord.getDouble(0)).append('\n');
+        }
+        // the same trace twice in one batch
+        JSONObject json = post(getTestMatchAPIUrl(), trace + "\n" + trace);
+
+        JSONArray traces = json.getJSONArray("traces");
+        assertEquals(2, traces.length());
+        for (int i = 0; i < traces.length(); i++)
+        {
+            JSONObject result = traces.getJSONObject(i);
+            assertEquals(0, result.getInt("breaks"));
+            assertEquals(coordinates.length(), result.getJSONArray("points").length());
+            assertEquals(route.getDouble("distance"), result.getDouble("distance"), 10);
+        }
+    }
+
+    @Test
+    public void testTooLargeTrace() throws Exception
+    {
+        StringBuilder sb = new StringBuilder("42.554851,1.536198");
+        while (sb.length() <= 100000)
+        {
+            sb.append('0');
+        }
+        JSONObject json = post(getTestMatchAPIUrl(), sb.toString());
+        assertEquals("Request body too large, maximum is 100000 bytes", json.getString("message"));
+    }
+}
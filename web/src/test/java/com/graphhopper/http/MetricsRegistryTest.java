@@ -0,0 +1,75 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest
+{
+    @Test
+    public void testWrite() throws Exception
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.setHelp("test_seconds", "Some latency.");
+        registry.getHistogram("test_seconds", 1e-9, "vehicle", "car").record(2000000);
+        registry.getHistogram("test_seconds", 1e-9, "vehicle", "bike").record(4000000);
+        assertSame(registry.getHistogram("test_seconds", 1e-9, "vehicle", "car"),
+                registry.getHistogram("test_seconds", 1e-9, "vehicle", "car"));
+        registry.getCounter("test_total", "status", "ok").addAndGet(3);
+
+        StringBuilder sb = new StringBuilder();
+        registry.write(sb);
+        String str = sb.toString();
+        assertTrue(str, str.contains("# HELP test_seconds Some latency.\n# TYPE test_seconds summary\n"));
+        // the header is written only once per name
+        assertEquals(str.indexOf("# TYPE test_seconds"), str.lastIndexOf("# TYPE test_seconds"));
+        assertTrue(str, str.contains("test_seconds{vehicle=\"car\",quantile=\"0.5\"} 0.002"));
+        assertTrue(str, str.contains("test_seconds_count{vehicle=\"car\"} 1\n"));
+        assertTrue(str, str.contains("# TYPE test_total counter\ntest_total{status=\"ok\"} 3\n"));
+    }
+
+    @Test
+    public void testLabels()
+    {
+        assertEquals("", MetricsRegistry.createLabels());
+        assertEquals("a=\"x\\\"y\",b=\"1\\\\\"", MetricsRegistry.createLabels("a", "x\"y", "b", "1\\"));
+        try
+        {
+            MetricsRegistry.createLabels("a");
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testDifferentTypes()
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.getCounter("test");
+        try
+        {
+            registry.getHistogram("test", 1);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+}
@@ -20,9 +20,14 @@ package com.graphhopper.http;
 import static com.graphhopper.http.BaseServletTester.shutdownJetty;
 
 import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint3D;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -67,4 +72,38 @@ public class NearestServletIT extends BaseServletTester
         double lat = point.getDouble(1);
         assertTrue("nearest point wasn't correct: lat=" + lat + ", lon=" + lon, lat == 42.55483907636756 && lon == 1.5363742288086868);
     }
+
+    @Test
+    public void testBatchNearestQuery() throws Exception
+    {
+        JSONObject json = nearestPost("42.554851,1.536198\n\n42.510071,1.548128\n42.554851,1.536198\n");
+        JSONArray points = json.getJSONArray("points");
+        assertEquals(3, points.length());
+        JSONObject single = nearestQuery("point=42.554851,1.536198");
+        for (int i : new int[]
+        {
+            0, 2
+        })
+        {
+            JSONArray point = points.getJSONObject(i).getJSONArray("coordinates");
+            assertEquals(single.getJSONArray("coordinates").getDouble(0), point.getDouble(0), 1e-8);
+            assertEquals(single.getJSONArray("coordinates").getDouble(1), point.getDouble(1), 1e-8);
+        }
+        JSONArray point = points.getJSONObject(1).getJSONArray("coordinates");
+        assertEquals(42.51, point.getDouble(1), 1e-2);
+    }
+
+    @Test
+    public void testBinaryNearestQuery() throws Exception
+    {
+        Downloader downloader = new Downloader("web integration tester");
+        InputStream is = downloader.fetch(getTestNearestAPIUrl() + "?point=42.554851,1.536198&type=binary");
+        DataInputStream in = new DataInputStream(is);
+        assertEquals(BinaryFormat.TYPE_NEAREST, BinaryFormat.readHeader(in));
+        List<GHPoint3D> points = BinaryFormat.readNearest(in);
+        in.close();
+        assertEquals(1, points.size());
+        assertEquals(42.55483907636756, points.get(0).lat, 1e-6);
+        assertEquals(1.5363742288086868, points.get(0).lon, 1e-6);
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest
+{
+    private static class BlockingHopper extends GraphHopper
+    {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+
+        @Override
+        public GHResponse route( GHRequest request )
+        {
+            calls.incrementAndGet();
+            started.countDown();
+            try
+            {
+                finish.await();
+            } catch (InterruptedException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+            return new GHResponse().setDistance(calls.get());
+        }
+    }
+
+    @Test
+    public void testIdenticalRequestsShareResponse() throws Exception
+    {
+        final BlockingHopper hopper = new BlockingHopper();
+        final RequestCoalescer coalescer = new RequestCoalescer(true);
+        final GHRequest request = new GHRequest(52.5, 13.4, 52.6, 13.5);
+        final String key = RouteCache.createKey(request, 6);
+        final List<GHResponse> responses = new ArrayList<GHResponse>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 5; i++)
+        {
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    GHResponse rsp = coalescer.route(hopper, key, request);
+                    synchronized (responses)
+                    {
+                        responses.add(rsp);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+            if (i == 0)
+                hopper.started.await();
+        }
+
+        // give the followers some time to wait for the first calculation
+        Thread.sleep(100);
+        assertEquals(1, coalescer.getInFlight());
+        hopper.finish.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join(5000);
+        }
+
+        assertEquals(1, hopper.calls.get());
+        assertEquals(5, responses.size());
+        for (GHResponse rsp : responses)
+        {
+            assertSame(responses.get(0), rsp);
+        }
+        assertEquals(4, coalescer.getCollapsed());
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        BlockingHopper hopper = new BlockingHopper();
+        hopper.finish.countDown();
+        RequestCoalescer coalescer = new RequestCoalescer(false);
+        GHRequest request = new GHRequest(52.5, 13.4, 52.6, 13.5);
+        coalescer.route(hopper, "a", request);
+        coalescer.route(hopper, "a", request);
+        assertEquals(2, hopper.calls.get());
+        assertEquals(0, coalescer.getCollapsed());
+    }
+}
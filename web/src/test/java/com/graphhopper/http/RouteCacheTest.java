@@ -0,0 +1,144 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.PointList;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RouteCacheTest
+{
+    private static class ClosableHopper extends GraphHopper
+    {
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    private GHResponse createResponse( int points )
+    {
+        GHResponse rsp = new GHResponse().setDistance(points * 10);
+        rsp.setPoints(new PointList(points, false));
+        for (int i = 0; i < points; i++)
+        {
+            rsp.getPoints().add(52.5 + i * 0.001, 13.4);
+        }
+        return rsp;
+    }
+
+    @Test
+    public void testCreateKey()
+    {
+        RouteCache cache = new RouteCache(new GraphHopperSwitch(new ClosableHopper(), new CmdArgs()), 1000, 5);
+        GHRequest req1 = new GHRequest(52.500001, 13.4, 52.6, 13.5).setVehicle("car");
+        req1.getHints().put("instructions", true).put("calc_points", true).put("type", "json");
+        GHRequest req2 = new GHRequest(52.500004, 13.4, 52.6, 13.5).setVehicle("car");
+        req2.getHints().put("calc_points", true).put("instructions", true).put("type", "gpx");
+        assertEquals(cache.createKey(req1), cache.createKey(req2));
+
+        req2.getHints().put("instructions", false);
+        assertNotEquals(cache.createKey(req1), cache.createKey(req2));
+
+        GHRequest req3 = new GHRequest(52.50001, 13.4, 52.6, 13.5).setVehicle("car");
+        req3.getHints().put("instructions", true).put("calc_points", true);
+        assertNotEquals(cache.createKey(req1), cache.createKey(req3));
+        req3.setVehicle("bike");
+        req3.getHints().put("instructions", true).put("calc_points", true);
+        assertNotEquals(cache.createKey(req1), cache.createKey(req3));
+
+        // requests are only coalesced if the points are identical
+        req3 = new GHRequest(52.5000001, 13.4, 52.6, 13.5);
+        GHRequest req4 = new GHRequest(52.5000002, 13.4, 52.6, 13.5);
+        assertEquals(RouteCache.createKey(req3, 6), RouteCache.createKey(req4, 6));
+        assertNotEquals(RouteCache.createKey(req3, RouteCache.FULL_PRECISION),
+                RouteCache.createKey(req4, RouteCache.FULL_PRECISION));
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed()
+    {
+        GraphHopper hopper = new ClosableHopper();
+        long entryBytes = RouteCache.estimateBytes("a", createResponse(10));
+        RouteCache cache = new RouteCache(new GraphHopperSwitch(hopper, new CmdArgs()), 4 * entryBytes, 5);
+        assertTrue(cache.isEnabled());
+        assertNull(cache.get(hopper, "a"));
+        for (String key : new String[]
+        {
+            "a", "b", "c", "d"
+        })
+        {
+            cache.put(hopper, key, createResponse(10));
+        }
+        assertEquals(4, cache.getSize());
+        assertEquals(4 * entryBytes, cache.getBytes());
+
+        // "a" becomes the most recently used, so "b" is evicted
+        assertNotNull(cache.get(hopper, "a"));
+        cache.put(hopper, "e", createResponse(10));
+        assertEquals(4, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(hopper, "b"));
+        assertNotNull(cache.get(hopper, "a"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 1e-6);
+
+        // too big or with errors
+        cache.put(hopper, "f", createResponse(100));
+        cache.put(hopper, "g", new GHResponse().addError(new IllegalArgumentException("test")));
+        assertNull(cache.get(hopper, "f"));
+        assertNull(cache.get(hopper, "g"));
+    }
+
+    @Test
+    public void testClearAfterReload()
+    {
+        GraphHopper oldHopper = new ClosableHopper();
+        GraphHopperSwitch hopperSwitch = new GraphHopperSwitch(oldHopper, new CmdArgs()).setDrainTimeout(10);
+        RouteCache cache = new RouteCache(hopperSwitch, 100000, 5);
+        cache.put(oldHopper, "a", createResponse(10));
+        assertNotNull(cache.get(oldHopper, "a"));
+
+        GraphHopper newHopper = new ClosableHopper();
+        hopperSwitch.swap(newHopper);
+        assertNull(cache.get(newHopper, "a"));
+        assertEquals(0, cache.getSize());
+
+        // responses of the old instance are not cached anymore
+        cache.put(oldHopper, "b", createResponse(10));
+        assertNull(cache.get(newHopper, "b"));
+        assertNull(cache.get(oldHopper, "b"));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        GraphHopper hopper = new ClosableHopper();
+        RouteCache cache = new RouteCache(new GraphHopperSwitch(hopper, new CmdArgs()), 0, 5);
+        assertFalse(cache.isEnabled());
+        cache.put(hopper, "a", createResponse(10));
+        assertNull(cache.get(hopper, "a"));
+        assertEquals(0, cache.getMisses());
+    }
+}
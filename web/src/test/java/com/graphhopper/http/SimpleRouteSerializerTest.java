@@ -0,0 +1,170 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class SimpleRouteSerializerTest
+{
+    private final SimpleRouteSerializer serializer = new SimpleRouteSerializer(new BBox(-180, 180, -90, 90));
+
+    private GHResponse createResponse()
+    {
+        Translation tr = new TranslationMap().doImport().getWithFallBack(Locale.US);
+        InstructionList instructions = new InstructionList(tr);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "Gro\u00dfe \"Stra\u00dfe\" </a>",
+                InstructionAnnotation.EMPTY, Helper.createPointList(52.5, 13.4, 52.51, 13.41)).
+                setDistance(1234.5678).setTime(60000));
+        instructions.add(new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "Kreisel \ud83d\ude97",
+                new InstructionAnnotation(1, "toll"), Helper.createPointList(52.52, 13.42)).
+                setExitNumber(2).setRadian(1.5).setDistance(10).setTime(1000));
+        instructions.add(new FinishInstruction(52.53, 13.43, 0));
+
+        GHResponse rsp = new GHResponse().
+                setPoints(Helper.createPointList(52.5, 13.4, 52.51, 13.41, 52.52, 13.42, 52.53, 13.43)).
+                setDistance(1244.5678).setTime(61000);
+        rsp.setInstructions(instructions);
+        rsp.getHints().put("visited_nodes.sum", 42);
+        return rsp;
+    }
+
+    private JSONObject stream( GHResponse rsp, boolean pointsEncoded, boolean includeElevation ) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeJSON(rsp, 12, true, pointsEncoded, includeElevation, true, out);
+        return new JSONObject(new String(out.toByteArray(), Helper.UTF_CS));
+    }
+
+    @Test
+    public void testWriteJSONSameAsToJSON() throws Exception
+    {
+        GHResponse rsp = createResponse();
+        for (boolean pointsEncoded : new boolean[]
+        {
+            true, false
+        })
+        {
+            JSONObject expected = new JSONObject(serializer.toJSON(rsp, true, pointsEncoded, false, true));
+            expected.getJSONObject("info").put("took", 12);
+            assertSimilar(expected, stream(rsp, pointsEncoded, false));
+        }
+    }
+
+    @Test
+    public void testWriteJSONError() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("Point 0 is out of bounds"));
+        JSONObject expected = new JSONObject(serializer.toJSON(rsp, true, true, false, true));
+        assertSimilar(expected, stream(rsp, true, false));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception
+    {
+        GHResponse rsp = createResponse();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeBinary(rsp, true, false, true, out);
+        GHResponse read = GraphHopperWeb.readBinary(new ByteArrayInputStream(out.toByteArray()));
+
+        assertFalse(read.hasErrors());
+        assertEquals(rsp.getDistance(), read.getDistance(), 1e-3);
+        assertEquals(rsp.getTime(), read.getTime());
+        assertEquals(rsp.getPoints(), read.getPoints());
+        InstructionList instructions = read.getInstructions();
+        assertEquals(3, instructions.size());
+        for (int i = 0; i < instructions.size(); i++)
+        {
+            Instruction expected = rsp.getInstructions().get(i);
+            Instruction instruction = instructions.get(i);
+            assertEquals(expected.getSign(), instruction.getSign());
+            assertEquals(expected.getDistance(), instruction.getDistance(), 1e-3);
+            assertEquals(expected.getTime(), instruction.getTime());
+            assertEquals(expected.getAnnotation().getMessage(), instruction.getAnnotation().getMessage());
+        }
+        assertEquals(rsp.getInstructions().createText(rsp.getInstructions().get(0)), instructions.get(0).getName());
+        assertEquals(1, instructions.get(1).getAnnotation().getImportance());
+        assertEquals(2, ((RoundaboutInstruction) instructions.get(1)).getExitNumber());
+
+        // the binary format is much smaller than JSON
+        ByteArrayOutputStream jsonOut = new ByteArrayOutputStream();
+        serializer.writeJSON(rsp, 12, true, true, false, true, jsonOut);
+        assertTrue(out.size() * 2 < jsonOut.size());
+    }
+
+    @Test
+    public void testBinaryErrors() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("Point 0 is out of bounds"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.writeBinary(rsp, true, false, true, out);
+        GHResponse read = GraphHopperWeb.readBinary(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1, read.getErrors().size());
+        assertTrue(read.getErrors().get(0) instanceof IllegalArgumentException);
+        assertEquals("Point 0 is out of bounds", read.getErrors().get(0).getMessage());
+    }
+
+    @Test
+    public void testSpecialCharacters() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(4).reset(out);
+        String str = "a\"b\\c</d\te\u0001\u00fc\u20ac\ud83d\ude97";
+        writer.startArray().value(str).value(1.0).value(1.5e-7).value(-3).endArray().finish();
+        String json = new String(out.toByteArray(), Helper.UTF_CS);
+        assertEquals(new JSONArray().put(str).put(1.0).put(1.5e-7).put(-3).toString(), json);
+    }
+
+    private static void assertSimilar( Object expected, Object actual )
+    {
+        if (expected instanceof JSONObject)
+        {
+            JSONObject expectedObj = (JSONObject) expected;
+            JSONObject actualObj = (JSONObject) actual;
+            assertEquals(expectedObj.keySet(), actualObj.keySet());
+            for (Object key : expectedObj.keySet())
+            {
+                assertSimilar(expectedObj.get((String) key), actualObj.get((String) key));
+            }
+        } else if (expected instanceof JSONArray)
+        {
+            JSONArray expectedArr = (JSONArray) expected;
+            JSONArray actualArr = (JSONArray) actual;
+            assertEquals(expectedArr.length(), actualArr.length());
+            for (int i = 0; i < expectedArr.length(); i++)
+            {
+                assertSimilar(expectedArr.get(i), actualArr.get(i));
+            }
+        } else
+        {
+            // compare the written form as the number types can differ after parsing
+            assertEquals(JSONObject.valueToString(expected), JSONObject.valueToString(actual));
+        }
+    }
+}
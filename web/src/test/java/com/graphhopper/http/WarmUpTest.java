@@ -0,0 +1,108 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GHResponse;
+import com.graphhopper.GraphHopper;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WarmUpTest
+{
+    @Test
+    public void testParseRequest()
+    {
+        GHRequest request = WarmUp.parseRequest("2013-08-07 18:06:50,905 [qtp1329318374-81] INFO  graphhopper.http.GraphHopperServlet - "
+                + "point=51.076329%2C13.738409&point=52.517037,13.38886&vehicle=bike&weighting=shortest&algorithm=astarbi&instructions=false"
+                + " 46.4.67.134 en_US Wget/1.13.4 (linux-gnu) 51.076329, 13.738409->52.517037, 13.38886, distance: 189.48, time:123min");
+        assertEquals(2, request.getPoints().size());
+        assertEquals(51.076329, request.getPoints().get(0).lat, 1e-6);
+        assertEquals(13.38886, request.getPoints().get(1).lon, 1e-6);
+        assertEquals("bike", request.getVehicle());
+        assertEquals("shortest", request.getWeighting());
+        assertEquals("astarbi", request.getAlgorithm());
+        assertFalse(request.getHints().getBool("instructions", true));
+    }
+
+    @Test
+    public void testParseRequestOfCurrentLogFormat()
+    {
+        GHRequest request = WarmUp.parseRequest("2015-11-20 10:12:01,123 [qtp1-17] INFO  com.graphhopper.http.GHBaseServlet - "
+                + "type=json&point=42.554851,1.536198&point=42.510071,1.548128 127.0.0.1 en_US Java/1.8.0 "
+                + "[(42.554851,1.536198), (42.510071,1.548128)], took:0.01, , fastest, car, distance: 9345.2");
+        assertEquals(2, request.getPoints().size());
+        assertEquals(42.510071, request.getPoints().get(1).lat, 1e-6);
+        assertEquals("json", request.getHints().get("type", ""));
+    }
+
+    @Test
+    public void testParseInvalidRequest()
+    {
+        assertNull(WarmUp.parseRequest("2013-08-07 18:06:50,905 INFO  graphhopper.http.InfoServlet - something"));
+        assertNull(WarmUp.parseRequest("INFO  graphhopper.http.GraphHopperServlet - point=51.076329,13.738409 1.2.3.4"));
+    }
+
+    @Test
+    public void testFailingQueriesAreSkipped() throws Exception
+    {
+        File log = new File("./target/warmup-test.log");
+        Writer writer = new FileWriter(log);
+        writer.write("INFO  com.graphhopper.http.GHBaseServlet - point=1,1&point=2,2&weighting=unknown 1.2.3.4\n");
+        writer.write("INFO  com.graphhopper.http.GHBaseServlet - point=1,1&point=2,2 1.2.3.4\n");
+        writer.write("INFO  com.graphhopper.http.GHBaseServlet - point=1,1&point=2,2&timeout=100 1.2.3.4\n");
+        writer.close();
+
+        final List<GHRequest> requests = new ArrayList<GHRequest>();
+        GraphHopper hopper = new GraphHopper()
+        {
+            @Override
+            public GHResponse route( GHRequest request )
+            {
+                requests.add(request);
+                if ("unknown".equals(request.getWeighting()))
+                    throw new IllegalStateException("weighting not prepared");
+
+                return new GHResponse();
+            }
+        };
+        try
+        {
+            WarmUp warmUp = new WarmUp(hopper).setQueryLog(log.getPath()).setMaxTime(10000).setWindowSize(2);
+            warmUp.run();
+            assertEquals(2, warmUp.getQueries());
+            assertEquals(1, warmUp.getFailedQueries());
+            assertEquals(3, requests.size());
+
+            // every query gets the remaining time as timeout, a lower logged timeout is kept
+            long timeout = requests.get(1).getHints().getLong("timeout", 0);
+            assertTrue("timeout " + timeout, timeout > 100 && timeout <= 10000);
+            assertEquals(100, requests.get(2).getHints().getLong("timeout", 0));
+        } finally
+        {
+            log.delete();
+        }
+    }
+}